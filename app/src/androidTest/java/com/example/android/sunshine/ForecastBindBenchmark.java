@@ -0,0 +1,157 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the cost of binding a forecast row the old way, formatting everything from the
+ * cursor at bind time, with binding a prebuilt {@link ForecastItem}. Results are logged under
+ * the ForecastBindBenchmark tag in nanoseconds per bind.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastBindBenchmark {
+
+    private static final String TAG = ForecastBindBenchmark.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final int WARMUP_BINDS = 2000;
+    private static final int MEASURED_BINDS = 20000;
+
+    private static final int[] WEATHER_IDS = {200, 301, 500, 600, 701, 800, 801, 803, 900, 962};
+
+    private Context mContext;
+
+    private TextView mDateView;
+    private TextView mDescriptionView;
+    private TextView mHighView;
+    private TextView mLowView;
+    private ImageView mIconView;
+
+    @Test
+    public void bindTime() {
+
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        final MatrixCursor cursor = buildForecastCursor();
+        final List<ForecastItem> items = ForecastLoader.buildItems(mContext, cursor);
+        assertEquals(DAYS, items.size());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                mDateView = new TextView(mContext);
+                mDescriptionView = new TextView(mContext);
+                mHighView = new TextView(mContext);
+                mLowView = new TextView(mContext);
+                mIconView = new ImageView(mContext);
+
+                formatAtBind(cursor, WARMUP_BINDS);
+                long formatting = formatAtBind(cursor, MEASURED_BINDS);
+
+                assignPrebuilt(items, WARMUP_BINDS);
+                long assigning = assignPrebuilt(items, MEASURED_BINDS);
+
+                Log.i(TAG, "Formatting at bind: " + formatting / MEASURED_BINDS + " ns/bind");
+                Log.i(TAG, "Prebuilt item:      " + assigning / MEASURED_BINDS + " ns/bind");
+            }
+        });
+
+        cursor.close();
+    }
+
+    /* What ForecastAdapter did per row before the loader built the items */
+    private long formatAtBind(MatrixCursor cursor, int binds) {
+
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int i = 0; i < binds; i++) {
+
+            cursor.moveToPosition(i % DAYS);
+
+            int weatherId = cursor.getInt(3);
+            mIconView.setImageResource(
+                    SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId));
+
+            long date = cursor.getLong(0);
+            mDateView.setText(SunshineDateUtils.getFriendlyDateString(mContext, date, false));
+
+            String description =
+                    SunshineWeatherUtils.getStringForWeatherCondition(mContext, weatherId);
+            mDescriptionView.setText(description);
+            mDescriptionView.setContentDescription(
+                    mContext.getString(R.string.a11y_forecast, description));
+
+            String high = SunshineWeatherUtils.formatTemperature(mContext, cursor.getDouble(1));
+            mHighView.setText(high);
+            mHighView.setContentDescription(mContext.getString(R.string.a11y_high_temp, high));
+
+            String low = SunshineWeatherUtils.formatTemperature(mContext, cursor.getDouble(2));
+            mLowView.setText(low);
+            mLowView.setContentDescription(mContext.getString(R.string.a11y_low_temp, low));
+        }
+
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    /* What ForecastAdapter.onBindViewHolder does now */
+    private long assignPrebuilt(List<ForecastItem> items, int binds) {
+
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int i = 0; i < binds; i++) {
+
+            ForecastItem item = items.get(i % DAYS);
+
+            mIconView.setImageResource(item.smallIconResId);
+            mDateView.setText(item.dateText);
+            mDescriptionView.setText(item.description);
+            mDescriptionView.setContentDescription(item.descriptionA11y);
+            mHighView.setText(item.highText);
+            mHighView.setContentDescription(item.highA11y);
+            mLowView.setText(item.lowText);
+            mLowView.setContentDescription(item.lowA11y);
+        }
+
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+
+    private MatrixCursor buildForecastCursor() {
+
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                WeatherContract.WeatherEntry.COLUMN_DATE,
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID});
+
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        for (int day = 0; day < DAYS; day++) {
+            cursor.addRow(new Object[]{
+                    today + day * SunshineDateUtils.DAY_IN_MILLIS,
+                    20.0 + day % 5,
+                    10.0 - day % 3,
+                    WEATHER_IDS[day % WEATHER_IDS.length]});
+        }
+
+        return cursor;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Loads batches of 14, 1,000 and 100,000 forecast rows into an empty weather table in one
+ * transaction, once the way bulkInsert used to, with a SQLiteDatabase.insert per row, and once
+ * through the precompiled statements of {@link WeatherRowWriter} that bulkInsert uses now.
+ * Logs the rows per second of both under the BulkInsertBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmark {
+
+    private static final String TAG = BulkInsertBenchmark.class.getSimpleName();
+
+    private static final int[] BATCH_ROWS = {14, 1000, 100000};
+
+    /* Rows loaded per measurement at least, small batches are repeated to get there */
+    private static final int MEASURED_ROWS = 100000;
+
+    @Test
+    public void bulkInsertThroughput() {
+
+        ContentValues[] rows = buildRows(BATCH_ROWS[BATCH_ROWS.length - 1]);
+
+        SQLiteDatabase probe = SQLiteDatabase.create(null);
+        boolean nativeUpsert;
+        try {
+            nativeUpsert = WeatherRowWriter.supportsUpsert(probe);
+        } finally {
+            probe.close();
+        }
+
+        /* Warm up both paths first */
+        measure(rows, BATCH_ROWS[0], false, nativeUpsert);
+        measure(rows, BATCH_ROWS[0], true, nativeUpsert);
+
+        for (int batchRows : BATCH_ROWS) {
+
+            long perRow = measure(rows, batchRows, false, nativeUpsert);
+            long compiled = measure(rows, batchRows, true, nativeUpsert);
+
+            Log.i(TAG, batchRows + " rows: SQLiteDatabase.insert " + perRow
+                    + " rows/s, precompiled statement " + compiled + " rows/s ("
+                    + (nativeUpsert ? "ON CONFLICT DO UPDATE" : "UPDATE, then INSERT") + ")");
+        }
+    }
+
+    /*
+     * Loads the first batchRows rows into a fresh table, as often as it takes to reach
+     * MEASURED_ROWS.
+     *
+     * @return Rows per second
+     */
+    private static long measure(ContentValues[] rows, int batchRows, boolean precompiled,
+                                boolean nativeUpsert) {
+
+        int batches = Math.max(1, MEASURED_ROWS / batchRows);
+        long elapsedNanos = 0;
+
+        for (int batch = 0; batch < batches; batch++) {
+
+            SQLiteDatabase db = SQLiteDatabase.create(null);
+
+            try {
+                db.execSQL(WeatherDbHelper.buildCreateWeatherTableSql(WeatherEntry.TABLE_NAME));
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                load(db, rows, batchRows, precompiled, nativeUpsert);
+                elapsedNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                assertEquals(batchRows,
+                        DatabaseUtils.queryNumEntries(db, WeatherEntry.TABLE_NAME));
+            } finally {
+                db.close();
+            }
+        }
+
+        return (long) batches * batchRows * 1000000000L / Math.max(elapsedNanos, 1);
+    }
+
+    private static void load(SQLiteDatabase db, ContentValues[] rows, int batchRows,
+                             boolean precompiled, boolean nativeUpsert) {
+
+        WeatherRowWriter writer = precompiled ? new WeatherRowWriter(db, nativeUpsert) : null;
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < batchRows; i++) {
+                if (precompiled) {
+                    writer.write(rows[i].getAsLong(WeatherEntry.COLUMN_LOCATION_ID), rows[i]);
+                } else {
+                    db.insert(WeatherEntry.TABLE_NAME, null, rows[i]);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            if (writer != null) writer.close();
+            db.endTransaction();
+        }
+    }
+
+    /* A year of forecast for each location, as many locations as it takes */
+    private static ContentValues[] buildRows(final int count) {
+
+        final ContentValues[] rows = new ContentValues[count];
+        final int[] size = new int[1];
+
+        try {
+            new SyntheticForecastGenerator(42).generate((count + 364) / 365,
+                    SunshineDateUtils.getNormalizedUtcDateForToday(), 365,
+                    new SyntheticForecastGenerator.RowHandler() {
+                        @Override
+                        public void onRow(SyntheticForecastGenerator.Location location,
+                                          DayForecast forecast) {
+
+                            /* The last location is cut short */
+                            if (size[0] == count) return;
+
+                            ContentValues values = new ContentValues();
+                            values.put(WeatherEntry.COLUMN_LOCATION_ID, location.index + 1);
+                            values.put(WeatherEntry.COLUMN_DATE, forecast.date);
+                            values.put(WeatherEntry.COLUMN_WEATHER_ID, forecast.weatherId);
+                            values.put(WeatherEntry.COLUMN_MIN_TEMP, forecast.low);
+                            values.put(WeatherEntry.COLUMN_MAX_TEMP, forecast.high);
+                            values.put(WeatherEntry.COLUMN_HUMIDITY, forecast.humidity);
+                            values.put(WeatherEntry.COLUMN_PRESSURE, forecast.pressure);
+                            values.put(WeatherEntry.COLUMN_WIND_SPEED, forecast.windSpeed);
+                            values.put(WeatherEntry.COLUMN_DEGREES, forecast.windDirection);
+                            rows[size[0]++] = values;
+                        }
+                    });
+        } catch (IOException e) {
+            /* The handler above never throws */
+            throw new AssertionError(e);
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a {@link ColumnarSnapshot} reads back like the cursor it was copied from, for
+ * every kind a column can end up as, including columns whose values only widen after many rows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ColumnarSnapshotTest {
+
+    private static final String[] COLUMNS = {"int", "long", "real", "text", "mixed", "nulls"};
+
+    @Test
+    public void copiesEveryKind() {
+
+        MatrixCursor source = new MatrixCursor(COLUMNS);
+        byte[] blob = {1, 2, 3};
+
+        source.addRow(new Object[]{1, 1L << 40, 1.5, "a", 7, null});
+        source.addRow(new Object[]{null, 2L, 2.25, null, "text", null});
+        source.addRow(new Object[]{3, null, 3.0, "c", 2.5, null});
+        source.addRow(new Object[]{4, 4L, null, "d", blob, null});
+        source.addRow(new Object[]{5, 5L, 5.75, "e", null, null});
+
+        Cursor snapshot = ColumnarSnapshot.copyOf(source).newCursor();
+
+        assertEquals(5, snapshot.getCount());
+        assertArrayEquals(COLUMNS, snapshot.getColumnNames());
+
+        source.moveToPosition(-1);
+        while (source.moveToNext()) {
+            assertTrue(snapshot.moveToNext());
+            for (int column = 0; column < COLUMNS.length; column++) {
+                assertSameValue(source, snapshot, column);
+            }
+        }
+        assertFalse(snapshot.moveToNext());
+    }
+
+    /* A column mixing numbers and text keeps the type of every cell */
+    @Test
+    public void reportsTheTypeOfEachCellOfAMixedColumn() {
+
+        MatrixCursor source = new MatrixCursor(new String[]{"mixed"});
+        source.addRow(new Object[]{42});
+        source.addRow(new Object[]{"forty-two"});
+        source.addRow(new Object[]{4.2});
+        source.addRow(new Object[]{null});
+
+        Cursor snapshot = ColumnarSnapshot.copyOf(source).newCursor();
+
+        snapshot.moveToPosition(0);
+        assertEquals(Cursor.FIELD_TYPE_INTEGER, snapshot.getType(0));
+        assertEquals(42, snapshot.getLong(0));
+        assertEquals("42", snapshot.getString(0));
+
+        snapshot.moveToPosition(1);
+        assertEquals(Cursor.FIELD_TYPE_STRING, snapshot.getType(0));
+        assertEquals("forty-two", snapshot.getString(0));
+        assertEquals(0, snapshot.getLong(0));
+
+        snapshot.moveToPosition(2);
+        assertEquals(Cursor.FIELD_TYPE_FLOAT, snapshot.getType(0));
+        assertEquals(4.2, snapshot.getDouble(0), 0);
+
+        snapshot.moveToPosition(3);
+        assertEquals(Cursor.FIELD_TYPE_NULL, snapshot.getType(0));
+        assertNull(snapshot.getString(0));
+    }
+
+    /* Values read before a column widens are converted, nulls among them stay null */
+    @Test
+    public void widensAfterManyRows() {
+
+        int rows = 1000;
+
+        MatrixCursor source = new MatrixCursor(new String[]{"number"});
+        for (int row = 0; row < rows; row++) {
+            source.addRow(new Object[]{row % 10 == 0 ? null : row});
+        }
+        source.addRow(new Object[]{1L << 40});
+        source.addRow(new Object[]{0.5});
+
+        Cursor snapshot = ColumnarSnapshot.copyOf(source).newCursor();
+
+        for (int row = 0; row < rows; row++) {
+            snapshot.moveToPosition(row);
+            if (row % 10 == 0) {
+                assertTrue(snapshot.isNull(0));
+            } else {
+                assertEquals(Cursor.FIELD_TYPE_FLOAT, snapshot.getType(0));
+                assertEquals(row, snapshot.getInt(0));
+            }
+        }
+
+        snapshot.moveToPosition(rows);
+        assertEquals(1L << 40, snapshot.getLong(0));
+
+        snapshot.moveToPosition(rows + 1);
+        assertEquals(0.5, snapshot.getDouble(0), 0);
+    }
+
+    private static void assertSameValue(Cursor expected, Cursor actual, int column) {
+
+        String where = "row " + expected.getPosition() + ", column " + COLUMNS[column];
+
+        assertEquals(where, expected.getType(column), actual.getType(column));
+        assertEquals(where, expected.isNull(column), actual.isNull(column));
+
+        switch (expected.getType(column)) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                assertEquals(where, expected.getLong(column), actual.getLong(column));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                assertEquals(where, expected.getDouble(column), actual.getDouble(column), 0);
+                break;
+            case Cursor.FIELD_TYPE_STRING:
+                assertEquals(where, expected.getString(column), actual.getString(column));
+                break;
+            case Cursor.FIELD_TYPE_BLOB:
+                assertArrayEquals(where, expected.getBlob(column), actual.getBlob(column));
+                break;
+        }
+    }
+}
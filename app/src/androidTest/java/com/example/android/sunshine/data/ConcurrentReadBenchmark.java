@@ -0,0 +1,242 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Stress test for reads during a sync. Several threads query the forecast of a location the
+ * way the loaders do while another thread keeps rewriting every forecast in sync-sized
+ * transactions, first on a rollback journal and then in WAL mode, and once more with nothing
+ * writing as the baseline. Logs the query latency percentiles of each run under the
+ * ConcurrentReadBenchmark tag.
+ *
+ * Runs on its own database through WeatherDbHelper, so the app's data is left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentReadBenchmark {
+
+    private static final String TAG = ConcurrentReadBenchmark.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "concurrent-read-benchmark.db";
+
+    private static final int LOCATIONS = 50;
+    private static final int FORECAST_DAYS = 14;
+
+    private static final int READERS = 4;
+    private static final int QUERIES_PER_READER = 2000;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private final SyntheticForecastGenerator mGenerator = new SyntheticForecastGenerator(42);
+
+    @Test
+    public void queryLatencyDuringSync() throws Exception {
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        run(context, "Rollback journal, idle", false, false);
+        run(context, "Rollback journal, syncing", false, true);
+        run(context, "WAL, idle", true, false);
+        run(context, "WAL, syncing", true, true);
+    }
+
+    private void run(Context context, String name, boolean wal, boolean syncing)
+            throws Exception {
+
+        context.deleteDatabase(DATABASE_NAME);
+
+        final WeatherDbHelper helper = new WeatherDbHelper(context, DATABASE_NAME,
+                WeatherDbHelper.SYNCHRONOUS_NORMAL,
+                WeatherDbHelper.DEFAULT_WAL_AUTOCHECKPOINT_PAGES, false);
+        helper.setWriteAheadLoggingEnabled(wal);
+
+        try {
+            final long[] locationIds = insertLocations(helper.getWritableDatabase());
+            final long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+            sync(helper, locationIds, today);
+
+            final AtomicBoolean readersDone = new AtomicBoolean();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final int[] syncs = new int[1];
+
+            Thread writer = null;
+            if (syncing) {
+                writer = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (!readersDone.get()) {
+                                sync(helper, locationIds, today);
+                                syncs[0]++;
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                }, "Sync");
+                writer.start();
+            }
+
+            final long[][] latencies = new long[READERS][QUERIES_PER_READER];
+            List<Thread> readers = new ArrayList<>(READERS);
+
+            for (int r = 0; r < READERS; r++) {
+
+                final long[] readerLatencies = latencies[r];
+                final int reader = r;
+
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int i = 0; i < QUERIES_PER_READER; i++) {
+                                long locationId = locationIds[(reader + i) % LOCATIONS];
+                                long start = SystemClock.elapsedRealtimeNanos();
+                                int rows = query(helper.getReadableDatabase(), locationId);
+                                readerLatencies[i] = SystemClock.elapsedRealtimeNanos() - start;
+                                assertEquals(FORECAST_DAYS, rows);
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                }, "Reader " + r);
+
+                readers.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : readers) {
+                thread.join();
+            }
+
+            readersDone.set(true);
+            if (writer != null) writer.join();
+
+            assertNull(failure.get());
+
+            long[] all = new long[READERS * QUERIES_PER_READER];
+            for (int r = 0; r < READERS; r++) {
+                System.arraycopy(latencies[r], 0, all, r * QUERIES_PER_READER,
+                        QUERIES_PER_READER);
+            }
+            Arrays.sort(all);
+
+            Log.i(TAG, name + ": query p50 " + micros(all, .50) + " us, p99 "
+                    + micros(all, .99) + " us, p99.9 " + micros(all, .999) + " us, max "
+                    + all[all.length - 1] / 1000 + " us"
+                    + (syncing ? " over " + syncs[0] + " syncs" : ""));
+
+        } finally {
+            helper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    private static long micros(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(index, 0)] / 1000;
+    }
+
+    private static long[] insertLocations(SQLiteDatabase db) {
+
+        long[] locationIds = new long[LOCATIONS];
+
+        for (int i = 0; i < LOCATIONS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, "Stress test " + i);
+            locationIds[i] = db.insertOrThrow(LocationEntry.TABLE_NAME, null, values);
+        }
+
+        return locationIds;
+    }
+
+    /* One sync: the whole forecast of every location rewritten in a single transaction */
+    private void sync(WeatherDbHelper helper, long[] locationIds, long today) {
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        WeatherRowWriter writer = new WeatherRowWriter(db, helper.supportsUpsert());
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (int index = 0; index < LOCATIONS; index++) {
+
+                SyntheticForecastGenerator.Location location = mGenerator.location(index);
+
+                for (int day = 0; day < FORECAST_DAYS; day++) {
+
+                    DayForecast forecast = mGenerator.day(location,
+                            today + day * SunshineDateUtils.DAY_IN_MILLIS);
+
+                    ContentValues values = new ContentValues();
+                    values.put(WeatherEntry.COLUMN_DATE, forecast.date);
+                    values.put(WeatherEntry.COLUMN_WEATHER_ID, forecast.weatherId);
+                    values.put(WeatherEntry.COLUMN_MIN_TEMP, forecast.low);
+                    values.put(WeatherEntry.COLUMN_MAX_TEMP, forecast.high);
+                    values.put(WeatherEntry.COLUMN_HUMIDITY, forecast.humidity);
+                    values.put(WeatherEntry.COLUMN_PRESSURE, forecast.pressure);
+                    values.put(WeatherEntry.COLUMN_WIND_SPEED, forecast.windSpeed);
+                    values.put(WeatherEntry.COLUMN_DEGREES, forecast.windDirection);
+
+                    writer.write(locationIds[index], values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            writer.close();
+            db.endTransaction();
+        }
+    }
+
+    /* Reads a forecast like ForecastLoader does, returns the number of rows */
+    private static int query(SQLiteDatabase db, long locationId) {
+
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, PROJECTION,
+                WeatherEntry.COLUMN_LOCATION_ID + " = ?", new String[]{Long.toString(locationId)},
+                null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            int rows = 0;
+            while (cursor.moveToNext()) {
+                cursor.getLong(0);
+                cursor.getDouble(1);
+                cursor.getDouble(2);
+                cursor.getInt(3);
+                rows++;
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+}
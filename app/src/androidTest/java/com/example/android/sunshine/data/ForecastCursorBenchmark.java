@@ -0,0 +1,170 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls forecasts of 14 days, a year and ten years the way ForecastLoader reads them, once
+ * through the SQLiteCursor of a fresh query and once through a {@link ColumnarSnapshot} cursor,
+ * and logs the time and allocations per row and the size of the snapshot under the
+ * ForecastCursorBenchmark tag. A SQLiteCursor fills a CursorWindow that is allocated at its
+ * full size, 2 MB on most devices, whatever the number of rows.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastCursorBenchmark {
+
+    private static final String TAG = ForecastCursorBenchmark.class.getSimpleName();
+
+    private static final int[] FORECAST_DAYS = {14, 365, 3650};
+
+    /* Rows read per measurement, so every size gets the same amount of work */
+    private static final int MEASURED_ROWS = 200000;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    @Test
+    public void scrollForecasts() {
+
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+
+        try {
+            db.execSQL("CREATE TABLE " + WeatherEntry.TABLE_NAME + " ("
+                    + WeatherEntry._ID + " INTEGER PRIMARY KEY, "
+                    + WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, "
+                    + WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, "
+                    + WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, "
+                    + WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, "
+                    + WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, "
+                    + WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, "
+                    + WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, "
+                    + WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL)");
+
+            int stored = 0;
+            for (int days : FORECAST_DAYS) {
+                insertDays(db, stored, days);
+                stored = days;
+                measure(db, days);
+            }
+
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void insertDays(SQLiteDatabase db, int from, int to) {
+
+        SyntheticForecastGenerator generator = new SyntheticForecastGenerator(42);
+        SyntheticForecastGenerator.Location location = generator.location(0);
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        db.beginTransaction();
+        try {
+            for (int day = from; day < to; day++) {
+
+                DayForecast forecast =
+                        generator.day(location, today + day * SunshineDateUtils.DAY_IN_MILLIS);
+
+                ContentValues values = new ContentValues();
+                values.put(WeatherEntry.COLUMN_DATE, forecast.date);
+                values.put(WeatherEntry.COLUMN_WEATHER_ID, forecast.weatherId);
+                values.put(WeatherEntry.COLUMN_MIN_TEMP, forecast.low);
+                values.put(WeatherEntry.COLUMN_MAX_TEMP, forecast.high);
+                values.put(WeatherEntry.COLUMN_HUMIDITY, forecast.humidity);
+                values.put(WeatherEntry.COLUMN_PRESSURE, forecast.pressure);
+                values.put(WeatherEntry.COLUMN_WIND_SPEED, forecast.windSpeed);
+                values.put(WeatherEntry.COLUMN_DEGREES, forecast.windDirection);
+                db.insert(WeatherEntry.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void measure(SQLiteDatabase db, int days) {
+
+        Cursor source = query(db);
+        ColumnarSnapshot snapshot = ColumnarSnapshot.copyOf(source);
+        source.close();
+
+        assertEquals(days, snapshot.getCount());
+
+        /* Only sizes the QueryCache really holds are worth measuring */
+        assertTrue(days <= QueryCache.MAX_ROWS);
+
+        int passes = Math.max(1, MEASURED_ROWS / days);
+
+        /* Warm up both paths first */
+        scroll(db, null, passes);
+        scroll(db, snapshot, passes);
+
+        String sqlite = scroll(db, null, passes);
+        String columnar = scroll(db, snapshot, passes);
+
+        Log.i(TAG, days + " days, SQLiteCursor:     " + sqlite);
+        Log.i(TAG, days + " days, ColumnarSnapshot: " + columnar + ", "
+                + snapshot.sizeInBytes() + " bytes held");
+    }
+
+    /* Reads every row like ForecastLoader.buildItems, from a new cursor on each pass */
+    private static String scroll(SQLiteDatabase db, ColumnarSnapshot snapshot, int passes) {
+
+        long checksum = 0;
+        long rows = 0;
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int pass = 0; pass < passes; pass++) {
+
+            Cursor cursor = snapshot == null ? query(db) : snapshot.newCursor();
+
+            while (cursor.moveToNext()) {
+                checksum += cursor.getLong(0);
+                checksum += (long) cursor.getDouble(1);
+                checksum += (long) cursor.getDouble(2);
+                checksum += cursor.getInt(3);
+                rows++;
+            }
+
+            cursor.close();
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        int allocations = Debug.getThreadAllocCount();
+
+        Debug.stopAllocCounting();
+
+        return elapsed / rows + " ns/row, " + (float) allocations / passes
+                + " allocations/scroll (checksum " + checksum + ")";
+    }
+
+    private static Cursor query(SQLiteDatabase db) {
+        return db.query(WeatherEntry.TABLE_NAME, PROJECTION, null, null, null, null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+    }
+}
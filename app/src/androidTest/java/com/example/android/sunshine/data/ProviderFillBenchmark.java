@@ -0,0 +1,83 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.FakeDataUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Fills the app's provider with a year of synthetic forecasts for 1, 10 and 100 locations
+ * through {@link FakeDataUtils#insertSyntheticData}, and logs the rows per second under the
+ * ProviderFillBenchmark tag. The synthetic locations, and their forecasts with them, are
+ * deleted afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderFillBenchmark {
+
+    private static final String TAG = ProviderFillBenchmark.class.getSimpleName();
+
+    private static final int[] LOCATIONS = {1, 10, 100};
+    private static final int FORECAST_DAYS = 365;
+
+    private static final long SEED = 42;
+
+    @Test
+    public void fillProvider() {
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        for (int locations : LOCATIONS) {
+            fill(context, locations);
+        }
+    }
+
+    private static void fill(Context context, int locations) {
+
+        ContentResolver resolver = context.getContentResolver();
+        List<Uri> locationUris = new ArrayList<>(locations);
+
+        try {
+            long start = SystemClock.elapsedRealtime();
+            int inserted = FakeDataUtils.insertSyntheticData(context, locations, FORECAST_DAYS,
+                    SEED, locationUris);
+            long elapsed = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(locations * FORECAST_DAYS, inserted);
+
+            /* Every day really landed under its location */
+            Uri weatherUri = WeatherEntry.buildWeatherUriForLocation(
+                    Long.parseLong(locationUris.get(0).getLastPathSegment()));
+            Cursor cursor = resolver.query(weatherUri, null, null, null, null);
+            try {
+                assertEquals(FORECAST_DAYS, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+
+            Log.i(TAG, locations + " locations, " + inserted + " rows: "
+                    + inserted * 1000L / Math.max(elapsed, 1) + " rows/s");
+
+        } finally {
+            /* The forecast rows go with their location */
+            for (Uri locationUri : locationUris) {
+                resolver.delete(locationUri, null, null);
+            }
+        }
+    }
+}
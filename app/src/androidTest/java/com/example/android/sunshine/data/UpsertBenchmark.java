@@ -0,0 +1,261 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes the same syncs into the weather table of version 5, which replaced a day that is
+ * written again through UNIQUE ... ON CONFLICT REPLACE, and of version 6, which updates it in
+ * place through {@link WeatherRowWriter}, with and without ON CONFLICT DO UPDATE. Logs the
+ * database pages each sync writes and its time under the UpsertBenchmark tag.
+ *
+ * Pages are counted as the frames a sync appends to an empty WAL, with automatic checkpoints
+ * off. Every sync moves the forecast window of each location forward by one day, so all but one
+ * day of it is already stored, like the daily sync of a saved location.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UpsertBenchmark {
+
+    private static final String TAG = UpsertBenchmark.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "upsert-benchmark.db";
+
+    private static final int LOCATIONS = 50;
+    private static final int FORECAST_DAYS = 14;
+    private static final int SYNCS = 10;
+
+    private static final String SQL_INSERT_V5 = "INSERT INTO " + WeatherEntry.TABLE_NAME + " ("
+            + WeatherEntry.COLUMN_LOCATION_ID + ", "
+            + WeatherEntry.COLUMN_DATE + ", "
+            + WeatherEntry.COLUMN_WEATHER_ID + ", "
+            + WeatherEntry.COLUMN_MIN_TEMP + ", "
+            + WeatherEntry.COLUMN_MAX_TEMP + ", "
+            + WeatherEntry.COLUMN_HUMIDITY + ", "
+            + WeatherEntry.COLUMN_PRESSURE + ", "
+            + WeatherEntry.COLUMN_WIND_SPEED + ", "
+            + WeatherEntry.COLUMN_DEGREES + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /* How the rows of a sync are written */
+    private interface SyncWriter {
+        void write(long locationId, ContentValues value);
+        void close();
+    }
+
+    private final SyntheticForecastGenerator mGenerator = new SyntheticForecastGenerator(42);
+
+    @Test
+    public void pageWritesPerSync() {
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        measure(context, "v5 ON CONFLICT REPLACE", false, null);
+        measure(context, "v6 UPDATE, then INSERT", true, false);
+
+        SQLiteDatabase probe = SQLiteDatabase.create(null);
+        boolean nativeUpsert;
+        try {
+            nativeUpsert = WeatherRowWriter.supportsUpsert(probe);
+        } finally {
+            probe.close();
+        }
+
+        if (nativeUpsert) {
+            measure(context, "v6 ON CONFLICT DO UPDATE", true, true);
+        } else {
+            Log.i(TAG, "SQLite " + sqliteVersion() + " has no ON CONFLICT DO UPDATE, skipped");
+        }
+    }
+
+    /*
+     * @param nativeUpsert null writes the version 5 way, through a plain INSERT
+     */
+    private void measure(Context context, String name, boolean currentSchema,
+                         Boolean nativeUpsert) {
+
+        context.deleteDatabase(DATABASE_NAME);
+        File file = context.getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+
+        try {
+            /*
+             * Switched by PRAGMA rather than enableWriteAheadLogging, which would add a pool of
+             * reader connections. The checkpoint settings are per connection, so everything
+             * here has to run on the one connection.
+             */
+            pragma(db, "journal_mode = WAL");
+            pragma(db, "wal_autocheckpoint = 0");
+
+            db.execSQL(currentSchema
+                    ? WeatherDbHelper.buildCreateWeatherTableSql(WeatherEntry.TABLE_NAME)
+                    : WeatherDbHelper.buildCreateWeatherTableSqlV4(WeatherEntry.TABLE_NAME));
+
+            long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+            /* The first sync fills the table, it is not measured */
+            sync(db, today, nativeUpsert);
+
+            long pages = 0;
+            long elapsedNanos = 0;
+
+            for (int day = 1; day <= SYNCS; day++) {
+
+                pragma(db, "wal_checkpoint(TRUNCATE)");
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                sync(db, today + day * SunshineDateUtils.DAY_IN_MILLIS, nativeUpsert);
+                elapsedNanos += SystemClock.elapsedRealtimeNanos() - start;
+
+                pages += walFrames(db);
+            }
+
+            assertEquals(LOCATIONS * (FORECAST_DAYS + SYNCS), DatabaseUtils.queryNumEntries(db,
+                    WeatherEntry.TABLE_NAME));
+
+            Log.i(TAG, name + ": " + pages / SYNCS + " pages written per sync, "
+                    + elapsedNanos / SYNCS / 1000 + " us per sync of "
+                    + LOCATIONS * FORECAST_DAYS + " rows");
+
+        } finally {
+            db.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    /* One transaction writing the forecast window starting at startDay of every location */
+    private void sync(SQLiteDatabase db, long startDay, Boolean nativeUpsert) {
+
+        SyncWriter writer = nativeUpsert == null ? newReplaceWriter(db)
+                : newUpsertWriter(db, nativeUpsert);
+
+        db.beginTransactionNonExclusive();
+        try {
+            for (int index = 0; index < LOCATIONS; index++) {
+
+                SyntheticForecastGenerator.Location location = mGenerator.location(index);
+
+                for (int day = 0; day < FORECAST_DAYS; day++) {
+                    DayForecast forecast = mGenerator.day(location,
+                            startDay + day * SunshineDateUtils.DAY_IN_MILLIS);
+                    writer.write(index + 1, toContentValues(forecast));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            writer.close();
+            db.endTransaction();
+        }
+    }
+
+    private static SyncWriter newReplaceWriter(SQLiteDatabase db) {
+
+        final SQLiteStatement insert = db.compileStatement(SQL_INSERT_V5);
+
+        return new SyncWriter() {
+            @Override
+            public void write(long locationId, ContentValues value) {
+                insert.clearBindings();
+                insert.bindLong(1, locationId);
+                insert.bindLong(2, value.getAsLong(WeatherEntry.COLUMN_DATE));
+                insert.bindLong(3, value.getAsLong(WeatherEntry.COLUMN_WEATHER_ID));
+                insert.bindDouble(4, value.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP));
+                insert.bindDouble(5, value.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP));
+                insert.bindDouble(6, value.getAsDouble(WeatherEntry.COLUMN_HUMIDITY));
+                insert.bindDouble(7, value.getAsDouble(WeatherEntry.COLUMN_PRESSURE));
+                insert.bindDouble(8, value.getAsDouble(WeatherEntry.COLUMN_WIND_SPEED));
+                insert.bindDouble(9, value.getAsDouble(WeatherEntry.COLUMN_DEGREES));
+                insert.executeInsert();
+            }
+
+            @Override
+            public void close() {
+                insert.close();
+            }
+        };
+    }
+
+    private static SyncWriter newUpsertWriter(SQLiteDatabase db, boolean nativeUpsert) {
+
+        final WeatherRowWriter rowWriter = new WeatherRowWriter(db, nativeUpsert);
+
+        return new SyncWriter() {
+            @Override
+            public void write(long locationId, ContentValues value) {
+                rowWriter.write(locationId, value);
+            }
+
+            @Override
+            public void close() {
+                rowWriter.close();
+            }
+        };
+    }
+
+    private static ContentValues toContentValues(DayForecast forecast) {
+
+        ContentValues values = new ContentValues();
+        values.put(WeatherEntry.COLUMN_DATE, forecast.date);
+        values.put(WeatherEntry.COLUMN_WEATHER_ID, forecast.weatherId);
+        values.put(WeatherEntry.COLUMN_MIN_TEMP, forecast.low);
+        values.put(WeatherEntry.COLUMN_MAX_TEMP, forecast.high);
+        values.put(WeatherEntry.COLUMN_HUMIDITY, forecast.humidity);
+        values.put(WeatherEntry.COLUMN_PRESSURE, forecast.pressure);
+        values.put(WeatherEntry.COLUMN_WIND_SPEED, forecast.windSpeed);
+        values.put(WeatherEntry.COLUMN_DEGREES, forecast.windDirection);
+        return values;
+    }
+
+    /* The second column of a checkpoint result is the number of frames in the WAL */
+    private static long walFrames(SQLiteDatabase db) {
+
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(1) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /* Some PRAGMAs return a row, so they all go through a query */
+    private static void pragma(SQLiteDatabase db, String pragma) {
+
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String sqliteVersion() {
+
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            return DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null);
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.ForecastResponseCache;
+import com.example.android.sunshine.utilities.NetworkUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Syncs a location against a stand-in forecast server, see :standin-server, and checks that the
+ * conditional requests hit and miss when they should, and what that does to the hit rate of
+ * the ForecastResponseCache. Skipped unless the server is given:
+ *
+ *   ./gradlew :standin-server:serve --args='--change-every 10'
+ *   ./gradlew connectedAndroidTest
+ *       -Pandroid.testInstrumentationRunnerArguments.standinBaseUrl=http://10.0.2.2:8080/staticweather
+ *       -Pandroid.testInstrumentationRunnerArguments.standinChangeSeconds=10
+ *
+ * Without standinChangeSeconds the miss after a change is not tested, the server's forecasts
+ * only change once a day by default. Keep the interval well above the time two syncs take.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConditionalSyncTest {
+
+    private static final String ARGUMENT_BASE_URL = "standinBaseUrl";
+    private static final String ARGUMENT_CHANGE_SECONDS = "standinChangeSeconds";
+
+    /* Unique per run, so no earlier response for it can be in the cache */
+    private static final String LOCATION_SETTING = "Conditional sync test ";
+
+    private Context mContext;
+
+    private String mPreviousBaseUrl;
+
+    private final List<Long> mLocationIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+
+        String baseUrl = InstrumentationRegistry.getArguments().getString(ARGUMENT_BASE_URL);
+        assumeTrue("No " + ARGUMENT_BASE_URL + " argument, skipped", baseUrl != null);
+
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        mPreviousBaseUrl = NetworkUtils.getForecastBaseUrl();
+        NetworkUtils.setForecastBaseUrl(baseUrl);
+    }
+
+    @After
+    public void tearDown() {
+
+        if (mPreviousBaseUrl == null) return;
+
+        NetworkUtils.setForecastBaseUrl(mPreviousBaseUrl);
+
+        /* The forecast rows go with their location */
+        for (Long locationId : mLocationIds) {
+            mContext.getContentResolver().delete(LocationEntry.buildLocationUri(locationId),
+                    null, null);
+        }
+    }
+
+    @Test
+    public void notModifiedUntilTheForecastChanges() throws Exception {
+
+        SunshineSyncEngine engine = new SunshineSyncEngine(mContext);
+        AdaptiveSyncScheduler scheduler = new AdaptiveSyncScheduler(mContext);
+        ForecastResponseCache cache = ForecastResponseCache.getInstance(mContext);
+
+        List<SunshineSyncEngine.SavedLocation> locations = Collections.singletonList(
+                insertLocation(LOCATION_SETTING + System.currentTimeMillis()));
+
+        long requests = cache.getRequestCount();
+        long notModified = cache.getNotModifiedCount();
+
+        /* First sync: nothing to be conditional on */
+        SunshineSyncEngine.SyncReport report = engine.syncLocations(locations);
+        assertEquals(1, report.locationsSynced);
+        assertEquals(notModified, cache.getNotModifiedCount());
+        locations = scheduler.recordSync(locations, report);
+
+        /* Unchanged payload: 304, nothing parsed or written */
+        report = engine.syncLocations(locations);
+        assertEquals(1, report.locationsNotModified);
+        assertEquals(0, report.locationsSynced);
+        assertEquals(notModified + 1, cache.getNotModifiedCount());
+        locations = scheduler.recordSync(locations, report);
+
+        String changeSeconds =
+                InstrumentationRegistry.getArguments().getString(ARGUMENT_CHANGE_SECONDS);
+
+        if (changeSeconds != null) {
+
+            /* Wait for the server to change its forecast, then the cached validators miss */
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Long.parseLong(changeSeconds)) + 500);
+
+            report = engine.syncLocations(locations);
+            assertEquals(1, report.locationsSynced);
+            assertEquals(0, report.locationsNotModified);
+            assertEquals(notModified + 1, cache.getNotModifiedCount());
+        }
+
+        long madeRequests = cache.getRequestCount() - requests;
+        assertEquals(changeSeconds != null ? 3 : 2, madeRequests);
+    }
+
+    /*
+     * The validators of a location that is deleted stay in the cache. Adding it again must not
+     * take the 304 they get as "the stored forecast is current", nothing is stored for it.
+     */
+    @Test
+    public void notModifiedStillFillsANewLocation() {
+
+        SunshineSyncEngine engine = new SunshineSyncEngine(mContext);
+        String locationSetting = LOCATION_SETTING + System.currentTimeMillis();
+
+        SunshineSyncEngine.SavedLocation first = insertLocation(locationSetting);
+        assertEquals(1, engine.syncLocations(Collections.singletonList(first)).locationsSynced);
+
+        mContext.getContentResolver().delete(LocationEntry.buildLocationUri(first.id),
+                null, null);
+
+        SunshineSyncEngine.SavedLocation second = insertLocation(locationSetting);
+        SunshineSyncEngine.SyncReport report =
+                engine.syncLocations(Collections.singletonList(second));
+
+        assertEquals(1, report.locationsSynced);
+        assertEquals(0, report.locationsNotModified);
+
+        Bundle locationResult = report.locationResults.get(0);
+        assertEquals(countForecastRows(second.id),
+                locationResult.getInt(WeatherContract.KEY_ROWS_INSERTED));
+    }
+
+    private SunshineSyncEngine.SavedLocation insertLocation(String locationSetting) {
+
+        ContentResolver resolver = mContext.getContentResolver();
+
+        ContentValues values = new ContentValues();
+        values.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+
+        Uri locationUri = resolver.insert(LocationEntry.CONTENT_URI, values);
+        long locationId = Long.parseLong(locationUri.getLastPathSegment());
+        mLocationIds.add(locationId);
+
+        return new SunshineSyncEngine.SavedLocation(locationId, locationSetting, null);
+    }
+
+    private int countForecastRows(long locationId) {
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherUriForLocation(locationId), null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.metrics.SyncMetrics;
+import com.example.android.sunshine.utilities.NetworkUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Syncs many locations end to end against a stand-in forecast server, see :standin-server, and
+ * logs the sync throughput and the latency of every phase under the SyncLoadBenchmark tag.
+ * Skipped unless the server is given:
+ *
+ *   ./gradlew :standin-server:serve --args='--latency 50 --jitter 50'
+ *   ./gradlew connectedAndroidTest
+ *       -Pandroid.testInstrumentationRunnerArguments.standinBaseUrl=http://10.0.2.2:8080/staticweather
+ *
+ * The first round fetches every location, the following rounds mostly get 304s, like a
+ * periodic sync does. The locations are deleted afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncLoadBenchmark {
+
+    private static final String TAG = SyncLoadBenchmark.class.getSimpleName();
+
+    private static final String ARGUMENT_BASE_URL = "standinBaseUrl";
+
+    private static final int LOCATIONS = 200;
+    private static final int ROUNDS = 5;
+    private static final int PARALLELISM = 8;
+
+    @Test
+    public void syncThroughput() {
+
+        String baseUrl = InstrumentationRegistry.getArguments().getString(ARGUMENT_BASE_URL);
+        assumeTrue("No " + ARGUMENT_BASE_URL + " argument, skipped", baseUrl != null);
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        String previousBaseUrl = NetworkUtils.getForecastBaseUrl();
+        NetworkUtils.setForecastBaseUrl(baseUrl);
+
+        List<SunshineSyncEngine.SavedLocation> locations = new ArrayList<>(LOCATIONS);
+
+        try {
+            insertLocations(context, locations);
+            SunshineSyncEngine engine =
+                    new SunshineSyncEngine(context, PARALLELISM,
+                            SunshineSyncEngine.DEFAULT_COMMIT_BATCH_SIZE);
+            AdaptiveSyncScheduler scheduler = new AdaptiveSyncScheduler(context);
+
+            long[] roundMillis = new long[ROUNDS];
+
+            for (int round = 0; round < ROUNDS; round++) {
+
+                long start = SystemClock.elapsedRealtime();
+                SunshineSyncEngine.SyncReport report = engine.syncLocations(locations);
+                roundMillis[round] = SystemClock.elapsedRealtime() - start;
+
+                Log.i(TAG, "Round " + round + ": " + roundMillis[round] + " ms, "
+                        + LOCATIONS * 1000L / Math.max(roundMillis[round], 1)
+                        + " locations/s, " + report);
+
+                assertEquals(0, report.failures.size());
+
+                /* Synced locations have a stored forecast now, so a 304 is really not modified */
+                locations = scheduler.recordSync(locations, report);
+            }
+
+            Arrays.sort(roundMillis);
+            Log.i(TAG, "Rounds: fastest " + roundMillis[0] + " ms, slowest "
+                    + roundMillis[ROUNDS - 1] + " ms");
+
+            StringWriter metrics = new StringWriter();
+            SyncMetrics.getInstance().dump(new PrintWriter(metrics));
+            Log.i(TAG, metrics.toString());
+
+        } finally {
+            NetworkUtils.setForecastBaseUrl(previousBaseUrl);
+
+            /* The forecast rows go with their location */
+            ContentResolver resolver = context.getContentResolver();
+            for (SunshineSyncEngine.SavedLocation location : locations) {
+                resolver.delete(LocationEntry.buildLocationUri(location.id), null, null);
+            }
+        }
+    }
+
+    /* Adds the locations to the list as they are inserted, so a failure still cleans them up */
+    private static void insertLocations(Context context,
+                                        List<SunshineSyncEngine.SavedLocation> locations) {
+
+        ContentResolver resolver = context.getContentResolver();
+
+        for (int i = 0; i < LOCATIONS; i++) {
+
+            String locationSetting = "Load test " + i;
+
+            ContentValues values = new ContentValues();
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+
+            Uri locationUri = resolver.insert(LocationEntry.CONTENT_URI, values);
+            long locationId = Long.parseLong(locationUri.getLastPathSegment());
+
+            locations.add(new SunshineSyncEngine.SavedLocation(locationId, locationSetting, null));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.utilities.NetworkUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Syncs from 1 to 500 locations against a stand-in forecast server, see :standin-server, one
+ * location at a time and then in parallel on the shared fetch pool, and logs the sync time and
+ * throughput of each under the SyncSweepBenchmark tag. Shows from how many locations on the
+ * parallel sync pays off, and that it keeps scaling past the size of the pool. Skipped unless
+ * the server is given:
+ *
+ *   ./gradlew :standin-server:serve --args='--latency 50 --jitter 50'
+ *   ./gradlew connectedAndroidTest
+ *       -Pandroid.testInstrumentationRunnerArguments.standinBaseUrl=http://10.0.2.2:8080/staticweather
+ *
+ * Every sync is a first sync, the locations are new each time and deleted afterwards.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncSweepBenchmark {
+
+    private static final String TAG = SyncSweepBenchmark.class.getSimpleName();
+
+    private static final String ARGUMENT_BASE_URL = "standinBaseUrl";
+
+    private static final int[] LOCATION_COUNTS = {1, 10, 50, 100, 250, 500};
+
+    private static final int[] PARALLELISMS = {1, SunshineSyncEngine.MAX_PARALLELISM};
+
+    @Test
+    public void syncThroughputByLocationCount() {
+
+        String baseUrl = InstrumentationRegistry.getArguments().getString(ARGUMENT_BASE_URL);
+        assumeTrue("No " + ARGUMENT_BASE_URL + " argument, skipped", baseUrl != null);
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        String previousBaseUrl = NetworkUtils.getForecastBaseUrl();
+        NetworkUtils.setForecastBaseUrl(baseUrl);
+
+        try {
+            for (int locationCount : LOCATION_COUNTS) {
+
+                StringBuilder line = new StringBuilder();
+                line.append(locationCount).append(" locations:");
+
+                for (int parallelism : PARALLELISMS) {
+
+                    long millis = measure(context, locationCount, parallelism);
+
+                    line.append(" parallelism ").append(parallelism).append(' ')
+                            .append(millis).append(" ms, ")
+                            .append(locationCount * 1000L / Math.max(millis, 1))
+                            .append(" locations/s;");
+                }
+
+                Log.i(TAG, line.toString());
+            }
+        } finally {
+            NetworkUtils.setForecastBaseUrl(previousBaseUrl);
+        }
+    }
+
+    /* @return How long the first sync of locationCount new locations took, in milliseconds */
+    private static long measure(Context context, int locationCount, int parallelism) {
+
+        List<SunshineSyncEngine.SavedLocation> locations = new ArrayList<>(locationCount);
+
+        try {
+            insertLocations(context, locationCount, locations);
+
+            SunshineSyncEngine engine = new SunshineSyncEngine(context, parallelism,
+                    SunshineSyncEngine.DEFAULT_COMMIT_BATCH_SIZE);
+
+            long start = SystemClock.elapsedRealtime();
+            SunshineSyncEngine.SyncReport report = engine.syncLocations(locations);
+            long millis = SystemClock.elapsedRealtime() - start;
+
+            assertEquals(0, report.failures.size());
+            assertEquals(locationCount, report.locationsSynced);
+
+            return millis;
+
+        } finally {
+            /* The forecast rows go with their location */
+            ContentResolver resolver = context.getContentResolver();
+            for (SunshineSyncEngine.SavedLocation location : locations) {
+                resolver.delete(LocationEntry.buildLocationUri(location.id), null, null);
+            }
+        }
+    }
+
+    /* Adds the locations to the list as they are inserted, so a failure still cleans them up */
+    private static void insertLocations(Context context, int locationCount,
+                                        List<SunshineSyncEngine.SavedLocation> locations) {
+
+        ContentResolver resolver = context.getContentResolver();
+
+        /* Unique per run, so no earlier response for them can be in the cache */
+        String prefix = "Sweep " + System.currentTimeMillis() + " ";
+
+        for (int i = 0; i < locationCount; i++) {
+
+            String locationSetting = prefix + i;
+
+            ContentValues values = new ContentValues();
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+
+            Uri locationUri = resolver.insert(LocationEntry.CONTENT_URI, values);
+            long locationId = Long.parseLong(locationUri.getLastPathSegment());
+
+            locations.add(new SunshineSyncEngine.SavedLocation(locationId, locationSetting, null));
+        }
+    }
+}
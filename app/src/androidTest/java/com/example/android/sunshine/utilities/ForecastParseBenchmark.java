@@ -0,0 +1,83 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.WeatherContract;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Parses generated forecast responses into the ContentValues the sync hands to the provider,
+ * through {@link OpenWeatherJsonUtils#parseForecast}, and logs the time and the number of
+ * allocations per forecast under the ForecastParseBenchmark tag. The JMH benchmarks can't build
+ * ContentValues, an Android class, so the rows are measured here.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastParseBenchmark {
+
+    private static final String TAG = ForecastParseBenchmark.class.getSimpleName();
+
+    private static final long SEED = 42;
+
+    private static final int[] DAYS = {14, 365};
+    private static final int WARMUP_PARSES = 50;
+    private static final int MEASURED_PARSES = 500;
+
+    @Test
+    public void parseForecasts() throws IOException {
+
+        SyntheticForecastGenerator generator = new SyntheticForecastGenerator(SEED);
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        for (int days : DAYS) {
+
+            String json = generator.json(0, today, days);
+
+            OpenWeatherJsonUtils.Forecast forecast =
+                    OpenWeatherJsonUtils.parseForecast(new StringReader(json));
+            assertNotNull(forecast);
+            assertEquals(days, forecast.weatherValues.length);
+
+            ContentValues first = forecast.weatherValues[0];
+            assertEquals(today, (long) first.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+
+            run(json, days, WARMUP_PARSES);
+            run(json, days, MEASURED_PARSES);
+        }
+    }
+
+    private static void run(String json, int days, int parses) throws IOException {
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int i = 0; i < parses; i++) {
+            OpenWeatherJsonUtils.parseForecast(new StringReader(json));
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        int allocations = Debug.getThreadAllocCount();
+
+        Debug.stopAllocCounting();
+
+        if (parses == MEASURED_PARSES) {
+            Log.i(TAG, days + " days: " + elapsed / parses / 1000 + " us/forecast, "
+                    + allocations / parses + " allocations/forecast");
+        }
+    }
+}
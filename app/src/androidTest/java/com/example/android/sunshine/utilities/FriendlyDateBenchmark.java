@@ -0,0 +1,77 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Formats the dates of a 14 day forecast over and over, once without and once with
+ * {@link FriendlyDateCache}, and logs the time and the number of allocations per call under
+ * the FriendlyDateBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FriendlyDateBenchmark {
+
+    private static final String TAG = FriendlyDateBenchmark.class.getSimpleName();
+
+    private static final int DAYS = 14;
+    private static final int WARMUP_CALLS = 2000;
+    private static final int MEASURED_CALLS = 20000;
+
+    @Test
+    public void friendlyDates() {
+
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        for (int day = 0; day < DAYS; day++) {
+            long date = today + day * SunshineDateUtils.DAY_IN_MILLIS;
+            assertEquals(SunshineDateUtils.formatFriendlyDateString(context, date, false),
+                    SunshineDateUtils.getFriendlyDateString(context, date, false));
+        }
+
+        run(context, today, false, WARMUP_CALLS);
+        run(context, today, true, WARMUP_CALLS);
+
+        run(context, today, false, MEASURED_CALLS);
+        run(context, today, true, MEASURED_CALLS);
+    }
+
+    private static void run(Context context, long today, boolean cached, int calls) {
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+
+        for (int i = 0; i < calls; i++) {
+            long date = today + (i % DAYS) * SunshineDateUtils.DAY_IN_MILLIS;
+            if (cached) {
+                SunshineDateUtils.getFriendlyDateString(context, date, false);
+            } else {
+                SunshineDateUtils.formatFriendlyDateString(context, date, false);
+            }
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        int allocations = Debug.getThreadAllocCount();
+
+        Debug.stopAllocCounting();
+
+        if (calls == MEASURED_CALLS) {
+            Log.i(TAG, (cached ? "Cached:    " : "Formatted: ")
+                    + elapsed / calls + " ns/call, "
+                    + (float) allocations / calls + " allocations/call");
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.android.sunshine;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,10 +8,10 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import java.util.List;
 
 public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
@@ -36,7 +35,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     private boolean mUseTodayLayout;
 
-    private Cursor mCursor;
+    /*
+     * Diffs each new list against the current one on a background thread and dispatches only
+     * the rows that were inserted, removed or changed, so a sync that changed two days rebinds
+     * two rows instead of the whole list.
+     */
+    private final AsyncListDiffer<ForecastItem> mDiffer =
+            new AsyncListDiffer<>(this, ForecastItem.DIFF_CALLBACK);
 
 
     public ForecastAdapter(@NonNull Context context, ForecastAdapterOnClickHandler clickHandler) {
@@ -82,82 +87,39 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     }
 
     // Override onBindViewHolder
-    // Set the text of the TextView to the weather for this list item's position
+    // Everything was formatted by ForecastLoader, binding only hands the fields to the views
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
 
-        mCursor.moveToPosition(position);
+        ForecastItem item = mDiffer.getCurrentList().get(position);
 
-        /****************
-         * Weather Icon *
-         ****************/
-        int weatherId = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
-        int weatherImageId;
         int viewType = getItemViewType(position);
 
         switch (viewType) {
 
             case VIEW_TYPE_TODAY:
-                weatherImageId = SunshineWeatherUtils.
-                        getLargeArtResourceIdForWeatherCondition(weatherId);
+                forecastAdapterViewHolder.iconView.setImageResource(item.largeIconResId);
                 break;
 
             case VIEW_TYPE_FUTURE_DAY:
-                weatherImageId = SunshineWeatherUtils.
-                        getSmallArtResourceIdForWeatherCondition(weatherId);
+                forecastAdapterViewHolder.iconView.setImageResource(item.smallIconResId);
                 break;
 
             default:
                 throw new IllegalArgumentException("Invalid View Type , value of" + viewType);
-
-
         }
 
+        forecastAdapterViewHolder.dateView.setText(item.dateText);
 
-        forecastAdapterViewHolder.iconView.setImageResource(weatherImageId);
-
-
-        /****************
-         * Weather Date *
-         ****************/
-        long dataInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
-        //human readable date conversion
-        String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dataInMillis, false);
-        forecastAdapterViewHolder.dateView.setText(dateString);
-
-
-        /***********************
-         * Weather Description *
-         ***********************/
-
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(mContext, weatherId);
-        String descriptionAlly = mContext.getString(R.string.a11y_forecast, description);
-
-        forecastAdapterViewHolder.descriptionView.setText(description);
-        forecastAdapterViewHolder.descriptionView.setContentDescription(descriptionAlly);
-
-        /**************************
-         * High (max) temperature *
-         **************************/
-        double highInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
-        String highString = SunshineWeatherUtils.formatTemperature(mContext, highInCelsius);
-        String highAlly = mContext.getString(R.string.a11y_high_temp, highString);
+        forecastAdapterViewHolder.descriptionView.setText(item.description);
+        forecastAdapterViewHolder.descriptionView.setContentDescription(item.descriptionA11y);
 
-        forecastAdapterViewHolder.highTempView.setText(highString);
-        forecastAdapterViewHolder.highTempView.setContentDescription(highAlly);
-
-
-        /*************************
-         * Low (min) temperature *
-         *************************/
-        double lowInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
-        String lowString = SunshineWeatherUtils.formatTemperature(mContext, lowInCelsius);
-        String lowAlly = mContext.getString(R.string.a11y_low_temp, lowString);
-
-        forecastAdapterViewHolder.lowTempView.setText(lowString);
-        forecastAdapterViewHolder.lowTempView.setContentDescription(lowAlly);
+        forecastAdapterViewHolder.highTempView.setText(item.highText);
+        forecastAdapterViewHolder.highTempView.setContentDescription(item.highA11y);
 
+        forecastAdapterViewHolder.lowTempView.setText(item.lowText);
+        forecastAdapterViewHolder.lowTempView.setContentDescription(item.lowA11y);
     }
 
     // This method simply returns the number of items to display. It is used behind the scenes
@@ -166,9 +128,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     @Override
     public int getItemCount() {
 
-        if (null == mCursor) return 0;
-
-        return mCursor.getCount();
+        return mDiffer.getCurrentList().size();
     }
 
     @Override
@@ -182,13 +142,12 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     }
 
-    void swapCursor(Cursor newCursor) {
-        //updating newCursor to notify change
-        mCursor = newCursor;
-
-        notifyDataSetChanged();
-
-
+    /*
+     * Hands a new list to the differ. Only the differences to the rows shown now are
+     * dispatched, once the diff is done. Null clears the list.
+     */
+    void swapItems(List<ForecastItem> items) {
+        mDiffer.submitList(items);
     }
 
 
@@ -222,8 +181,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
             int adapterPosition = getAdapterPosition();
 
-            mCursor.moveToPosition(adapterPosition);
-            long dataInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            /* The row may be on its way out after a diff */
+            if (adapterPosition == RecyclerView.NO_POSITION) return;
+
+            long dataInMillis = mDiffer.getCurrentList().get(adapterPosition).date;
             mClickHandler.onClick(dataInMillis);
 
         }
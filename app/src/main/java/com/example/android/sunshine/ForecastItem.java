@@ -0,0 +1,91 @@
+package com.example.android.sunshine;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * One row of the forecast list, fully formatted: every string the row shows, its accessibility
+ * descriptions and its icon resources. Items are built by {@link ForecastLoader} on a background
+ * thread, so binding a row is nothing more than handing these fields to its views.
+ */
+final class ForecastItem {
+
+    static final DiffUtil.ItemCallback<ForecastItem> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<ForecastItem>() {
+                /* There is one row per day, so the date identifies a row */
+                @Override
+                public boolean areItemsTheSame(@NonNull ForecastItem oldItem,
+                                               @NonNull ForecastItem newItem) {
+                    return oldItem.date == newItem.date;
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull ForecastItem oldItem,
+                                                  @NonNull ForecastItem newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+
+    /* Normalized UTC date, the row's key and what a click opens */
+    final long date;
+
+    final String dateText;
+
+    final String description;
+    final String descriptionA11y;
+
+    final String highText;
+    final String highA11y;
+
+    final String lowText;
+    final String lowA11y;
+
+    final int smallIconResId;
+    final int largeIconResId;
+
+    /*
+     * The first row may use the "today" layout. Keeping it in the contents means the row that
+     * moves up to the top after a day rollover is rebound with the right view type.
+     */
+    final boolean firstRow;
+
+    ForecastItem(long date, String dateText, String description, String descriptionA11y,
+                 String highText, String highA11y, String lowText, String lowA11y,
+                 int smallIconResId, int largeIconResId, boolean firstRow) {
+        this.date = date;
+        this.dateText = dateText;
+        this.description = description;
+        this.descriptionA11y = descriptionA11y;
+        this.highText = highText;
+        this.highA11y = highA11y;
+        this.lowText = lowText;
+        this.lowA11y = lowA11y;
+        this.smallIconResId = smallIconResId;
+        this.largeIconResId = largeIconResId;
+        this.firstRow = firstRow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ForecastItem)) return false;
+
+        ForecastItem other = (ForecastItem) o;
+        return date == other.date
+                && smallIconResId == other.smallIconResId
+                && largeIconResId == other.largeIconResId
+                && firstRow == other.firstRow
+                && dateText.equals(other.dateText)
+                && description.equals(other.description)
+                && descriptionA11y.equals(other.descriptionA11y)
+                && highText.equals(other.highText)
+                && highA11y.equals(other.highA11y)
+                && lowText.equals(other.lowText)
+                && lowA11y.equals(other.lowA11y);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (date ^ (date >>> 32));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.loader.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads the forecast of a location from today onwards and turns it into {@link ForecastItem}s,
+ * all on the loader's background thread. The cursor is closed as soon as the items are built.
+ * Like a CursorLoader, it reloads whenever the location's weather rows change.
+ */
+class ForecastLoader extends AsyncTaskLoader<List<ForecastItem>> {
+
+    private static final String[] FORECAST_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private static final int INDEX_WEATHER_DATE = 0;
+    private static final int INDEX_WEATHER_MAX_TEMP = 1;
+    private static final int INDEX_WEATHER_MIN_TEMP = 2;
+    private static final int INDEX_WEATHER_CONDITION_ID = 3;
+
+    /* Null until the first sync has stored a location, see SunshinePreferences */
+    private final Uri mForecastUri;
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+
+    private List<ForecastItem> mItems;
+
+    private boolean mObserving;
+
+    ForecastLoader(Context context, long locationId) {
+        super(context);
+        mForecastUri = locationId == SunshinePreferences.INVALID_LOCATION_ID ? null
+                : WeatherContract.WeatherEntry.buildWeatherUriForLocation(locationId);
+    }
+
+    @Override
+    public List<ForecastItem> loadInBackground() {
+
+        /* Nothing to show before the first sync. MainActivity restarts the loader after it */
+        if (mForecastUri == null) return Collections.emptyList();
+
+        Cursor cursor = getContext().getContentResolver().query(
+                mForecastUri,
+                FORECAST_PROJECTION,
+                WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards(),
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+
+        if (cursor == null) return Collections.emptyList();
+
+        try {
+            return buildItems(getContext(), cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Formats every row of a forecast cursor. Preferences and format strings are read once for
+     * the whole list, not once per row.
+     */
+    static List<ForecastItem> buildItems(Context context, Cursor cursor) {
+
+        boolean isMetric = SunshinePreferences.isMetric(context);
+
+        String a11yForecast = context.getString(R.string.a11y_forecast);
+        String a11yHigh = context.getString(R.string.a11y_high_temp);
+        String a11yLow = context.getString(R.string.a11y_low_temp);
+
+        List<ForecastItem> items = new ArrayList<>(cursor.getCount());
+
+        if (!cursor.moveToFirst()) return items;
+
+        do {
+            long date = cursor.getLong(INDEX_WEATHER_DATE);
+            int weatherId = cursor.getInt(INDEX_WEATHER_CONDITION_ID);
+
+            String description =
+                    SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+
+            String high = SunshineWeatherUtils.formatTemperature(context,
+                    cursor.getDouble(INDEX_WEATHER_MAX_TEMP), isMetric);
+            String low = SunshineWeatherUtils.formatTemperature(context,
+                    cursor.getDouble(INDEX_WEATHER_MIN_TEMP), isMetric);
+
+            items.add(new ForecastItem(
+                    date,
+                    SunshineDateUtils.getFriendlyDateString(context, date, false),
+                    description,
+                    String.format(a11yForecast, description),
+                    high,
+                    String.format(a11yHigh, high),
+                    low,
+                    String.format(a11yLow, low),
+                    SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId),
+                    SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId),
+                    items.isEmpty()));
+
+        } while (cursor.moveToNext());
+
+        return items;
+    }
+
+    @Override
+    public void deliverResult(List<ForecastItem> items) {
+
+        if (isReset()) return;
+
+        mItems = items;
+
+        if (isStarted()) super.deliverResult(items);
+    }
+
+    @Override
+    protected void onStartLoading() {
+
+        if (!mObserving && mForecastUri != null) {
+            /* The sync notifies the weather URI, which reaches observers of weather/location/{id} */
+            getContext().getContentResolver().registerContentObserver(mForecastUri, true, mObserver);
+            mObserving = true;
+        }
+
+        if (mItems != null) deliverResult(mItems);
+
+        if (takeContentChanged() || mItems == null) forceLoad();
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+
+        onStopLoading();
+
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+
+        mItems = null;
+    }
+}
@@ -3,7 +3,6 @@ package com.example.android.sunshine;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.loader.app.LoaderManager;
-import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -11,7 +10,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.Intent;
 
-import android.database.Cursor;
+import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
@@ -21,41 +20,34 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 
+import androidx.preference.PreferenceManager;
+
 
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
 
+import java.util.List;
 
 
 public class MainActivity extends AppCompatActivity implements
         ForecastAdapter.ForecastAdapterOnClickHandler,
-        LoaderManager.LoaderCallbacks<Cursor> {
+        LoaderManager.LoaderCallbacks<List<ForecastItem>>,
+        SharedPreferences.OnSharedPreferenceChangeListener {
 
 
     private static final String TAG = MainActivity.class.getSimpleName();
 
-    //column name projection
-    public static final String[] MAIN_FORECAST_PROJECTION = {
-
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
-    };
-
-    public static final int INDEX_WEATHER_DATE = 0;
-    public static final int INDEX_WEATHER_MAX_TEMP = 1;
-    public static final int INDEX_WEATHER_MIN_TEMP = 2;
-    public static final int INDEX_WEATHER_CONDITION_ID = 3;
-
-
     private RecyclerView mRecyclerView;
     private ForecastAdapter mForecastAdapter;
 
     private ProgressBar mLoadingIndicator;
     private static final int ID_FORECAST_LOADER = 44;
-    private int mPosition = RecyclerView.NO_POSITION;
+
+    /* The location whose forecast the loader is showing */
+    private long mLocationId;
+
+    private boolean mReportedFullyDrawn;
 
 
     @Override
@@ -100,13 +92,67 @@ public class MainActivity extends AppCompatActivity implements
 
         showLoading();
 
+        mLocationId = SunshinePreferences.getCurrentLocationId(this);
+
         getSupportLoaderManager().initLoader(ID_FORECAST_LOADER, null, this);
 
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+
 
         SunshineSyncUtils.initialize(this);
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+    }
+
+    /*
+     * When the sync switches to another saved location, point the loader at that location's
+     * forecast. The cached rows show right away, the network refresh follows through the
+     * provider notification. On a fresh install this is also how the loader gets its first
+     * location: it starts out without one and loads nothing until the first sync stores it.
+     *
+     * The rows are formatted by the loader, so a preference that changes the formatting (units,
+     * for one) has it build them again. Every other preference is left alone: the sync writes
+     * some on each run, and none of them shows in the list.
+     */
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+
+        if (SunshinePreferences.PREF_LOCATION_ID.equals(key)) {
+
+            /*
+             * Read from the SharedPreferences that changed. The snapshot is swapped by another
+             * listener, which may not have run yet.
+             */
+            long locationId = sharedPreferences.getLong(SunshinePreferences.PREF_LOCATION_ID,
+                    SunshinePreferences.INVALID_LOCATION_ID);
+
+            if (locationId != mLocationId) {
+                mLocationId = locationId;
+                mRecyclerView.scrollToPosition(0);
+                getSupportLoaderManager().restartLoader(ID_FORECAST_LOADER, null, this);
+            }
+            return;
+        }
+
+        if (!SunshinePreferences.affectsFormatting(this, key)) return;
+
+        /* The loader formats with the snapshot, which may not have been swapped yet */
+        SunshinePreferences.reload(this);
+
+        Loader<List<ForecastItem>> loader =
+                getSupportLoaderManager().getLoader(ID_FORECAST_LOADER);
+
+        if (loader != null) loader.onContentChanged();
+    }
+
     private void openPreferredLocationInMap() {
 
         double[] coords = SunshinePreferences.getLocationCoordinates(this);
@@ -128,23 +174,13 @@ public class MainActivity extends AppCompatActivity implements
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
+    public Loader<List<ForecastItem>> onCreateLoader(int loaderId, Bundle bundle) {
 
         switch (loaderId) {
             case ID_FORECAST_LOADER:
 
-                Uri foreCastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
-
-                return new CursorLoader(this,
-                        foreCastQueryUri,
-                        MAIN_FORECAST_PROJECTION,
-                        selection,
-                        null,
-                        sortOrder);
+                /* Queries and formats the rows off the main thread */
+                return new ForecastLoader(this, mLocationId);
 
             default:
 
@@ -156,21 +192,26 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-
-        mForecastAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<List<ForecastItem>> loader, List<ForecastItem> items) {
 
-        if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
+        /* Only changed rows are updated, the list keeps its scroll position */
+        mForecastAdapter.swapItems(items);
 
-        mRecyclerView.smoothScrollToPosition(mPosition);
+        if (!items.isEmpty()) {
+            showWeatherDataView();
 
-        if (data.getCount() != 0) showWeatherDataView();
+            /* Marks the end of a cold start, see scripts/cold_start_benchmark.sh */
+            if (!mReportedFullyDrawn) {
+                mReportedFullyDrawn = true;
+                reportFullyDrawn();
+            }
+        }
 
     }
 
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<List<ForecastItem>> loader) {
 
-        mForecastAdapter.swapCursor(null);
+        mForecastAdapter.swapItems(null);
 
     }
 
@@ -178,7 +219,8 @@ public class MainActivity extends AppCompatActivity implements
 
         Intent weatherDetailIntent = new Intent(MainActivity.this, DetailActivity.class );
 
-        Uri uriForDateClicked = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
+        Uri uriForDateClicked = WeatherContract.WeatherEntry
+                .buildWeatherUriForLocationWithDate(mLocationId, date);
         weatherDetailIntent.setData(uriForDateClicked);
 
         startActivity(weatherDetailIntent);
@@ -11,7 +11,6 @@ import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceScreen;
 
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
 
 public class SettingsFragment extends PreferenceFragmentCompat implements
@@ -89,16 +88,20 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
 
         Activity activity = getActivity();
 
+        /*
+         * The snapshot's own listener may run after this one. Reload it first so the sync and the
+         * forecast list, which both read it, see the value that was just changed.
+         */
+        SunshinePreferences.reload(activity);
+
         if(key.equals(getString(R.string.pref_location_key)))
         {
             SunshinePreferences.resetLocationCoordinates(activity);
             SunshineSyncUtils.startImmediateSync(activity);
-        }else if(key.equals(R.string.pref_units_key)){
-
-           activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI , null);
-
         }
 
+        /* Units are picked up by the forecast screens themselves, see affectsFormatting */
+
         Preference preference = findPreference(key);
         if (null != preference )
         {
@@ -0,0 +1,435 @@
+package com.example.android.sunshine.data;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import java.util.Arrays;
+
+/**
+ * An immutable copy of a query result, stored column by column in primitive arrays: dates in a
+ * long[], weather ids in an int[], temperatures in a double[]. Reading it back through
+ * {@link #newCursor()} is an array access per value, with no CursorWindow to fill and nothing
+ * boxed, and a year of forecast takes a few dozen kilobytes instead of a 2 MB window.
+ *
+ * Each column gets the narrowest array that holds all of its values. Integers fall back to
+ * double[] when the column also holds reals. A column mixing numbers with text or blobs keeps
+ * every value as it was read, boxed, so each cell still reports its own type. Nulls are tracked
+ * on the side.
+ */
+final class ColumnarSnapshot {
+
+    /* A column whose values have all been null so far */
+    private static final int KIND_NONE = -1;
+
+    private static final int KIND_INT = 0;
+    private static final int KIND_LONG = 1;
+    private static final int KIND_DOUBLE = 2;
+    private static final int KIND_STRING = 3;
+    private static final int KIND_OBJECT = 4;
+
+    /* Array header, and the reference to it, as counted by sizeInBytes */
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+
+    /* A boxed Long or Double */
+    private static final int BOXED_NUMBER_BYTES = 16;
+
+    private final String[] mColumnNames;
+    private final int mCount;
+
+    private final int[] mKinds;
+
+    /* Per column, only the array of its kind is set */
+    private final int[][] mInts;
+    private final long[][] mLongs;
+    private final double[][] mDoubles;
+    private final String[][] mStrings;
+    private final Object[][] mObjects;
+
+    /* Per column, null if the column has no nulls */
+    private final boolean[][] mNulls;
+
+    private ColumnarSnapshot(String[] columnNames, int count) {
+        int columns = columnNames.length;
+        mColumnNames = columnNames;
+        mCount = count;
+        mKinds = new int[columns];
+        mInts = new int[columns][];
+        mLongs = new long[columns][];
+        mDoubles = new double[columns][];
+        mStrings = new String[columns][];
+        mObjects = new Object[columns][];
+        mNulls = new boolean[columns][];
+    }
+
+    /**
+     * Copies every row of a cursor in a single pass. A column starts with the kind of its first
+     * value and is widened when a later value doesn't fit, so most columns are never converted.
+     * The cursor's position is left after the last row.
+     */
+    static ColumnarSnapshot copyOf(Cursor cursor) {
+
+        String[] columnNames = cursor.getColumnNames();
+        int columns = columnNames.length;
+        int count = cursor.getCount();
+
+        ColumnarSnapshot snapshot = new ColumnarSnapshot(columnNames.clone(), count);
+        Arrays.fill(snapshot.mKinds, KIND_NONE);
+
+        cursor.moveToPosition(-1);
+        for (int row = 0; cursor.moveToNext(); row++) {
+            for (int column = 0; column < columns; column++) {
+                snapshot.copyValue(cursor, row, column);
+            }
+        }
+
+        /* All-null columns */
+        for (int column = 0; column < columns; column++) {
+            if (snapshot.mKinds[column] == KIND_NONE) snapshot.allocate(column, KIND_INT);
+        }
+
+        return snapshot;
+    }
+
+    private static int kindOf(Cursor cursor, int type, int column) {
+        switch (type) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                long value = cursor.getLong(column);
+                return value == (int) value ? KIND_INT : KIND_LONG;
+            case Cursor.FIELD_TYPE_FLOAT:
+                return KIND_DOUBLE;
+            case Cursor.FIELD_TYPE_STRING:
+                return KIND_STRING;
+            default:
+                return KIND_OBJECT;
+        }
+    }
+
+    /* Numbers widen to the larger of the two, anything else mixed becomes objects */
+    private static int widen(int kind, int other) {
+        if (kind == other) return kind;
+        if (kind <= KIND_DOUBLE && other <= KIND_DOUBLE) return Math.max(kind, other);
+        return KIND_OBJECT;
+    }
+
+    private void copyValue(Cursor cursor, int row, int column) {
+
+        int type = cursor.getType(column);
+
+        if (type == Cursor.FIELD_TYPE_NULL) {
+            if (mNulls[column] == null) mNulls[column] = new boolean[mCount];
+            mNulls[column][row] = true;
+            return;
+        }
+
+        int kind = kindOf(cursor, type, column);
+
+        if (mKinds[column] == KIND_NONE) {
+            allocate(column, kind);
+        } else if (kind != mKinds[column]) {
+            int widened = widen(mKinds[column], kind);
+            if (widened != mKinds[column]) convert(column, widened, row);
+        }
+
+        switch (mKinds[column]) {
+            case KIND_INT:
+                mInts[column][row] = cursor.getInt(column);
+                break;
+            case KIND_LONG:
+                mLongs[column][row] = cursor.getLong(column);
+                break;
+            case KIND_DOUBLE:
+                mDoubles[column][row] = cursor.getDouble(column);
+                break;
+            case KIND_STRING:
+                mStrings[column][row] = cursor.getString(column);
+                break;
+            default:
+                mObjects[column][row] = readObject(cursor, type, column);
+        }
+    }
+
+    private static Object readObject(Cursor cursor, int type, int column) {
+        switch (type) {
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    private void allocate(int column, int kind) {
+        mKinds[column] = kind;
+        switch (kind) {
+            case KIND_INT:
+                mInts[column] = new int[mCount];
+                break;
+            case KIND_LONG:
+                mLongs[column] = new long[mCount];
+                break;
+            case KIND_DOUBLE:
+                mDoubles[column] = new double[mCount];
+                break;
+            case KIND_STRING:
+                mStrings[column] = new String[mCount];
+                break;
+            default:
+                mObjects[column] = new Object[mCount];
+        }
+    }
+
+    /* Moves the values a column has so far, in its first rows, to the array of a wider kind */
+    private void convert(int column, int kind, int rows) {
+
+        int from = mKinds[column];
+
+        int[] ints = mInts[column];
+        long[] longs = mLongs[column];
+        double[] doubles = mDoubles[column];
+        String[] strings = mStrings[column];
+        boolean[] nulls = mNulls[column];
+
+        mInts[column] = null;
+        mLongs[column] = null;
+        mDoubles[column] = null;
+        mStrings[column] = null;
+        allocate(column, kind);
+
+        for (int row = 0; row < rows; row++) {
+
+            if (nulls != null && nulls[row]) continue;
+
+            switch (kind) {
+                case KIND_LONG:
+                    mLongs[column][row] = ints[row];
+                    break;
+                case KIND_DOUBLE:
+                    mDoubles[column][row] = from == KIND_INT ? ints[row] : longs[row];
+                    break;
+                default:
+                    Object value;
+                    if (from == KIND_INT) {
+                        value = (long) ints[row];
+                    } else if (from == KIND_LONG) {
+                        value = longs[row];
+                    } else if (from == KIND_DOUBLE) {
+                        value = doubles[row];
+                    } else {
+                        value = strings[row];
+                    }
+                    mObjects[column][row] = value;
+            }
+        }
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    /**
+     * A new cursor over the snapshot. Cursors share the arrays but each has its own position,
+     * so any number of them can be open at once on any thread.
+     */
+    Cursor newCursor() {
+        return new SnapshotCursor(this);
+    }
+
+    /**
+     * Approximate heap taken by the arrays, for comparing against a CursorWindow. Strings and
+     * blobs count their characters and bytes.
+     */
+    long sizeInBytes() {
+
+        long bytes = 0;
+
+        for (int column = 0; column < mColumnNames.length; column++) {
+
+            bytes += ARRAY_OVERHEAD_BYTES;
+
+            switch (mKinds[column]) {
+                case KIND_INT:
+                    bytes += 4L * mCount;
+                    break;
+                case KIND_LONG:
+                case KIND_DOUBLE:
+                    bytes += 8L * mCount;
+                    break;
+                case KIND_STRING:
+                case KIND_OBJECT:
+                    bytes += (long) REFERENCE_BYTES * mCount;
+                    Object[] values = mKinds[column] == KIND_STRING
+                            ? mStrings[column] : mObjects[column];
+                    for (Object value : values) {
+                        if (value instanceof String) {
+                            bytes += ARRAY_OVERHEAD_BYTES + 2L * ((String) value).length();
+                        } else if (value instanceof byte[]) {
+                            bytes += ARRAY_OVERHEAD_BYTES + ((byte[]) value).length;
+                        } else if (value != null) {
+                            bytes += BOXED_NUMBER_BYTES;
+                        }
+                    }
+                    break;
+            }
+
+            if (mNulls[column] != null) bytes += ARRAY_OVERHEAD_BYTES + mCount;
+        }
+
+        return bytes;
+    }
+
+    /*
+     * Conversions between kinds follow SQLiteCursor: numbers read as text are formatted, text
+     * read as a number is parsed and is 0 if it isn't one, and null reads as 0 or null.
+     */
+    private static final class SnapshotCursor extends AbstractCursor {
+
+        private final ColumnarSnapshot mSnapshot;
+
+        SnapshotCursor(ColumnarSnapshot snapshot) {
+            mSnapshot = snapshot;
+        }
+
+        @Override
+        public int getCount() {
+            return mSnapshot.mCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mSnapshot.mColumnNames;
+        }
+
+        @Override
+        public int getType(int column) {
+
+            if (isNull(column)) return FIELD_TYPE_NULL;
+
+            switch (mSnapshot.mKinds[column]) {
+                case KIND_INT:
+                case KIND_LONG:
+                    return FIELD_TYPE_INTEGER;
+                case KIND_DOUBLE:
+                    return FIELD_TYPE_FLOAT;
+                case KIND_STRING:
+                    return FIELD_TYPE_STRING;
+                default:
+                    Object value = mSnapshot.mObjects[column][mPos];
+                    if (value instanceof Long) return FIELD_TYPE_INTEGER;
+                    if (value instanceof Double) return FIELD_TYPE_FLOAT;
+                    return value instanceof byte[] ? FIELD_TYPE_BLOB : FIELD_TYPE_STRING;
+            }
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            checkPosition();
+            boolean[] nulls = mSnapshot.mNulls[column];
+            return nulls != null && nulls[mPos];
+        }
+
+        @Override
+        public long getLong(int column) {
+
+            checkPosition();
+
+            switch (mSnapshot.mKinds[column]) {
+                case KIND_INT:
+                    return mSnapshot.mInts[column][mPos];
+                case KIND_LONG:
+                    return mSnapshot.mLongs[column][mPos];
+                case KIND_DOUBLE:
+                    return (long) mSnapshot.mDoubles[column][mPos];
+                case KIND_OBJECT:
+                    Object value = mSnapshot.mObjects[column][mPos];
+                    if (value instanceof Number) return ((Number) value).longValue();
+                    return (long) parse(getString(column));
+                default:
+                    return (long) parse(getString(column));
+            }
+        }
+
+        @Override
+        public double getDouble(int column) {
+
+            checkPosition();
+
+            switch (mSnapshot.mKinds[column]) {
+                case KIND_INT:
+                    return mSnapshot.mInts[column][mPos];
+                case KIND_LONG:
+                    return mSnapshot.mLongs[column][mPos];
+                case KIND_DOUBLE:
+                    return mSnapshot.mDoubles[column][mPos];
+                case KIND_OBJECT:
+                    Object value = mSnapshot.mObjects[column][mPos];
+                    if (value instanceof Number) return ((Number) value).doubleValue();
+                    return parse(getString(column));
+                default:
+                    return parse(getString(column));
+            }
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return (float) getDouble(column);
+        }
+
+        @Override
+        public String getString(int column) {
+
+            if (isNull(column)) return null;
+
+            switch (mSnapshot.mKinds[column]) {
+                case KIND_INT:
+                    return Integer.toString(mSnapshot.mInts[column][mPos]);
+                case KIND_LONG:
+                    return Long.toString(mSnapshot.mLongs[column][mPos]);
+                case KIND_DOUBLE:
+                    return Double.toString(mSnapshot.mDoubles[column][mPos]);
+                case KIND_STRING:
+                    return mSnapshot.mStrings[column][mPos];
+                default:
+                    Object value = mSnapshot.mObjects[column][mPos];
+                    if (value instanceof byte[]) return null;
+                    return value == null ? null : value.toString();
+            }
+        }
+
+        @Override
+        public byte[] getBlob(int column) {
+
+            if (isNull(column)) return null;
+
+            if (mSnapshot.mKinds[column] == KIND_OBJECT
+                    && mSnapshot.mObjects[column][mPos] instanceof byte[]) {
+                return ((byte[]) mSnapshot.mObjects[column][mPos]).clone();
+            }
+
+            String value = getString(column);
+            return value == null ? null : value.getBytes();
+        }
+
+        private static double parse(String value) {
+            if (value == null) return 0;
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
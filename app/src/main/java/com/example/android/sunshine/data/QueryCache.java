@@ -0,0 +1,216 @@
+package com.example.android.sunshine.data;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Query results of WeatherProvider, kept in memory until the next write. The data only changes
+ * when a sync commits, so loaders that reload after a configuration change and notification
+ * lookups are answered without touching the database.
+ *
+ * Results are keyed on everything that goes into the query. Each one is tagged with the write
+ * generation it was read under, and every committed write moves the generation forward, so a
+ * result read before a write is never served after it. The least recently used results are
+ * evicted first, within a bound on entries and one on bytes, and results too large to be worth
+ * holding are not cached at all.
+ *
+ * Results are held as {@link ColumnarSnapshot}s, so a hit costs a small cursor object and
+ * reading it never goes through a CursorWindow.
+ */
+final class QueryCache {
+
+    /* Forecasts of a few locations, their detail rows and the location list */
+    private static final int MAX_ENTRIES = 32;
+
+    /* Larger results go straight from SQLite to the caller. Ten years of one location */
+    static final int MAX_ROWS = 4096;
+
+    /*
+     * What all results together may take, see ColumnarSnapshot.sizeInBytes. The size of a
+     * single CursorWindow, a few ten year forecasts or hundreds of two week ones.
+     */
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Everything that decides the rows of a query.
+     */
+    static final class Key {
+
+        private final String mUri;
+        private final String[] mProjection;
+        private final String mSelection;
+        private final String[] mSelectionArgs;
+        private final String mSortOrder;
+
+        private final int mHashCode;
+
+        Key(Uri uri, String[] projection, String selection, String[] selectionArgs,
+            String sortOrder) {
+
+            mUri = uri.toString();
+            mProjection = projection == null ? null : projection.clone();
+            mSelection = selection;
+            mSelectionArgs = selectionArgs == null ? null : selectionArgs.clone();
+            mSortOrder = sortOrder;
+
+            int hashCode = mUri.hashCode();
+            hashCode = 31 * hashCode + Arrays.hashCode(mProjection);
+            hashCode = 31 * hashCode + (mSelection == null ? 0 : mSelection.hashCode());
+            hashCode = 31 * hashCode + Arrays.hashCode(mSelectionArgs);
+            hashCode = 31 * hashCode + (mSortOrder == null ? 0 : mSortOrder.hashCode());
+            mHashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return mHashCode == other.mHashCode
+                    && mUri.equals(other.mUri)
+                    && Arrays.equals(mProjection, other.mProjection)
+                    && equals(mSelection, other.mSelection)
+                    && Arrays.equals(mSelectionArgs, other.mSelectionArgs)
+                    && equals(mSortOrder, other.mSortOrder);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private static final class Entry {
+
+        final long generation;
+
+        final ColumnarSnapshot snapshot;
+
+        final long bytes;
+
+        Entry(long generation, ColumnarSnapshot snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+            this.bytes = snapshot.sizeInBytes();
+        }
+    }
+
+    private final AtomicLong mWriteGeneration = new AtomicLong();
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /* In access order, least recently used first. Guarded by itself, like mBytes */
+    private final LinkedHashMap<Key, Entry> mEntries =
+            new LinkedHashMap<>(MAX_ENTRIES, 0.75f, true);
+
+    private long mBytes;
+
+    /**
+     * Read before running a query, and handed to {@link #put} with its result.
+     */
+    long getWriteGeneration() {
+        return mWriteGeneration.get();
+    }
+
+    /**
+     * Drops every cached result. Call after a write has been committed, not before: a query that
+     * starts between the two would otherwise cache the rows from before the write under the new
+     * generation.
+     */
+    void invalidate() {
+        mWriteGeneration.incrementAndGet();
+        synchronized (mEntries) {
+            mEntries.clear();
+            mBytes = 0;
+        }
+    }
+
+    /**
+     * @return A new cursor over the cached result, or null if there is none for this key
+     */
+    Cursor get(Key key) {
+
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(key);
+        }
+
+        if (entry == null || entry.generation != mWriteGeneration.get()) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+
+        mHitCount.incrementAndGet();
+        return entry.snapshot.newCursor();
+    }
+
+    /**
+     * Caches the result of a query, unless it is too large or a write was committed since the
+     * query started.
+     *
+     * @param generation The write generation read before the query ran
+     * @param cursor     The result. Consumed when it is cached.
+     *
+     * @return The cursor to hand to the caller: a new one over the cached copy, or the given one
+     */
+    Cursor put(Key key, long generation, Cursor cursor) {
+
+        if (generation != mWriteGeneration.get() || cursor.getCount() > MAX_ROWS) {
+            return cursor;
+        }
+
+        Entry entry;
+        try {
+            entry = new Entry(generation, ColumnarSnapshot.copyOf(cursor));
+        } finally {
+            cursor.close();
+        }
+
+        synchronized (mEntries) {
+            if (generation == mWriteGeneration.get()) {
+                Entry replaced = mEntries.put(key, entry);
+                if (replaced != null) mBytes -= replaced.bytes;
+                mBytes += entry.bytes;
+                trim();
+            }
+        }
+
+        return entry.snapshot.newCursor();
+    }
+
+    /* Evicts the least recently used results until the rest fit. The newest one always stays */
+    private void trim() {
+
+        Iterator<Entry> eldest = mEntries.values().iterator();
+
+        while ((mEntries.size() > MAX_ENTRIES || mBytes > MAX_BYTES) && mEntries.size() > 1) {
+            mBytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+
+    private long getSizeInBytes() {
+        synchronized (mEntries) {
+            return mBytes;
+        }
+    }
+
+    @Override
+    public String toString() {
+        long hits = mHitCount.get();
+        long lookups = hits + mMissCount.get();
+        return "QueryCache: " + hits + " of " + lookups + " queries served from memory (hit rate "
+                + (lookups == 0 ? 0 : Math.round(hits * 100.0 / lookups)) + "%), write generation "
+                + mWriteGeneration.get() + ", " + getSizeInBytes() / 1024 + " KB held";
+    }
+}
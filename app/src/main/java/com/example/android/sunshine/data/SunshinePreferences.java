@@ -16,6 +16,130 @@ public class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * _ID of the current location in the location table. The forecast screens query the weather
+     * rows of this location, so it is set as soon as the sync knows which row the preferred
+     * location maps to.
+     */
+    public static final String PREF_LOCATION_ID = "location_id";
+
+    public static final long INVALID_LOCATION_ID = -1;
+
+    /* Interval, in seconds, of the recurring sync job as it was last scheduled */
+    public static final String PREF_SYNC_JOB_INTERVAL = "sync_job_interval";
+
+    /**
+     * Every preference the app reads, typed and resolved once. Snapshots never change: a
+     * preference change builds a new one and swaps it in, so a caller that needs several values
+     * to agree (say, the location and its coordinates) reads them all from one snapshot.
+     */
+    public static final class Snapshot {
+
+        public final String location;
+        public final boolean isMetric;
+
+        public final boolean latLonAvailable;
+        public final double latitude;
+        public final double longitude;
+
+        public final long locationId;
+
+        public final boolean notificationsEnabled;
+        public final long lastNotificationTimeMillis;
+
+        public final long syncJobIntervalSeconds;
+
+        private Snapshot(Context context, SharedPreferences sp) {
+
+            location = sp.getString(context.getString(R.string.pref_location_key),
+                    context.getString(R.string.pref_location_default));
+
+            String metric = context.getString(R.string.pref_units_metric);
+            isMetric = metric.equals(
+                    sp.getString(context.getString(R.string.pref_units_key), metric));
+
+            latLonAvailable = sp.contains(PREF_COORD_LAT) && sp.contains(PREF_COORD_LONG);
+            latitude = Double.longBitsToDouble(
+                    sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
+            longitude = Double.longBitsToDouble(
+                    sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+
+            locationId = sp.getLong(PREF_LOCATION_ID, INVALID_LOCATION_ID);
+
+            notificationsEnabled = sp.getBoolean(
+                    context.getString(R.string.pref_enable_notifications_key),
+                    context.getResources().getBoolean(R.bool.show_notification_by_default));
+            lastNotificationTimeMillis =
+                    sp.getLong(context.getString(R.string.pref_last_notification), 0);
+
+            syncJobIntervalSeconds = sp.getLong(PREF_SYNC_JOB_INTERVAL, 0);
+        }
+
+        // Returns {latitude, longitude}, a new array on every call.
+        public double[] getCoordinates() {
+            return new double[]{latitude, longitude};
+        }
+    }
+
+    private static volatile Snapshot sSnapshot;
+
+    private static final Object sLock = new Object();
+
+    /*
+     * SharedPreferences only keeps weak references to its listeners, this one has to live as
+     * long as the process.
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    /**
+     * Returns the current preferences. After the first call this is a single volatile read, so
+     * it is cheap enough for per-row formatting.
+     */
+    public static Snapshot getSnapshot(Context context) {
+
+        Snapshot snapshot = sSnapshot;
+        if (snapshot != null) return snapshot;
+
+        synchronized (sLock) {
+
+            if (sSnapshot == null) {
+
+                final Context appContext = context.getApplicationContext();
+                SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+                sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sp, String key) {
+                        reload(appContext);
+                    }
+                };
+                sp.registerOnSharedPreferenceChangeListener(sListener);
+
+                sSnapshot = new Snapshot(appContext, sp);
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot from SharedPreferences right away. The change listener does this
+     * too, but it runs later on the main thread; listeners that read the snapshot while handling
+     * the same change call this first so they don't see the old values.
+     */
+    public static void reload(Context context) {
+
+        Context appContext = context.getApplicationContext();
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(appContext);
+
+        synchronized (sLock) {
+            if (sSnapshot == null) {
+                getSnapshot(appContext);
+            } else {
+                sSnapshot = new Snapshot(appContext, sp);
+            }
+        }
+    }
+
 
     ///Helper method to handle setting location details in Preferences
 
@@ -27,6 +151,9 @@ public class SunshinePreferences {
         editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
         editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
         editor.apply();
+
+        /* apply() has already updated the in-memory preferences */
+        reload(context);
     }
 
     //Resets the stored location coordinates.
@@ -38,106 +165,92 @@ public class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+
+        reload(context);
     }
 
-    //Returns the location currently set in Preferences.
+    public static void setCurrentLocationId(Context context, long locationId) {
 
-    public static String getPreferredWeatherLocation(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
 
-        SharedPreferences prefs = PreferenceManager.
-                getDefaultSharedPreferences(context);
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-        return prefs.getString(keyForLocation, defaultLocation);
+        editor.putLong(PREF_LOCATION_ID, locationId);
+        editor.apply();
 
+        reload(context);
     }
 
+    // Returns the location table _ID of the current location, INVALID_LOCATION_ID before the first sync.
+    public static long getCurrentLocationId(Context context) {
 
-    //Returns true if the user has selected metric temperature display.
-
-    public static boolean isMetric(Context context) {
+        return getSnapshot(context).locationId;
+    }
 
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+    // Returns the interval the sync job was last scheduled with, 0 if it was never scheduled.
+    public static long getSyncJobIntervalSeconds(Context context) {
 
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = prefs.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-        boolean userPreferenceMetric;
+        return getSnapshot(context).syncJobIntervalSeconds;
+    }
 
-        if (metric.equals(preferredUnits)) {
-            userPreferenceMetric = true;
+    public static void setSyncJobIntervalSeconds(Context context, long intervalSeconds) {
 
-        } else {
-            userPreferenceMetric = false;
-        }
-        return userPreferenceMetric;
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
 
+        editor.putLong(PREF_SYNC_JOB_INTERVAL, intervalSeconds);
+        editor.apply();
 
+        reload(context);
     }
 
+    //Returns the location currently set in Preferences.
 
-    // Returns the location coordinates associated with the location.
+    public static String getPreferredWeatherLocation(Context context) {
 
-    public static double[] getLocationCoordinates(Context context) {
+        return getSnapshot(context).location;
+    }
 
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
 
-        double[] preferredCoordinates = new double[2];
+    /*
+     * Returns true if a change of this preference changes how the forecast screens format their
+     * rows, like the units. Such a change has them load their rows again.
+     */
+    public static boolean affectsFormatting(Context context, String key) {
 
-        preferredCoordinates[0] = Double.
-                longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+        return context.getString(R.string.pref_units_key).equals(key);
+    }
 
-        return preferredCoordinates;
 
-    }
+    //Returns true if the user has selected metric temperature display.
 
-    // Returns true if the latitude and longitude values are available.
+    public static boolean isMetric(Context context) {
 
-    public static boolean isLocationLatLonAvailable(Context context) {
+        return getSnapshot(context).isMetric;
+    }
 
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
 
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
+    // Returns the location coordinates associated with the location.
 
-        boolean spContainBothLatitudeAndLongitude = false;
+    public static double[] getLocationCoordinates(Context context) {
 
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
+        return getSnapshot(context).getCoordinates();
+    }
 
-        }
-        return spContainBothLatitudeAndLongitude;
+    // Returns true if the latitude and longitude values are available.
 
+    public static boolean isLocationLatLonAvailable(Context context) {
 
+        return getSnapshot(context).latLonAvailable;
     }
 
     public static boolean areNotificationEnabled(Context context) {
 
-        String displayNotificationKey = context.getString(R.string
-                .pref_enable_notifications_key);
-
-        boolean shouldDisplayNotificationByDefault = context.getResources()
-                .getBoolean(R.bool.show_notification_by_default);
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-        boolean shouldDisplayNotification = sp
-                .getBoolean(displayNotificationKey, shouldDisplayNotificationByDefault);
-
-        return shouldDisplayNotification;
+        return getSnapshot(context).notificationsEnabled;
     }
 
     public static long getLastNotificationTimeInMillis(Context context) {
 
-
-        String lastNotificationKey = context.getString(R.string.pref_last_notification);
-
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
-
-        return lastNotificationTime;
+        return getSnapshot(context).lastNotificationTimeMillis;
     }
 
     public static long getEllapsedTimeSinceLastNotification(Context context) {
@@ -158,6 +271,8 @@ public class SunshinePreferences {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
+
+        reload(context);
     }
 
 
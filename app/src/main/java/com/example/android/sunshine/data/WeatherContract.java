@@ -13,6 +13,86 @@ public class WeatherContract {
 
     public static final String PATH_WEATHER = "weather";
 
+    public static final String PATH_LOCATION = "location";
+
+    /*
+     * Provider call() method used by the sync to merge a freshly parsed forecast into the weather
+     * table. The location _ID goes in the arg, the forecast goes in the extras under
+     * KEY_FORECAST_VALUES and the counts of what actually changed come back in the result Bundle.
+     */
+    public static final String METHOD_MERGE_FORECAST = "merge_forecast";
+
+    public static final String KEY_FORECAST_VALUES = "forecast_values";
+
+    /*
+     * Batched variant of METHOD_MERGE_FORECAST used when syncing many locations: KEY_FORECASTS
+     * holds one Bundle per location with KEY_LOCATION_ID and KEY_FORECAST_VALUES, and they are
+     * all committed in a single transaction. The result carries the totals plus one result
+     * Bundle per location under KEY_FORECASTS.
+     */
+    public static final String METHOD_MERGE_FORECASTS = "merge_forecasts";
+
+    public static final String KEY_FORECASTS = "forecasts";
+
+    public static final String KEY_LOCATION_ID = "location_id";
+
+    public static final String KEY_ROWS_INSERTED = "rows_inserted";
+    public static final String KEY_ROWS_UPDATED = "rows_updated";
+    public static final String KEY_ROWS_DELETED = "rows_deleted";
+
+    /* Per location result only: how many days the merged forecast had */
+    public static final String KEY_FORECAST_DAYS = "forecast_days";
+
+    /*
+     * Provider call() method that answers whether a location already has a forecast from today
+     * onwards, without loading any rows. The location _ID goes in the arg. The result holds
+     * KEY_HAS_FRESH_DATA and the location's LocationEntry.COLUMN_LAST_SYNC_TIME (0 if never).
+     */
+    public static final String METHOD_HAS_FRESH_DATA = "has_fresh_data";
+
+    public static final String KEY_HAS_FRESH_DATA = "has_fresh_data";
+
+
+    /*
+     * Every location the user has looked up is kept here, so switching back to a saved city is a
+     * local query instead of a network round trip.
+     */
+    public static final class LocationEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_LOCATION).build();
+
+        public static final String TABLE_NAME = "location";
+
+        /* The location string from the settings, as it is sent to OpenWeatherMap */
+        public static final String COLUMN_LOCATION_SETTING = "location_setting";
+
+        /* Coordinates returned by OpenWeatherMap for this location, null until the first sync */
+        public static final String COLUMN_COORD_LAT = "coord_lat";
+
+        public static final String COLUMN_COORD_LONG = "coord_long";
+
+        /*
+         * Freshness metadata, written after every sync of the location: when it last synced,
+         * how long to wait before the next sync, and the share of forecast days (0 to 1) that
+         * the last sync changed. All null until the first sync.
+         */
+        public static final String COLUMN_LAST_SYNC_TIME = "last_sync_time";
+
+        public static final String COLUMN_SYNC_INTERVAL = "sync_interval";
+
+        public static final String COLUMN_LAST_CHANGE = "last_change";
+
+
+        public static Uri buildLocationUri(long locationId)
+        {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(Long.toString(locationId))
+                    .build();
+        }
+
+    }
+
 
     public static final class WeatherEntry implements BaseColumns{
 
@@ -38,14 +118,32 @@ public class WeatherContract {
 
         public static final String COLUMN_DEGREES= "degrees";
 
+        /* Foreign key into the location table */
+        public static final String COLUMN_LOCATION_ID = "location_id";
+
 
-        public static Uri buildWeatherUriWithDate(long date)
+        // content://com.example.android.sunshine/weather/location/3
+        public static Uri buildWeatherUriForLocation(long locationId)
         {
             return CONTENT_URI.buildUpon()
+                    .appendPath(PATH_LOCATION)
+                    .appendPath(Long.toString(locationId))
+                    .build();
+        }
+
+        // content://com.example.android.sunshine/weather/location/3/1472214172
+        public static Uri buildWeatherUriForLocationWithDate(long locationId, long date)
+        {
+            return buildWeatherUriForLocation(locationId).buildUpon()
                     .appendPath(Long.toString(date))
                     .build();
         }
 
+        public static long getLocationIdFromUri(Uri uri)
+        {
+            return Long.parseLong(uri.getPathSegments().get(2));
+        }
+
         public static String getSqlSelectForTodayOnwards()
         {
             long normalizeUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
@@ -1,54 +1,439 @@
 package com.example.android.sunshine.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.SystemClock;
+import android.util.Log;
 
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.utilities.BackgroundExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = WeatherDbHelper.class.getSimpleName();
+
     public static final String DATABASE_NAME = "weather.db";
 
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 6;
+
+    /*
+     * Values for the synchronous PRAGMA. In WAL mode NORMAL is still safe against corruption,
+     * a power loss can only roll back the last committed transactions, and it saves an fsync
+     * on every commit. FULL syncs the WAL on every commit as well.
+     */
+    public static final String SYNCHRONOUS_OFF = "OFF";
+    public static final String SYNCHRONOUS_NORMAL = "NORMAL";
+    public static final String SYNCHRONOUS_FULL = "FULL";
+
+    /* Same as SQLite's own default: checkpoint once the WAL grows past 1000 pages */
+    public static final int DEFAULT_WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    private final Context mContext;
+
+    private final String mSynchronousLevel;
+
+    private final int mWalAutoCheckpointPages;
+
+    private final boolean mCheckpointAfterSync;
+
+    /* Set while a checkpoint is waiting on the background executor, so syncs share one */
+    private final AtomicBoolean mCheckpointQueued = new AtomicBoolean();
+
+    /* Whether the SQLite library has ON CONFLICT DO UPDATE, read once the database is open */
+    private volatile boolean mSupportsUpsert;
+
+    /*
+     * The location row the version 4 upgrade created, made the current location in onOpen once
+     * the upgrade has committed. A rolled back upgrade never gets there.
+     */
+    private long mMigratedLocationId = SunshinePreferences.INVALID_LOCATION_ID;
+
+    /*
+     * Ordered schema history. Every version bump adds the step that upgrades from the previous
+     * version here, so existing forecasts survive app updates. Databases older than the first
+     * step predate this history and are rebuilt from scratch.
+     */
+    private final List<WeatherDbMigration> mMigrations = new ArrayList<>();
 
     public WeatherDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, SYNCHRONOUS_NORMAL, DEFAULT_WAL_AUTOCHECKPOINT_PAGES, true);
+    }
+
+    /**
+     * @param synchronousLevel       One of the SYNCHRONOUS_ values
+     * @param walAutoCheckpointPages WAL size in pages that triggers an automatic checkpoint,
+     *                               0 or less turns automatic checkpoints off
+     * @param checkpointAfterSync    If true, a passive checkpoint is queued after each sync that
+     *                               changed rows, so the WAL is folded back while the app is idle
+     */
+    public WeatherDbHelper(Context context, String synchronousLevel, int walAutoCheckpointPages,
+                           boolean checkpointAfterSync) {
+        this(context, DATABASE_NAME, synchronousLevel, walAutoCheckpointPages,
+                checkpointAfterSync);
+    }
+
+    /* For tests and benchmarks that must not touch the app's own database */
+    WeatherDbHelper(Context context, String databaseName, String synchronousLevel,
+                    int walAutoCheckpointPages, boolean checkpointAfterSync) {
+        super(context, databaseName, null, DATABASE_VERSION);
+
+        mContext = context.getApplicationContext();
+        mSynchronousLevel = synchronousLevel;
+        mWalAutoCheckpointPages = walAutoCheckpointPages;
+        mCheckpointAfterSync = checkpointAfterSync;
+
+        /*
+         * With write-ahead logging, readers get their own connections from the pool and read
+         * the last committed snapshot, so the UI queries never wait on a sync transaction.
+         */
+        setWriteAheadLoggingEnabled(true);
+
+        mMigrations.add(new WeatherDbMigration(3) {
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                migrateToLocationTable(db);
+            }
+        });
+
+        mMigrations.add(new WeatherDbMigration(4) {
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                addLocationFreshnessColumns(db);
+            }
+        });
+
+        mMigrations.add(new WeatherDbMigration(5) {
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                rebuildWeatherTableForUpsert(db);
+            }
+        });
+    }
+
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+
+        /* Deleting a location takes its forecast rows with it */
+        db.setForeignKeyConstraintsEnabled(true);
+
+        db.execSQL("PRAGMA synchronous = " + mSynchronousLevel);
+
+        /* This PRAGMA returns the new value, so it has to go through a query */
+        Cursor cursor = db.rawQuery("PRAGMA wal_autocheckpoint = "
+                + Math.max(mWalAutoCheckpointPages, 0), null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+
+        mSupportsUpsert = WeatherRowWriter.supportsUpsert(db);
+
+        if (mMigratedLocationId != SunshinePreferences.INVALID_LOCATION_ID) {
+            SunshinePreferences.setCurrentLocationId(mContext, mMigratedLocationId);
+            mMigratedLocationId = SunshinePreferences.INVALID_LOCATION_ID;
+        }
+    }
+
+    /**
+     * @return Whether forecast rows can be upserted in a single statement, see WeatherRowWriter.
+     * Only known once the database has been opened.
+     */
+    public boolean supportsUpsert() {
+        return mSupportsUpsert;
+    }
+
+    /**
+     * Queues a passive checkpoint on the background executor if this helper was configured to
+     * checkpoint after syncs. It runs after the sync has returned, never on the sync's own
+     * thread, and a passive checkpoint never waits on readers, it copies whatever it can and
+     * returns. Syncs that finish while one is still queued share it.
+     */
+    public void checkpointAfterSync() {
+
+        if (!mCheckpointAfterSync || !mCheckpointQueued.compareAndSet(false, true)) return;
+
+        BackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                mCheckpointQueued.set(false);
+
+                Cursor cursor = getWritableDatabase()
+                        .rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+                try {
+                    cursor.moveToFirst();
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+
+    private static final String SQL_CREATE_LOCATION_TABLE =
+
+            "CREATE TABLE " + LocationEntry.TABLE_NAME + " ( " +
+
+                    LocationEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                    LocationEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, " +
+
+                    LocationEntry.COLUMN_COORD_LAT + " REAL, " +
+                    LocationEntry.COLUMN_COORD_LONG + " REAL, " +
+
+                    LocationEntry.COLUMN_LAST_SYNC_TIME + " INTEGER, " +
+                    LocationEntry.COLUMN_SYNC_INTERVAL + " INTEGER, " +
+                    LocationEntry.COLUMN_LAST_CHANGE + " REAL, " +
+
+                    " UNIQUE (" + LocationEntry.COLUMN_LOCATION_SETTING + "));";
+
+    /*
+     * The location table as version 4 created it. Migrations build the schema of their own
+     * version, later columns are added by the migrations that introduced them.
+     */
+    private static final String SQL_CREATE_LOCATION_TABLE_V4 =
+
+            "CREATE TABLE " + LocationEntry.TABLE_NAME + " ( " +
+
+                    LocationEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                    LocationEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, " +
+
+                    LocationEntry.COLUMN_COORD_LAT + " REAL, " +
+                    LocationEntry.COLUMN_COORD_LONG + " REAL, " +
+
+                    " UNIQUE (" + LocationEntry.COLUMN_LOCATION_SETTING + "));";
+
+    /*
+     * The UNIQUE (location_id, date) constraint is backed by a composite index, which is what
+     * every per-location query and the forecast merge look rows up by.
+     *
+     * A day that is written again is updated in place by WeatherRowWriter. The constraint has no
+     * ON CONFLICT REPLACE, which deleted the old row and inserted a new one, rewriting the table
+     * page and both index entries, and _ID has no AUTOINCREMENT, which wrote sqlite_sequence on
+     * every insert. Nothing refers to forecast rows by _ID.
+     */
+    static String buildCreateWeatherTableSql(String tableName) {
+
+        return "CREATE TABLE " + tableName + " ( " +
+
+                WeatherEntry._ID + " INTEGER PRIMARY KEY, " +
+
+                WeatherEntry.COLUMN_LOCATION_ID + " INTEGER NOT NULL REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + ") ON DELETE CASCADE, " +
+
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+
+                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+
+                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+
+                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+
+                " UNIQUE (" + WeatherEntry.COLUMN_LOCATION_ID + ", " +
+                WeatherEntry.COLUMN_DATE + "));";
     }
 
+    /* The weather table as versions 4 and 5 created it, see buildCreateWeatherTableSql */
+    static String buildCreateWeatherTableSqlV4(String tableName) {
+
+        return "CREATE TABLE " + tableName + " ( " +
+
+                WeatherEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                WeatherEntry.COLUMN_LOCATION_ID + " INTEGER NOT NULL REFERENCES " +
+                LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + ") ON DELETE CASCADE, " +
+
+                WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
+                WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+
+                WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+
+                WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+
+                WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
+                WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, "    +
+
+                " UNIQUE (" + WeatherEntry.COLUMN_LOCATION_ID + ", " +
+                WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);";
+    }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
 
-        final String SQL_CREATE_WEATHER_TABLE =
+        sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
+
+        sqLiteDatabase.execSQL(buildCreateWeatherTableSql(WeatherEntry.TABLE_NAME));
+
+    }
+
+    /*
+     * Version 4 moved from a single city to a location table. The rows that are already stored
+     * belong to the location currently set in the preferences, so that location becomes the
+     * first row of the new table and the weather table is rebuilt with a location_id pointing
+     * at it. Only the database is touched here: the preference follows in onOpen.
+     */
+    private void migrateToLocationTable(SQLiteDatabase db) {
+
+        db.execSQL(SQL_CREATE_LOCATION_TABLE_V4);
+
+        SunshinePreferences.Snapshot prefs = SunshinePreferences.getSnapshot(mContext);
 
-                "CREATE TABLE " + WeatherEntry.TABLE_NAME + " ( " +
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, prefs.location);
 
-                        WeatherEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+        if (prefs.latLonAvailable) {
+            location.put(LocationEntry.COLUMN_COORD_LAT, prefs.latitude);
+            location.put(LocationEntry.COLUMN_COORD_LONG, prefs.longitude);
+        }
 
-                        WeatherEntry.COLUMN_DATE + " INTEGER NOT NULL, " +
-                        WeatherEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL, " +
+        long locationId = db.insertOrThrow(LocationEntry.TABLE_NAME, null, location);
 
-                        WeatherEntry.COLUMN_MIN_TEMP + " REAL NOT NULL, " +
-                        WeatherEntry.COLUMN_MAX_TEMP + " REAL NOT NULL, " +
+        final String newTableName = WeatherEntry.TABLE_NAME + "_v4";
 
-                        WeatherEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
-                        WeatherEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+        db.execSQL(buildCreateWeatherTableSqlV4(newTableName));
 
-                        WeatherEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
-                        WeatherEntry.COLUMN_DEGREES + " REAL NOT NULL, "    +
+        final String forecastColumns = WeatherEntry.COLUMN_DATE + ", " +
+                WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherEntry.COLUMN_HUMIDITY + ", " +
+                WeatherEntry.COLUMN_PRESSURE + ", " +
+                WeatherEntry.COLUMN_WIND_SPEED + ", " +
+                WeatherEntry.COLUMN_DEGREES;
 
-                        " UNIQUE (" + WeatherEntry.COLUMN_DATE + ") ON CONFLICT REPLACE);";
+        db.execSQL("INSERT INTO " + newTableName +
+                " (" + WeatherEntry.COLUMN_LOCATION_ID + ", " + forecastColumns + ")" +
+                " SELECT " + locationId + ", " + forecastColumns +
+                " FROM " + WeatherEntry.TABLE_NAME);
 
-        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        db.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME);
 
+        db.execSQL("ALTER TABLE " + newTableName + " RENAME TO " + WeatherEntry.TABLE_NAME);
+
+        mMigratedLocationId = locationId;
+    }
+
+    /*
+     * Version 5 added the freshness metadata the adaptive sync schedule works from. Existing
+     * locations start without any, so their first sync after the upgrade uses the default
+     * interval.
+     */
+    private static void addLocationFreshnessColumns(SQLiteDatabase db) {
+
+        db.execSQL("ALTER TABLE " + LocationEntry.TABLE_NAME + " ADD COLUMN " +
+                LocationEntry.COLUMN_LAST_SYNC_TIME + " INTEGER");
+        db.execSQL("ALTER TABLE " + LocationEntry.TABLE_NAME + " ADD COLUMN " +
+                LocationEntry.COLUMN_SYNC_INTERVAL + " INTEGER");
+        db.execSQL("ALTER TABLE " + LocationEntry.TABLE_NAME + " ADD COLUMN " +
+                LocationEntry.COLUMN_LAST_CHANGE + " REAL");
+    }
+
+    /*
+     * Version 6 writes forecasts as upserts, so the weather table is rebuilt without
+     * ON CONFLICT REPLACE and AUTOINCREMENT. Rows keep their _ID. Dropping the old table also
+     * drops its sqlite_sequence entry.
+     */
+    private static void rebuildWeatherTableForUpsert(SQLiteDatabase db) {
+
+        final String newTableName = WeatherEntry.TABLE_NAME + "_v6";
+
+        db.execSQL(buildCreateWeatherTableSql(newTableName));
+
+        final String columns = WeatherEntry._ID + ", " +
+                WeatherEntry.COLUMN_LOCATION_ID + ", " +
+                WeatherEntry.COLUMN_DATE + ", " +
+                WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherEntry.COLUMN_HUMIDITY + ", " +
+                WeatherEntry.COLUMN_PRESSURE + ", " +
+                WeatherEntry.COLUMN_WIND_SPEED + ", " +
+                WeatherEntry.COLUMN_DEGREES;
+
+        db.execSQL("INSERT INTO " + newTableName + " (" + columns + ")" +
+                " SELECT " + columns + " FROM " + WeatherEntry.TABLE_NAME);
+
+        db.execSQL("DROP TABLE " + WeatherEntry.TABLE_NAME);
+
+        db.execSQL("ALTER TABLE " + newTableName + " RENAME TO " + WeatherEntry.TABLE_NAME);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
 
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        if (!hasMigrationPath(oldVersion, newVersion)) {
+
+            Log.w(TAG, "No migration path from version " + oldVersion + " to " + newVersion
+                    + ", recreating the database");
+
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+
+            onCreate(sqLiteDatabase);
+            return;
+        }
+
+        for (int version = oldVersion; version < newVersion; version++) {
+
+            WeatherDbMigration migration = findMigration(version);
+
+            long startTime = SystemClock.elapsedRealtime();
+
+            /*
+             * onUpgrade already runs inside the helper's transaction. The nested transaction
+             * makes a failing step roll back the whole upgrade, leaving the old version intact.
+             */
+            sqLiteDatabase.beginTransaction();
+            try {
+                migration.migrate(sqLiteDatabase);
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
+
+            long elapsedMillis = SystemClock.elapsedRealtime() - startTime;
+
+            Log.i(TAG, "Migrated " + getDatabaseName() + " from version " + migration.getStartVersion()
+                    + " to " + migration.getEndVersion() + " in " + elapsedMillis + " ms");
+        }
+    }
+
+    private boolean hasMigrationPath(int oldVersion, int newVersion) {
+
+        for (int version = oldVersion; version < newVersion; version++) {
+            if (findMigration(version) == null) return false;
+        }
+        return true;
+    }
+
+    private WeatherDbMigration findMigration(int startVersion) {
 
-        onCreate(sqLiteDatabase);
+        for (WeatherDbMigration migration : mMigrations) {
+            if (migration.getStartVersion() == startVersion) return migration;
+        }
+        return null;
     }
 }
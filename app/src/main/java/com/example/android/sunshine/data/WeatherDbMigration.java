@@ -0,0 +1,28 @@
+package com.example.android.sunshine.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step in the schema history of the weather database. A migration takes the schema from
+ * {@link #getStartVersion()} to the version right after it, and must keep the rows that are
+ * already stored. WeatherDbHelper runs each step in its own transaction.
+ */
+public abstract class WeatherDbMigration {
+
+    private final int mStartVersion;
+
+    protected WeatherDbMigration(int startVersion) {
+        mStartVersion = startVersion;
+    }
+
+    public int getStartVersion() {
+        return mStartVersion;
+    }
+
+    public int getEndVersion() {
+        return mStartVersion + 1;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+
+}
@@ -1,17 +1,37 @@
 package com.example.android.sunshine.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.metrics.SyncMetrics;
+import com.example.android.sunshine.utilities.ForecastResponseCache;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class WeatherProvider extends ContentProvider {
 
     /*
@@ -20,13 +40,52 @@ public class WeatherProvider extends ContentProvider {
      * ourselves, such as using regular expressions.
      */
     public static final int CODE_WEATHER = 100;
-    public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_WEATHER_FOR_LOCATION = 102;
+    public static final int CODE_WEATHER_FOR_LOCATION_WITH_DATE = 103;
+
+    public static final int CODE_LOCATION = 200;
+    public static final int CODE_LOCATION_WITH_ID = 201;
+
 
+    private static final String TAG = WeatherProvider.class.getSimpleName();
 
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
+    /*
+     * The columns compared when merging a new forecast into the table. If none of these changed
+     * for a given date, the row is left untouched.
+     */
+    private static final String[] FORECAST_MERGE_COLUMNS = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final String SELECTION_LOCATION = WeatherEntry.COLUMN_LOCATION_ID + " = ?";
+
+    private static final String SELECTION_LOCATION_AND_DATE = WeatherEntry.COLUMN_LOCATION_ID
+            + " = ? AND " + WeatherEntry.COLUMN_DATE + " = ?";
+
     private WeatherDbHelper mOpenHelper;
 
+    /* Query results served from memory until the next write, see QueryCache */
+    private final QueryCache mQueryCache = new QueryCache();
+
+    /* The URIs to notify once the batch running on this thread has committed, see applyBatch */
+    private final ThreadLocal<Set<Uri>> mBatchChanges = new ThreadLocal<>();
+
+    private static final String SQL_HAS_FRESH_DATA =
+            "SELECT " + LocationEntry.COLUMN_LAST_SYNC_TIME + ", EXISTS (SELECT 1 FROM " +
+                    WeatherEntry.TABLE_NAME + " WHERE " +
+                    WeatherEntry.COLUMN_LOCATION_ID + " = " + LocationEntry.TABLE_NAME + "." +
+                    LocationEntry._ID + " AND " + WeatherEntry.COLUMN_DATE + " >= ?)" +
+                    " FROM " + LocationEntry.TABLE_NAME +
+                    " WHERE " + LocationEntry._ID + " = ?";
+
     public static UriMatcher buildUriMatcher() {
 
         final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -37,11 +96,19 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER, CODE_WEATHER);
 
         /*
-         * This URI would look something like content://com.example.android.sunshine/weather/1472214172
-         * The "/#" signifies to the UriMatcher that if PATH_WEATHER is followed by ANY number,
-         * that it should return the CODE_WEATHER_WITH_DATE code
+         * The forecast of a single location, content://com.example.android.sunshine/weather/location/3
+         * and one day of it, content://com.example.android.sunshine/weather/location/3/1472214172
+         * They live under PATH_WEATHER so that a change notified on the weather URI reaches them.
+         * A day is always asked for under its location, every location has its own.
          */
-        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/"
+                + WeatherContract.PATH_LOCATION + "/#", CODE_WEATHER_FOR_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/"
+                + WeatherContract.PATH_LOCATION + "/#/#", CODE_WEATHER_FOR_LOCATION_WITH_DATE);
+
+        /* content://com.example.android.sunshine/location/ and location/3 */
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION, CODE_LOCATION);
+        matcher.addURI(authority, WeatherContract.PATH_LOCATION + "/#", CODE_LOCATION_WITH_ID);
 
         return matcher;
 
@@ -52,52 +119,81 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
 
+        /*
+         * The helper runs the database in WAL mode. Queries are served from the connection pool
+         * while writes use non-exclusive transactions on the primary connection, so a running
+         * sync never blocks the loaders.
+         */
         mOpenHelper = new WeatherDbHelper(getContext());
 
         return true;
     }
 
+    /*
+     * Inserts or updates forecast days. Returns the number of rows actually written: a day stored
+     * with the same values counts for nothing, and a batch that changed nothing notifies nobody.
+     */
     @Override
     public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] Values) {
 
-        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int match = sUriMatcher.match(uri);
 
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
             case CODE_WEATHER:
-                db.beginTransaction();
+            case CODE_WEATHER_FOR_LOCATION:
+
+                /*
+                 * Rows inserted on a location URI belong to that location, rows inserted on the
+                 * weather URI have to carry their own COLUMN_LOCATION_ID.
+                 */
+                Long uriLocationId = (match == CODE_WEATHER_FOR_LOCATION)
+                        ? WeatherEntry.getLocationIdFromUri(uri) : null;
+
+                /*
+                 * Check every date, and every location on the weather URI, before we open the
+                 * transaction, so a bad batch is rejected as a whole without writing anything.
+                 */
+                validateNormalizedDates(Values);
+                if (uriLocationId == null) validateLocationIds(Values);
+
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
                 int rowInserted = 0;
 
+                /*
+                 * Days the location already has are updated in place, unchanged days are left
+                 * alone, see WeatherRowWriter
+                 */
+                WeatherRowWriter writer = newWeatherRowWriter(db);
+                db.beginTransactionNonExclusive();
                 try {
                     for (ContentValues value : Values) {
 
-                        long weatherDate =
-                                value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                        Long locationId = (uriLocationId != null) ? uriLocationId
+                                : value.getAsLong(WeatherEntry.COLUMN_LOCATION_ID);
 
-                        if (!SunshineDateUtils.isDateNormalized(weatherDate)) {
-                            throw new IllegalArgumentException("This date must be Normalized");
-                        }
-
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-
-                        if (_id != -1) {
+                        if (writer.write(locationId, value)) {
 
                             rowInserted++;
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
+                    writer.close();
                     db.endTransaction();
                 }
 
                 if (rowInserted > 0) {
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    mQueryCache.invalidate();
+                    notifyChange(WeatherEntry.CONTENT_URI);
+                    mOpenHelper.checkpointAfterSync();
                 }
 
                 return rowInserted;
 
 
-            //If the URI does match match CODE_WEATHER, return the super implementation of bulkInsert
+            //If the URI does not match a weather URI, return the super implementation of bulkInsert
             default:
                 return super.bulkInsert(uri, Values);
 
@@ -105,44 +201,399 @@ public class WeatherProvider extends ContentProvider {
 
     }
 
+    private static void validateNormalizedDates(ContentValues[] values) {
+
+        for (ContentValues value : values) {
+
+            Long weatherDate = value.getAsLong(WeatherEntry.COLUMN_DATE);
+
+            if (weatherDate == null || !SunshineDateUtils.isDateNormalized(weatherDate)) {
+                throw new IllegalArgumentException("This date must be Normalized");
+            }
+        }
+    }
+
+    private static void validateLocationIds(ContentValues[] values) {
+
+        for (ContentValues value : values) {
+
+            if (value.getAsLong(WeatherEntry.COLUMN_LOCATION_ID) == null) {
+                throw new IllegalArgumentException("A forecast row needs its location id");
+            }
+        }
+    }
+
+    /* The statements are compiled once per batch and every row is bound straight onto them */
+    private WeatherRowWriter newWeatherRowWriter(SQLiteDatabase db) {
+        return new WeatherRowWriter(db, mOpenHelper.supportsUpsert());
+    }
+
+
+    /*
+     * Applies the whole batch in one transaction, so a batch of small updates (like the
+     * freshness metadata written after a sync) costs a single commit instead of one each.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        /* Observers would requery before the commit and miss the batch, hold them until after */
+        Set<Uri> changes = new LinkedHashSet<>();
+        mBatchChanges.set(changes);
+
+        boolean committed = false;
+
+        db.beginTransactionNonExclusive();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            committed = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            mBatchChanges.remove();
+
+            /* The operations invalidated before the batch was committed, once more after */
+            mQueryCache.invalidate();
+
+            if (committed) {
+                for (Uri uri : changes) {
+                    notifyChange(uri);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+
+        if (WeatherContract.METHOD_MERGE_FORECAST.equals(method)) {
+
+            if (extras == null || arg == null) {
+                throw new IllegalArgumentException("Merging needs a location id and forecast values");
+            }
+
+            Bundle forecast = new Bundle(extras);
+            forecast.putLong(WeatherContract.KEY_LOCATION_ID, Long.parseLong(arg));
+
+            ArrayList<Bundle> forecasts = new ArrayList<>(1);
+            forecasts.add(forecast);
+
+            return mergeForecasts(forecasts);
+        }
+
+        if (WeatherContract.METHOD_MERGE_FORECASTS.equals(method)) {
+
+            ArrayList<Bundle> forecasts = (extras == null) ? null
+                    : extras.<Bundle>getParcelableArrayList(WeatherContract.KEY_FORECASTS);
+
+            if (forecasts == null) {
+                throw new IllegalArgumentException("No forecasts to merge");
+            }
+
+            return mergeForecasts(forecasts);
+        }
+
+        if (WeatherContract.METHOD_HAS_FRESH_DATA.equals(method)) {
+
+            if (arg == null) {
+                throw new IllegalArgumentException("The freshness check needs a location id");
+            }
+
+            return hasFreshData(Long.parseLong(arg));
+        }
+
+        return super.call(method, arg, extras);
+    }
+
+    /*
+     * A single-row query: the location's freshness metadata plus an EXISTS over the
+     * (location_id, date) index, which stops at the first matching row.
+     */
+    private Bundle hasFreshData(long locationId) {
+
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery(SQL_HAS_FRESH_DATA, new String[]{
+                Long.toString(SunshineDateUtils.getNormalizedUtcDateForToday()),
+                Long.toString(locationId)});
+
+        Bundle result = new Bundle();
+
+        try {
+            if (cursor.moveToFirst()) {
+                result.putLong(LocationEntry.COLUMN_LAST_SYNC_TIME, cursor.getLong(0));
+                result.putBoolean(WeatherContract.KEY_HAS_FRESH_DATA, cursor.getInt(1) != 0);
+            } else {
+                result.putLong(LocationEntry.COLUMN_LAST_SYNC_TIME, 0);
+                result.putBoolean(WeatherContract.KEY_HAS_FRESH_DATA, false);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return result;
+    }
+
+    private static ContentValues[] getForecastValues(Bundle forecast) {
+
+        Parcelable[] parcelables = forecast.getParcelableArray(WeatherContract.KEY_FORECAST_VALUES);
+
+        if (parcelables == null || !forecast.containsKey(WeatherContract.KEY_LOCATION_ID)) {
+            throw new IllegalArgumentException("Merging needs a location id and forecast values");
+        }
+
+        ContentValues[] values = new ContentValues[parcelables.length];
+        for (int i = 0; i < parcelables.length; i++) {
+            values[i] = (ContentValues) parcelables[i];
+        }
+        return values;
+    }
+
+    /*
+     * Merges the forecasts of one or more locations in a single transaction. Observers are only
+     * notified once, and only if the forecast rows actually changed.
+     */
+    private Bundle mergeForecasts(List<Bundle> forecasts) {
+
+        ContentValues[][] forecastValues = new ContentValues[forecasts.size()][];
+
+        for (int i = 0; i < forecastValues.length; i++) {
+            forecastValues[i] = getForecastValues(forecasts.get(i));
+            validateNormalizedDates(forecastValues[i]);
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        int rowsInserted = 0;
+        int rowsUpdated = 0;
+        int rowsDeleted = 0;
+
+        boolean coordinatesUpdated = false;
+
+        ArrayList<Bundle> locationResults = new ArrayList<>(forecasts.size());
+
+        WeatherRowWriter writer = newWeatherRowWriter(db);
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < forecastValues.length; i++) {
+
+                Bundle forecast = forecasts.get(i);
+                long locationId = forecast.getLong(WeatherContract.KEY_LOCATION_ID);
+
+                Bundle locationResult = mergeLocationForecast(db, writer,
+                        locationId, forecastValues[i]);
+
+                /* Coordinates resolved by the server are committed along with the forecast */
+                if (forecast.containsKey(LocationEntry.COLUMN_COORD_LAT)
+                        && forecast.containsKey(LocationEntry.COLUMN_COORD_LONG)) {
+
+                    ContentValues coordinates = new ContentValues();
+                    coordinates.put(LocationEntry.COLUMN_COORD_LAT,
+                            forecast.getDouble(LocationEntry.COLUMN_COORD_LAT));
+                    coordinates.put(LocationEntry.COLUMN_COORD_LONG,
+                            forecast.getDouble(LocationEntry.COLUMN_COORD_LONG));
+
+                    coordinatesUpdated |= db.update(LocationEntry.TABLE_NAME, coordinates,
+                            LocationEntry._ID + " = ?",
+                            new String[]{Long.toString(locationId)}) > 0;
+                }
+
+                rowsInserted += locationResult.getInt(WeatherContract.KEY_ROWS_INSERTED);
+                rowsUpdated += locationResult.getInt(WeatherContract.KEY_ROWS_UPDATED);
+                rowsDeleted += locationResult.getInt(WeatherContract.KEY_ROWS_DELETED);
+
+                locationResults.add(locationResult);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            writer.close();
+            db.endTransaction();
+        }
+
+        if (rowsInserted + rowsUpdated + rowsDeleted > 0 || coordinatesUpdated) {
+            mQueryCache.invalidate();
+        }
+
+        if (rowsInserted + rowsUpdated + rowsDeleted > 0) {
+            notifyChange(WeatherEntry.CONTENT_URI);
+            mOpenHelper.checkpointAfterSync();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.KEY_ROWS_INSERTED, rowsInserted);
+        result.putInt(WeatherContract.KEY_ROWS_UPDATED, rowsUpdated);
+        result.putInt(WeatherContract.KEY_ROWS_DELETED, rowsDeleted);
+        result.putParcelableArrayList(WeatherContract.KEY_FORECASTS, locationResults);
+        return result;
+    }
+
+    /*
+     * Compares the new forecast of a location against what is already stored and only writes the
+     * difference: new days are inserted, days whose values changed are updated, and days that are
+     * no longer part of the forecast (expired days) are deleted. Must run inside a transaction.
+     */
+    private static Bundle mergeLocationForecast(SQLiteDatabase db, WeatherRowWriter writer,
+                                                long locationId, ContentValues[] values) {
+
+        int rowsInserted = 0;
+        int rowsUpdated = 0;
+        int rowsDeleted = 0;
+
+        Map<Long, double[]> storedForecast = readStoredForecast(db, locationId);
+
+        for (ContentValues value : values) {
+
+            long weatherDate = value.getAsLong(WeatherEntry.COLUMN_DATE);
+            double[] storedDay = storedForecast.remove(weatherDate);
+
+            if (storedDay == null) {
+
+                if (writer.write(locationId, value)) {
+                    rowsInserted++;
+                }
+
+            } else if (!isSameForecast(storedDay, value)) {
+
+                if (writer.write(locationId, value)) {
+                    rowsUpdated++;
+                }
+            }
+        }
+
+        // Whatever is left over was not part of the new forecast anymore
+        for (Long expiredDate : storedForecast.keySet()) {
+            rowsDeleted += db.delete(WeatherEntry.TABLE_NAME,
+                    SELECTION_LOCATION_AND_DATE,
+                    new String[]{Long.toString(locationId), Long.toString(expiredDate)});
+        }
+
+        Bundle result = new Bundle();
+        result.putLong(WeatherContract.KEY_LOCATION_ID, locationId);
+        result.putInt(WeatherContract.KEY_ROWS_INSERTED, rowsInserted);
+        result.putInt(WeatherContract.KEY_ROWS_UPDATED, rowsUpdated);
+        result.putInt(WeatherContract.KEY_ROWS_DELETED, rowsDeleted);
+        result.putInt(WeatherContract.KEY_FORECAST_DAYS, values.length);
+        return result;
+    }
+
+    // Reads every stored day of a location keyed on its date, values in FORECAST_MERGE_COLUMNS order.
+    private static Map<Long, double[]> readStoredForecast(SQLiteDatabase db, long locationId) {
+
+        String[] projection = new String[FORECAST_MERGE_COLUMNS.length + 1];
+        projection[0] = WeatherEntry.COLUMN_DATE;
+        System.arraycopy(FORECAST_MERGE_COLUMNS, 0, projection, 1, FORECAST_MERGE_COLUMNS.length);
+
+        Map<Long, double[]> storedForecast = new HashMap<>();
+
+        Cursor cursor = db.query(WeatherEntry.TABLE_NAME, projection,
+                SELECTION_LOCATION, new String[]{Long.toString(locationId)},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                double[] day = new double[FORECAST_MERGE_COLUMNS.length];
+                for (int i = 0; i < day.length; i++) {
+                    day[i] = cursor.getDouble(i + 1);
+                }
+                storedForecast.put(cursor.getLong(0), day);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return storedForecast;
+    }
+
+    private static boolean isSameForecast(double[] storedDay, ContentValues value) {
+
+        for (int i = 0; i < FORECAST_MERGE_COLUMNS.length; i++) {
+            Double newValue = value.getAsDouble(FORECAST_MERGE_COLUMNS[i]);
+            if (newValue == null || Double.compare(newValue, storedDay[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
 
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
 
+        QueryCache.Key key = new QueryCache.Key(uri, projection, selection, selectionArgs,
+                sortOrder);
 
-        Cursor cursor;
+        Cursor cursor = mQueryCache.get(key);
 
-        switch (sUriMatcher.match(uri)) {
+        if (cursor != null) {
+            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+            return cursor;
+        }
 
-            // content://com.example.android.sunshine/weather/1472214172(sec)
+        /* Read before the query, so a write committed while it runs keeps it out of the cache */
+        long writeGeneration = mQueryCache.getWriteGeneration();
 
-            case CODE_WEATHER_WITH_DATE: {
+        final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
 
-                String normalizedUtcDateString = uri.getLastPathSegment();
+        switch (sUriMatcher.match(uri)) {
+
+            //  content://com.example.android.sunshine/weather/
+            case CODE_WEATHER: {
+                cursor = db.query(
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+                break;
 
-                String[] selectionArguments = new String[]{normalizedUtcDateString};
 
-                cursor = mOpenHelper.getReadableDatabase().query(
+            }
 
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+            //  content://com.example.android.sunshine/weather/location/3
+            case CODE_WEATHER_FOR_LOCATION: {
 
-                        projection,
+                String locationId = Long.toString(WeatherEntry.getLocationIdFromUri(uri));
 
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " =?",
-                        selectionArguments,
+                cursor = db.query(
+                        WeatherEntry.TABLE_NAME,
+                        projection,
+                        DatabaseUtils.concatenateWhere(SELECTION_LOCATION, selection),
+                        DatabaseUtils.appendSelectionArgs(new String[]{locationId}, selectionArgs),
                         null,
                         null,
                         sortOrder);
+                break;
+            }
+
+            //  content://com.example.android.sunshine/weather/location/3/1472214172
+            case CODE_WEATHER_FOR_LOCATION_WITH_DATE: {
 
+                String locationId = Long.toString(WeatherEntry.getLocationIdFromUri(uri));
+                String normalizedUtcDateString = uri.getLastPathSegment();
 
+                cursor = db.query(
+                        WeatherEntry.TABLE_NAME,
+                        projection,
+                        SELECTION_LOCATION_AND_DATE,
+                        new String[]{locationId, normalizedUtcDateString},
+                        null,
+                        null,
+                        sortOrder);
                 break;
             }
 
-            //  content://com.example.android.sunshine/weather/
-            case CODE_WEATHER: {
-                cursor = mOpenHelper.getReadableDatabase().query(
-                        WeatherContract.WeatherEntry.TABLE_NAME,
+            //  content://com.example.android.sunshine/location/
+            case CODE_LOCATION: {
+                cursor = db.query(
+                        LocationEntry.TABLE_NAME,
                         projection,
                         selection,
                         selectionArgs,
@@ -150,8 +601,19 @@ public class WeatherProvider extends ContentProvider {
                         null,
                         sortOrder);
                 break;
+            }
 
-
+            //  content://com.example.android.sunshine/location/3
+            case CODE_LOCATION_WITH_ID: {
+                cursor = db.query(
+                        LocationEntry.TABLE_NAME,
+                        projection,
+                        LocationEntry._ID + " = ?",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+                break;
             }
 
             default:
@@ -160,6 +622,8 @@ public class WeatherProvider extends ContentProvider {
 
         }
 
+        cursor = mQueryCache.put(key, writeGeneration, cursor);
+
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
         return cursor;
     }
@@ -171,9 +635,46 @@ public class WeatherProvider extends ContentProvider {
     }
 
 
+    /*
+     * Inserting into the location URI returns the row of that location setting, creating it
+     * only if the location has never been saved before. Coordinates that come along are stored
+     * on the row either way.
+     */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(" Later we will implement in future classes");
+
+        if (sUriMatcher.match(uri) != CODE_LOCATION) {
+            throw new RuntimeException(" Later we will implement in future classes");
+        }
+
+        String locationSetting = values.getAsString(LocationEntry.COLUMN_LOCATION_SETTING);
+
+        if (locationSetting == null) {
+            throw new IllegalArgumentException("A location needs a location setting");
+        }
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        long locationId = db.insertWithOnConflict(LocationEntry.TABLE_NAME, null, values,
+                SQLiteDatabase.CONFLICT_IGNORE);
+
+        if (locationId == -1) {
+
+            locationId = DatabaseUtils.longForQuery(db,
+                    "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME +
+                            " WHERE " + LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                    new String[]{locationSetting});
+
+            if (values.size() > 1) {
+                updateLocation(db, locationId, values);
+            }
+
+        } else {
+            mQueryCache.invalidate();
+            notifyChange(LocationEntry.CONTENT_URI);
+        }
+
+        return LocationEntry.buildLocationUri(locationId);
     }
 
     @Override
@@ -183,32 +684,171 @@ public class WeatherProvider extends ContentProvider {
 
         if(null == selection) selection = "1" ;
 
-        switch (sUriMatcher.match(uri))
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        int match = sUriMatcher.match(uri);
+
+        switch (match)
         {
 
             case CODE_WEATHER:
-                numRowsDeleted = mOpenHelper.getWritableDatabase().delete(
+                numRowsDeleted = db.delete(
                         WeatherContract.WeatherEntry.TABLE_NAME
                         ,selection
                         ,selectionArgs);
 
             break;
 
+            case CODE_WEATHER_FOR_LOCATION: {
+
+                String locationId = Long.toString(WeatherEntry.getLocationIdFromUri(uri));
+
+                numRowsDeleted = db.delete(
+                        WeatherEntry.TABLE_NAME,
+                        DatabaseUtils.concatenateWhere(SELECTION_LOCATION, selection),
+                        DatabaseUtils.appendSelectionArgs(new String[]{locationId}, selectionArgs));
+
+                break;
+            }
+
+            // The forecast rows of the location go with it through ON DELETE CASCADE
+            case CODE_LOCATION_WITH_ID:
+                numRowsDeleted = db.delete(
+                        LocationEntry.TABLE_NAME,
+                        LocationEntry._ID + " = ?",
+                        new String[]{uri.getLastPathSegment()});
+                break;
+
             default:
                 throw new UnsupportedOperationException("Uknown Uri" + uri);
         }
 
         if(numRowsDeleted!=0)
         {
-            getContext().getContentResolver().notifyChange(uri,null);
+            mQueryCache.invalidate();
+
+            if (match == CODE_LOCATION_WITH_ID) {
+                notifyChange(WeatherEntry.CONTENT_URI);
+            }
+            notifyChange(uri);
         }
 
         return numRowsDeleted;
 
     }
 
+    /*
+     * Updates forecast rows in place, on the weather URI, on the forecast of a location or on a
+     * single day of it, and location rows by id. Rows that do not exist yet are not created,
+     * bulkInsert does that.
+     *
+     * Moving a day onto one the location already has, by changing COLUMN_DATE or
+     * COLUMN_LOCATION_ID, is rejected with an IllegalArgumentException and nothing is updated.
+     * Delete the stored day first to replace it.
+     */
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-        throw new RuntimeException(" we are not implementing update in sunshine");
+
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+
+        int match = sUriMatcher.match(uri);
+
+        if (match == CODE_LOCATION_WITH_ID) {
+            return updateLocation(db, Long.parseLong(uri.getLastPathSegment()), values);
+        }
+
+        if (values.containsKey(WeatherEntry.COLUMN_DATE)) {
+            validateNormalizedDates(new ContentValues[]{values});
+        }
+
+        int numRowsUpdated;
+
+        /* The statement is aborted on a conflict, rows it already changed are rolled back */
+        try {
+            switch (match) {
+
+                case CODE_WEATHER:
+                    numRowsUpdated = db.update(WeatherEntry.TABLE_NAME, values,
+                            selection, selectionArgs);
+                    break;
+
+                case CODE_WEATHER_FOR_LOCATION: {
+
+                    String locationId = Long.toString(WeatherEntry.getLocationIdFromUri(uri));
+
+                    numRowsUpdated = db.update(WeatherEntry.TABLE_NAME, values,
+                            DatabaseUtils.concatenateWhere(SELECTION_LOCATION, selection),
+                            DatabaseUtils.appendSelectionArgs(
+                                    new String[]{locationId}, selectionArgs));
+                    break;
+                }
+
+                case CODE_WEATHER_FOR_LOCATION_WITH_DATE: {
+
+                    String locationId = Long.toString(WeatherEntry.getLocationIdFromUri(uri));
+                    String normalizedUtcDateString = uri.getLastPathSegment();
+
+                    numRowsUpdated = db.update(WeatherEntry.TABLE_NAME, values,
+                            DatabaseUtils.concatenateWhere(SELECTION_LOCATION_AND_DATE, selection),
+                            DatabaseUtils.appendSelectionArgs(
+                                    new String[]{locationId, normalizedUtcDateString},
+                                    selectionArgs));
+                    break;
+                }
+
+                default:
+                    throw new UnsupportedOperationException("Unknown Uri" + uri);
+            }
+        } catch (SQLiteConstraintException e) {
+            throw new IllegalArgumentException(
+                    "The update conflicts with a stored day or leaves a value empty", e);
+        }
+
+        if (numRowsUpdated != 0) {
+            mQueryCache.invalidate();
+            notifyChange(WeatherEntry.CONTENT_URI);
+        }
+
+        return numRowsUpdated;
+    }
+
+    private int updateLocation(SQLiteDatabase db, long locationId, ContentValues values) {
+
+        int rowsUpdated = db.update(LocationEntry.TABLE_NAME, values,
+                LocationEntry._ID + " = ?", new String[]{Long.toString(locationId)});
+
+        if (rowsUpdated != 0) {
+            mQueryCache.invalidate();
+            notifyChange(LocationEntry.CONTENT_URI);
+        }
+
+        return rowsUpdated;
+    }
+
+    /* Notifies observers of a change, or once the batch running on this thread has committed */
+    private void notifyChange(Uri uri) {
+
+        Set<Uri> batchChanges = mBatchChanges.get();
+
+        if (batchChanges != null) {
+            batchChanges.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /*
+     * Shows the sync metrics and the response and query cache hit rates in
+     * adb shell dumpsys activity provider com.example.android.sunshine
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+
+        SyncMetrics.getInstance().dump(writer);
+
+        writer.println(ForecastResponseCache.getInstance(getContext()));
+        writer.println(mQueryCache);
+
+        writer.flush();
     }
 }
@@ -0,0 +1,212 @@
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+/**
+ * Writes forecast rows with upsert semantics: a day the location already has is updated in
+ * place, keeping its rowid and its index entries, and any other day is inserted. A day stored
+ * with the same values is left alone, so a resent forecast writes nothing.
+ *
+ * SQLite 3.24 and later (Android 11 and later) do it in one INSERT ... ON CONFLICT DO UPDATE.
+ * Older versions run an UPDATE first and only INSERT when it matched nothing, which takes two
+ * statements for a new day but still never deletes a row. The INSERT ignores the conflict of a
+ * day the UPDATE skipped because nothing changed. The statements are compiled once and
+ * every row is bound straight onto them. Close the writer when the batch is done.
+ */
+final class WeatherRowWriter {
+
+    private static final String TAG = WeatherRowWriter.class.getSimpleName();
+
+    /* The forecast values of a day, in the order they are bound */
+    private static final String[] VALUE_COLUMNS = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    /* INSERT binds location_id and date first, then VALUE_COLUMNS */
+    private static final String SQL_INSERT = buildInsertSql("INSERT OR IGNORE INTO ");
+
+    private static final String SQL_UPSERT = buildUpsertSql();
+
+    /* UPDATE binds VALUE_COLUMNS first, then location_id and date, numbered to reuse them */
+    private static final String SQL_UPDATE = buildUpdateSql();
+
+    private final SQLiteStatement mUpsertStatement;
+
+    private final SQLiteStatement mUpdateStatement;
+    private final SQLiteStatement mInsertStatement;
+
+    /**
+     * @param nativeUpsert Whether the database supports ON CONFLICT DO UPDATE, see
+     *                     {@link #supportsUpsert(SQLiteDatabase)}
+     */
+    WeatherRowWriter(SQLiteDatabase db, boolean nativeUpsert) {
+        if (nativeUpsert) {
+            mUpsertStatement = db.compileStatement(SQL_UPSERT);
+            mUpdateStatement = null;
+            mInsertStatement = null;
+        } else {
+            mUpsertStatement = null;
+            mUpdateStatement = db.compileStatement(SQL_UPDATE);
+            mInsertStatement = db.compileStatement(SQL_INSERT);
+        }
+    }
+
+    /**
+     * @return Whether the SQLite library behind the database is 3.24 or later, the first with
+     * ON CONFLICT DO UPDATE
+     */
+    static boolean supportsUpsert(SQLiteDatabase db) {
+
+        String version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null);
+        String[] parts = version.split("\\.");
+
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 3 || (major == 3 && minor >= 24);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Unexpected SQLite version " + version);
+            return false;
+        }
+    }
+
+    /**
+     * Inserts or updates the day of value. Like SQLiteDatabase.insert, a row that violates a
+     * constraint, such as a missing value, is skipped.
+     *
+     * @return Whether the row was written, false if it was skipped or the day was already stored
+     * with the same values
+     */
+    boolean write(Long locationId, ContentValues value) {
+
+        Long date = value.getAsLong(WeatherEntry.COLUMN_DATE);
+
+        try {
+            if (mUpsertStatement != null) {
+                mUpsertStatement.clearBindings();
+                bindLong(mUpsertStatement, 1, locationId);
+                bindLong(mUpsertStatement, 2, date);
+                bindValues(mUpsertStatement, 3, value);
+
+                /* 0 when the DO UPDATE found nothing to change */
+                return mUpsertStatement.executeUpdateDelete() > 0;
+            }
+
+            mUpdateStatement.clearBindings();
+            bindValues(mUpdateStatement, 1, value);
+            bindLong(mUpdateStatement, VALUE_COLUMNS.length + 1, locationId);
+            bindLong(mUpdateStatement, VALUE_COLUMNS.length + 2, date);
+
+            /* Without a location or a date the UPDATE matches nothing and the INSERT skips it */
+            if (mUpdateStatement.executeUpdateDelete() > 0) return true;
+
+            mInsertStatement.clearBindings();
+            bindLong(mInsertStatement, 1, locationId);
+            bindLong(mInsertStatement, 2, date);
+            bindValues(mInsertStatement, 3, value);
+            return mInsertStatement.executeInsert() != -1;
+
+        } catch (SQLException e) {
+            Log.e(TAG, "Error writing " + value, e);
+            return false;
+        }
+    }
+
+    void close() {
+        if (mUpsertStatement != null) mUpsertStatement.close();
+        if (mUpdateStatement != null) mUpdateStatement.close();
+        if (mInsertStatement != null) mInsertStatement.close();
+    }
+
+    private static void bindValues(SQLiteStatement statement, int firstIndex,
+                                   ContentValues value) {
+
+        /* The weather id is the only integer among the values */
+        bindLong(statement, firstIndex, value.getAsLong(VALUE_COLUMNS[0]));
+        for (int i = 1; i < VALUE_COLUMNS.length; i++) {
+            bindDouble(statement, firstIndex + i, value.getAsDouble(VALUE_COLUMNS[i]));
+        }
+    }
+
+    // A missing value stays unbound (NULL) and the NOT NULL constraint rejects the row
+    private static void bindLong(SQLiteStatement statement, int index, Long value) {
+        if (value != null) statement.bindLong(index, value);
+    }
+
+    private static void bindDouble(SQLiteStatement statement, int index, Double value) {
+        if (value != null) statement.bindDouble(index, value);
+    }
+
+    private static String buildInsertSql(String insert) {
+
+        StringBuilder sql = new StringBuilder(insert).append(WeatherEntry.TABLE_NAME)
+                .append(" (").append(WeatherEntry.COLUMN_LOCATION_ID)
+                .append(", ").append(WeatherEntry.COLUMN_DATE);
+        StringBuilder placeholders = new StringBuilder("?, ?");
+
+        for (String column : VALUE_COLUMNS) {
+            sql.append(", ").append(column);
+            placeholders.append(", ?");
+        }
+
+        return sql.append(") VALUES (").append(placeholders).append(")").toString();
+    }
+
+    private static String buildUpsertSql() {
+
+        StringBuilder sql = new StringBuilder(buildInsertSql("INSERT INTO "))
+                .append(" ON CONFLICT (").append(WeatherEntry.COLUMN_LOCATION_ID)
+                .append(", ").append(WeatherEntry.COLUMN_DATE).append(") DO UPDATE SET ");
+
+        for (int i = 0; i < VALUE_COLUMNS.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(VALUE_COLUMNS[i]).append(" = excluded.").append(VALUE_COLUMNS[i]);
+        }
+
+        /* Unqualified columns are the stored row */
+        sql.append(" WHERE ");
+        for (int i = 0; i < VALUE_COLUMNS.length; i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append(VALUE_COLUMNS[i]).append(" IS NOT excluded.").append(VALUE_COLUMNS[i]);
+        }
+
+        return sql.toString();
+    }
+
+    private static String buildUpdateSql() {
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(WeatherEntry.TABLE_NAME)
+                .append(" SET ");
+
+        for (int i = 0; i < VALUE_COLUMNS.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(VALUE_COLUMNS[i]).append(" = ?").append(i + 1);
+        }
+
+        int locationIndex = VALUE_COLUMNS.length + 1;
+
+        sql.append(" WHERE ").append(WeatherEntry.COLUMN_LOCATION_ID).append(" = ?")
+                .append(locationIndex).append(" AND ").append(WeatherEntry.COLUMN_DATE)
+                .append(" = ?").append(locationIndex + 1).append(" AND (");
+
+        for (int i = 0; i < VALUE_COLUMNS.length; i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append(VALUE_COLUMNS[i]).append(" IS NOT ?").append(i + 1);
+        }
+
+        return sql.append(")").toString();
+    }
+}
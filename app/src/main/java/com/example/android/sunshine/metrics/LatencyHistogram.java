@@ -0,0 +1,83 @@
+package com.example.android.sunshine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram with fixed, roughly exponential buckets from 1 ms to 30 s.
+ * Recording is a couple of atomic increments, cheap enough to do on every sync phase.
+ * Percentiles are estimated as the upper bound of the bucket they fall in.
+ */
+public final class LatencyHistogram {
+
+    /* Upper bounds of the buckets, in milliseconds. The last bucket catches everything above. */
+    private static final long[] BUCKET_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000
+    };
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSumMillis = new AtomicLong();
+    private final AtomicLong mMaxMillis = new AtomicLong();
+
+    public void record(long millis) {
+
+        if (millis < 0) millis = 0;
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+
+        mCounts.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mSumMillis.addAndGet(millis);
+
+        long max;
+        do {
+            max = mMaxMillis.get();
+        } while (millis > max && !mMaxMillis.compareAndSet(max, millis));
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMeanMillis() {
+        long count = mCount.get();
+        return count == 0 ? 0 : mSumMillis.get() / count;
+    }
+
+    public long getMaxMillis() {
+        return mMaxMillis.get();
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     *
+     * @return The upper bound of the bucket the percentile falls in, or the maximum recorded
+     * value for the overflow bucket
+     */
+    public long getPercentileMillis(double percentile) {
+
+        long count = mCount.get();
+        if (count == 0) return 0;
+
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+            seen += mCounts.get(bucket);
+            if (seen >= rank) return Math.min(BUCKET_BOUNDS_MILLIS[bucket], getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "n=" + getCount() + " mean=" + getMeanMillis() + "ms p50=" + getPercentileMillis(50)
+                + "ms p90=" + getPercentileMillis(90) + "ms p99=" + getPercentileMillis(99)
+                + "ms max=" + getMaxMillis() + "ms";
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.sunshine.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.android.sunshine.utilities.BackgroundExecutor;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the metrics to logcat and appends them, with a timestamp, to a file in the app's files
+ * directory. When the file grows past its limit it is moved to a single ".old" file, so at most
+ * twice the limit is ever kept.
+ *
+ * Only the dump is taken on the sync thread. The file is written on the BackgroundExecutor, and
+ * reports that pile up while it is busy are appended together in one write.
+ */
+public class LogMetricsReporter implements MetricsReporter {
+
+    private static final String TAG = LogMetricsReporter.class.getSimpleName();
+
+    private static final String FILE_NAME = "sync_metrics.log";
+
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+
+    private final File mFile;
+
+    /* Timestamped dumps not written yet */
+    private final Queue<String> mPending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mWriteScheduled = new AtomicBoolean();
+
+    private final Runnable mWritePending = new Runnable() {
+        @Override
+        public void run() {
+            /* Cleared first, a report queued while writing schedules the next write */
+            mWriteScheduled.set(false);
+            writePending();
+        }
+    };
+
+    public LogMetricsReporter(Context context) {
+        mFile = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+
+    @Override
+    public void report(SyncMetrics metrics) {
+
+        StringWriter dump = new StringWriter();
+        metrics.dump(new PrintWriter(dump));
+
+        Log.i(TAG, dump.toString());
+
+        mPending.add(System.currentTimeMillis() + "\n" + dump);
+
+        if (mWriteScheduled.compareAndSet(false, true)) {
+            BackgroundExecutor.execute(mWritePending);
+        }
+    }
+
+    /* Runs on the single BackgroundExecutor thread only */
+    private void writePending() {
+
+        if (mPending.isEmpty()) return;
+
+        try {
+            if (mFile.length() > MAX_FILE_BYTES) {
+                File old = new File(mFile.getPath() + ".old");
+                old.delete();
+                mFile.renameTo(old);
+            }
+
+            Writer writer = new BufferedWriter(new FileWriter(mFile, true));
+            try {
+                String dump;
+                while ((dump = mPending.poll()) != null) {
+                    writer.write(dump);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + mFile, e);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.android.sunshine.metrics;
+
+/**
+ * Receives the sync metrics after every sync. Reporters are called on the sync thread, so they
+ * should be quick; anything slow belongs on a thread of its own.
+ */
+public interface MetricsReporter {
+
+    void report(SyncMetrics metrics);
+}
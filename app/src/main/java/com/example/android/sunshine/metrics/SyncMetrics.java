@@ -0,0 +1,171 @@
+package com.example.android.sunshine.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide sync metrics: a latency histogram per sync phase, bytes downloaded, rows
+ * written, HTTP retries and failure causes. Everything is recorded with atomics, so any sync
+ * thread can record without locking. Registered {@link MetricsReporter}s are handed the metrics
+ * after every sync, and WeatherProvider prints them in its dump().
+ */
+public final class SyncMetrics {
+
+    private static final String TAG = SyncMetrics.class.getSimpleName();
+
+    public enum Phase {
+        /* Connecting and waiting for the response headers, retries included */
+        FETCH,
+        /* Reading and parsing the response body */
+        PARSE,
+        /* Committing the forecasts to the provider */
+        WRITE,
+        /* Building and posting the notification */
+        NOTIFY,
+        /* A whole sync, from the first fetch to the notification */
+        SYNC
+    }
+
+    private static final SyncMetrics sInstance = new SyncMetrics();
+
+    private final Map<Phase, LatencyHistogram> mLatencies = new EnumMap<>(Phase.class);
+
+    private final AtomicLong mBytesDownloaded = new AtomicLong();
+    private final AtomicLong mRowsWritten = new AtomicLong();
+    private final AtomicLong mRetries = new AtomicLong();
+
+    private final ConcurrentHashMap<String, AtomicLong> mFailureCauses = new ConcurrentHashMap<>();
+
+    private final List<MetricsReporter> mReporters = new CopyOnWriteArrayList<>();
+
+    private volatile boolean mDefaultReportersInstalled;
+
+    private SyncMetrics() {
+        /* Filled once and only read afterwards, so the EnumMap itself needs no locking */
+        for (Phase phase : Phase.values()) {
+            mLatencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    public static SyncMetrics getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Adds the log/file reporter the first time it is called, later calls do nothing.
+     */
+    public void installDefaultReporters(Context context) {
+
+        if (mDefaultReportersInstalled) return;
+
+        synchronized (this) {
+            if (mDefaultReportersInstalled) return;
+            addReporter(new LogMetricsReporter(context));
+            mDefaultReportersInstalled = true;
+        }
+    }
+
+    public void addReporter(MetricsReporter reporter) {
+        mReporters.add(reporter);
+    }
+
+    public void removeReporter(MetricsReporter reporter) {
+        mReporters.remove(reporter);
+    }
+
+    public void recordLatency(Phase phase, long millis) {
+        mLatencies.get(phase).record(millis);
+    }
+
+    public void recordBytesDownloaded(long bytes) {
+        mBytesDownloaded.addAndGet(bytes);
+    }
+
+    public void recordRowsWritten(long rows) {
+        mRowsWritten.addAndGet(rows);
+    }
+
+    public void recordRetries(int retries) {
+        if (retries > 0) mRetries.addAndGet(retries);
+    }
+
+    /**
+     * Counts a failure under the simple name of its exception class.
+     */
+    public void recordFailure(Throwable cause) {
+
+        String name = cause.getClass().getSimpleName();
+
+        AtomicLong count = mFailureCauses.get(name);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = mFailureCauses.putIfAbsent(name, newCount);
+            if (count == null) count = newCount;
+        }
+        count.incrementAndGet();
+    }
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return mLatencies.get(phase);
+    }
+
+    public long getBytesDownloaded() {
+        return mBytesDownloaded.get();
+    }
+
+    public long getRowsWritten() {
+        return mRowsWritten.get();
+    }
+
+    public long getRetries() {
+        return mRetries.get();
+    }
+
+    /**
+     * @return Failure counts keyed by exception class, a copy
+     */
+    public Map<String, Long> getFailureCauses() {
+        Map<String, Long> causes = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> cause : mFailureCauses.entrySet()) {
+            causes.put(cause.getKey(), cause.getValue().get());
+        }
+        return causes;
+    }
+
+    /**
+     * Hands the current metrics to every reporter. A reporter that throws is logged and skipped,
+     * metrics never fail a sync.
+     */
+    public void report() {
+        for (MetricsReporter reporter : mReporters) {
+            try {
+                reporter.report(this);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Reporter " + reporter + " failed", e);
+            }
+        }
+    }
+
+    public void dump(PrintWriter writer) {
+
+        writer.println("Sync metrics:");
+
+        for (Phase phase : Phase.values()) {
+            writer.println("  " + phase + ": " + mLatencies.get(phase));
+        }
+
+        writer.println("  bytes downloaded: " + getBytesDownloaded());
+        writer.println("  rows written: " + getRowsWritten());
+        writer.println("  retries: " + getRetries());
+        writer.println("  failures: " + getFailureCauses());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.android.sunshine.core.Clock;
+import com.example.android.sunshine.core.SyncIntervalPolicy;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides how often each saved location is synced, see {@link SyncIntervalPolicy}: a location
+ * whose forecast keeps changing is synced more often, one that stays the same (or answers 304
+ * Not Modified) less often.
+ *
+ * The interval, the time of the last sync and the measured change are stored on the location
+ * row. The recurring job runs at the shortest interval of all locations, and each run only syncs
+ * the locations that are due.
+ */
+public class AdaptiveSyncScheduler {
+
+    private static final String TAG = AdaptiveSyncScheduler.class.getSimpleName();
+
+    public static final long DEFAULT_INTERVAL_SECONDS =
+            SyncIntervalPolicy.DEFAULT_INTERVAL_SECONDS;
+
+    private final Context mContext;
+
+    private final SyncIntervalPolicy mPolicy;
+
+    public AdaptiveSyncScheduler(Context context) {
+        this(context, new SyncIntervalPolicy(Clock.SYSTEM));
+    }
+
+    public AdaptiveSyncScheduler(Context context, SyncIntervalPolicy policy) {
+        mContext = context.getApplicationContext();
+        mPolicy = policy;
+    }
+
+    /**
+     * @return The interval of this location, the default one if it has never been synced
+     */
+    public long getIntervalSeconds(SunshineSyncEngine.SavedLocation location) {
+        return mPolicy.getIntervalSeconds(location.syncIntervalSeconds);
+    }
+
+    public boolean isDue(SunshineSyncEngine.SavedLocation location) {
+        return mPolicy.isDue(location.lastSyncMillis, location.syncIntervalSeconds);
+    }
+
+    public List<SunshineSyncEngine.SavedLocation> selectDueLocations(
+            List<SunshineSyncEngine.SavedLocation> locations) {
+
+        List<SunshineSyncEngine.SavedLocation> dueLocations = new ArrayList<>(locations.size());
+        for (SunshineSyncEngine.SavedLocation location : locations) {
+            if (isDue(location)) dueLocations.add(location);
+        }
+        return dueLocations;
+    }
+
+    /**
+     * @param locationResult A per-location merge result, see WeatherContract.METHOD_MERGE_FORECASTS
+     *
+     * @return The change between 0 and 1, or -1 if none of the days were stored before, see
+     * {@link SyncIntervalPolicy#measureChange}
+     */
+    public static double measureChange(Bundle locationResult) {
+        return SyncIntervalPolicy.measureChange(
+                locationResult.getInt(WeatherContract.KEY_FORECAST_DAYS),
+                locationResult.getInt(WeatherContract.KEY_ROWS_INSERTED),
+                locationResult.getInt(WeatherContract.KEY_ROWS_UPDATED));
+    }
+
+    /**
+     * Stores the freshness metadata of every location the sync reached, in a single provider
+     * transaction. Failed and cancelled locations keep their metadata, so they stay due.
+     *
+     * @param locations The locations that were passed to the sync
+     * @param report    What the sync did
+     *
+     * @return The locations with their new metadata, locations the sync didn't reach unchanged
+     */
+    public List<SunshineSyncEngine.SavedLocation> recordSync(
+            List<SunshineSyncEngine.SavedLocation> locations,
+            SunshineSyncEngine.SyncReport report) {
+
+        Map<Long, Double> changes = new HashMap<>();
+
+        for (Bundle locationResult : report.locationResults) {
+            changes.put(locationResult.getLong(WeatherContract.KEY_LOCATION_ID),
+                    measureChange(locationResult));
+        }
+
+        /* Not modified means nothing changed at all */
+        for (Long locationId : report.notModifiedLocationIds) {
+            changes.put(locationId, 0.0);
+        }
+
+        long now = mPolicy.currentTimeMillis();
+
+        List<SunshineSyncEngine.SavedLocation> updatedLocations = new ArrayList<>(locations.size());
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(changes.size());
+
+        for (SunshineSyncEngine.SavedLocation location : locations) {
+
+            Double change = changes.get(location.id);
+
+            if (change == null) {
+                updatedLocations.add(location);
+                continue;
+            }
+
+            long intervalSeconds =
+                    mPolicy.nextIntervalSeconds(getIntervalSeconds(location), change);
+
+            ContentProviderOperation.Builder operation = ContentProviderOperation
+                    .newUpdate(LocationEntry.buildLocationUri(location.id))
+                    .withValue(LocationEntry.COLUMN_LAST_SYNC_TIME, now)
+                    .withValue(LocationEntry.COLUMN_SYNC_INTERVAL, intervalSeconds);
+
+            if (change >= 0) {
+                operation.withValue(LocationEntry.COLUMN_LAST_CHANGE, change);
+            }
+
+            operations.add(operation.build());
+
+            updatedLocations.add(new SunshineSyncEngine.SavedLocation(location.id,
+                    location.locationSetting, location.coordinates, now, intervalSeconds));
+        }
+
+        if (operations.isEmpty()) return updatedLocations;
+
+        try {
+            mContext.getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            /* Without the metadata these locations are simply synced again next time */
+            Log.w(TAG, "Could not store the sync metadata", e);
+            return locations;
+        }
+
+        return updatedLocations;
+    }
+
+    /**
+     * @return The interval the recurring job should run at: the shortest interval of all
+     * locations, so no location is synced later than it asked for
+     */
+    public long getJobIntervalSeconds(List<SunshineSyncEngine.SavedLocation> locations) {
+
+        if (locations.isEmpty()) return mPolicy.getIntervalSeconds(0);
+
+        long shortest = Long.MAX_VALUE;
+        for (SunshineSyncEngine.SavedLocation location : locations) {
+            shortest = Math.min(shortest, getIntervalSeconds(location));
+        }
+        return shortest;
+    }
+}
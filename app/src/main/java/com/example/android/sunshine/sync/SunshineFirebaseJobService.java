@@ -1,42 +1,58 @@
 package com.example.android.sunshine.sync;
 
 import android.content.Context;
-import android.os.AsyncTask;
+import android.util.Log;
+
+import com.example.android.sunshine.utilities.BackgroundExecutor;
 
 import com.firebase.jobdispatcher.JobParameters;
 import com.firebase.jobdispatcher.JobService;
 
 public class SunshineFirebaseJobService extends JobService {
 
-    private AsyncTask<Void , Void ,Void> mFetchWeatherTask;
+    private static final String TAG = SunshineFirebaseJobService.class.getSimpleName();
+
+    private SunshineSyncExecutor.SyncHandle mSyncHandle;
 
     @Override
     public boolean onStartJob(final JobParameters jobParameters) {
 
-        mFetchWeatherTask = new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... voids) {
+        mSyncHandle = SunshineSyncExecutor.syncAllLocations(this,
+                new SunshineSyncExecutor.Callback() {
+                    @Override
+                    public void onSyncFinished(SunshineSyncEngine.SyncReport report) {
+                        mSyncHandle = null;
+                        /* Failed locations are retried with the job's backoff, not in 3 hours */
+                        jobFinished(jobParameters, report.needsReschedule());
+
+                        rescheduleInBackground();
+                    }
+                });
+        return true;
+    }
 
-                Context context = getApplicationContext();
-                SunshineSyncTask.syncWeather(context);
-                return null;
-            }
+    /* The job has finished, so it is safe to replace it with one at the new interval */
+    private void rescheduleInBackground() {
 
+        final Context context = getApplicationContext();
+
+        BackgroundExecutor.execute(new Runnable() {
             @Override
-            protected void onPostExecute(Void aVoid){
-                jobFinished(jobParameters , false);
+            public void run() {
+                SunshineSyncUtils.rescheduleIfIntervalChanged(context);
             }
-        };
-        mFetchWeatherTask.execute();
-        return true;
+        });
     }
 
     @Override
     public boolean onStopJob(JobParameters jobParameters) {
 
-        if(mFetchWeatherTask != null){
-            mFetchWeatherTask.cancel(true);
+        if (mSyncHandle != null) {
+            Log.d(TAG, "Job stopped, cancelling the running sync");
+            mSyncHandle.cancel();
+            mSyncHandle = null;
         }
+        /* Whatever the sync didn't get to is still stale, so ask to be rescheduled */
         return true;
     }
 }
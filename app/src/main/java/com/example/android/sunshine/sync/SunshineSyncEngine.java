@@ -0,0 +1,656 @@
+package com.example.android.sunshine.sync;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.metrics.SyncMetrics;
+import com.example.android.sunshine.utilities.ForecastResponseCache;
+import com.example.android.sunshine.utilities.HttpClient;
+import com.example.android.sunshine.utilities.NetworkUtils;
+import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes the forecast of many saved locations at once. Locations are fetched and parsed in
+ * parallel on a bounded pool shared by all syncs, and the parsed forecasts are committed to the
+ * provider in batches, each batch in a single transaction. A location that fails is reported
+ * and skipped without holding back the others.
+ *
+ * Requests are conditional, see {@link ForecastResponseCache}. A location whose forecast has not
+ * changed since its last sync is neither parsed nor written.
+ *
+ * A sync can be cancelled through its CancellationSignal. In-flight requests are disconnected,
+ * nothing more is committed or cached, and the report lists what was done before the cancel and
+ * what is still pending. A batch that is already being committed finishes, each batch is a
+ * single transaction. A location stays locked until its fetch has really stopped.
+ */
+public class SunshineSyncEngine {
+
+    private static final String TAG = SunshineSyncEngine.class.getSimpleName();
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /* The most a sync can ask for, and the size of the fetch pool all syncs share */
+    public static final int MAX_PARALLELISM = 8;
+
+    /* Idle fetch threads go away after this, syncs are hours apart */
+    private static final long FETCH_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    public static final int DEFAULT_COMMIT_BATCH_SIZE = 25;
+
+    /* How long the committing thread waits for a fetch before looking at the signal again */
+    private static final long CANCELLATION_POLL_MILLIS = 20;
+
+    /*
+     * Background syncs give up sooner than the defaults: a location that hangs on a flaky
+     * network shouldn't keep the job's wake window open, it is simply retried next sync.
+     */
+    private static final HttpClient.Options SYNC_HTTP_OPTIONS =
+            HttpClient.Options.DEFAULT.buildUpon()
+                    .setConnectTimeoutMillis(8000)
+                    .setReadTimeoutMillis(10000)
+                    .setMaxRetries(2)
+                    .setBackoffMillis(250, 4000)
+                    .build();
+
+    private static final String[] LOCATION_PROJECTION = {
+            LocationEntry._ID,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG,
+            LocationEntry.COLUMN_LAST_SYNC_TIME,
+            LocationEntry.COLUMN_SYNC_INTERVAL
+    };
+
+    private static final int INDEX_LOCATION_ID = 0;
+    private static final int INDEX_LOCATION_SETTING = 1;
+    private static final int INDEX_COORD_LAT = 2;
+    private static final int INDEX_COORD_LONG = 3;
+    private static final int INDEX_LAST_SYNC_TIME = 4;
+    private static final int INDEX_SYNC_INTERVAL = 5;
+
+    private final Context mContext;
+
+    private final int mParallelism;
+
+    private final int mCommitBatchSize;
+
+    private static final ThreadPoolExecutor sFetchExecutor = newFetchExecutor();
+
+    private final ForecastResponseCache mResponseCache;
+
+    public SunshineSyncEngine(Context context) {
+        this(context, DEFAULT_PARALLELISM, DEFAULT_COMMIT_BATCH_SIZE);
+    }
+
+    /**
+     * @param parallelism     How many locations are fetched at the same time, at most
+     *                        MAX_PARALLELISM
+     * @param commitBatchSize How many parsed locations are committed per provider transaction
+     */
+    public SunshineSyncEngine(Context context, int parallelism, int commitBatchSize) {
+        if (parallelism < 1 || parallelism > MAX_PARALLELISM || commitBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid parallelism or batch size");
+        }
+        mContext = context.getApplicationContext();
+        mParallelism = parallelism;
+        mCommitBatchSize = commitBatchSize;
+        mResponseCache = ForecastResponseCache.getInstance(mContext);
+    }
+
+    /**
+     * A row of the location table.
+     */
+    public static final class SavedLocation {
+
+        public final long id;
+
+        public final String locationSetting;
+
+        /* Latitude and longitude, null if the location has never been synced */
+        public final double[] coordinates;
+
+        /* Freshness metadata, 0 if the location has never been synced */
+        public final long lastSyncMillis;
+        public final long syncIntervalSeconds;
+
+        public SavedLocation(long id, String locationSetting, double[] coordinates) {
+            this(id, locationSetting, coordinates, 0, 0);
+        }
+
+        public SavedLocation(long id, String locationSetting, double[] coordinates,
+                             long lastSyncMillis, long syncIntervalSeconds) {
+            this.id = id;
+            this.locationSetting = locationSetting;
+            this.coordinates = coordinates;
+            this.lastSyncMillis = lastSyncMillis;
+            this.syncIntervalSeconds = syncIntervalSeconds;
+        }
+    }
+
+    /**
+     * What a sync run did. Locations that were already being synced by someone else are
+     * skipped, locations that failed are listed with their cause.
+     */
+    public static final class SyncReport {
+
+        public int locationsSynced;
+        public int locationsSkipped;
+        public int locationsNotModified;
+
+        /* Locations that were not synced because the sync was cancelled */
+        public int locationsPending;
+        public boolean cancelled;
+
+        public int rowsInserted;
+        public int rowsUpdated;
+        public int rowsDeleted;
+
+        /* One merge result Bundle per synced location, see WeatherContract.METHOD_MERGE_FORECASTS */
+        public final List<Bundle> locationResults = new ArrayList<>();
+
+        /* Ids of the locations whose forecast had not changed since their last sync */
+        public final List<Long> notModifiedLocationIds = new ArrayList<>();
+
+        public final Map<Long, Exception> failures = new HashMap<>();
+
+        /**
+         * @return true if some locations still need a sync, because the sync was cancelled or
+         * because they failed
+         */
+        public boolean needsReschedule() {
+            return cancelled || !failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return (cancelled ? "Cancelled after " : "") + locationsSynced + " locations synced, "
+                    + locationsNotModified + " not modified, " + locationsSkipped + " skipped, "
+                    + failures.size() + " failed, " + locationsPending + " pending; rows: "
+                    + rowsInserted + " inserted, " + rowsUpdated + " updated, "
+                    + rowsDeleted + " deleted";
+        }
+    }
+
+    private static final class FetchedForecast {
+
+        final SavedLocation location;
+        final NetworkUtils.ForecastResponse response;
+        final boolean notModified;
+        final boolean cancelled;
+        final Exception error;
+
+        FetchedForecast(SavedLocation location, NetworkUtils.ForecastResponse response,
+                        boolean notModified, Exception error) {
+            this.location = location;
+            this.response = response;
+            this.notModified = notModified;
+            this.cancelled = false;
+            this.error = error;
+        }
+
+        private FetchedForecast(SavedLocation location) {
+            this.location = location;
+            this.response = null;
+            this.notModified = false;
+            this.cancelled = true;
+            this.error = null;
+        }
+
+        static FetchedForecast cancelled(SavedLocation location) {
+            return new FetchedForecast(location);
+        }
+
+        OpenWeatherJsonUtils.Forecast forecast() {
+            return response.forecast;
+        }
+
+        /* Drops the response staged in the cache, for a forecast that won't be committed */
+        void discard() {
+            if (response != null) response.discardFromCache();
+        }
+    }
+
+    public static List<SavedLocation> loadSavedLocations(Context context) {
+
+        List<SavedLocation> locations = new ArrayList<>();
+
+        Cursor cursor = context.getContentResolver().query(LocationEntry.CONTENT_URI,
+                LOCATION_PROJECTION, null, null, null);
+
+        if (cursor == null) return locations;
+
+        try {
+            while (cursor.moveToNext()) {
+                locations.add(readSavedLocation(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return locations;
+    }
+
+    /**
+     * @return The saved location with this id, or null if there is none
+     */
+    public static SavedLocation loadSavedLocation(Context context, long locationId) {
+
+        Cursor cursor = context.getContentResolver().query(
+                LocationEntry.buildLocationUri(locationId), LOCATION_PROJECTION, null, null, null);
+
+        if (cursor == null) return null;
+
+        try {
+            return cursor.moveToFirst() ? readSavedLocation(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static SavedLocation readSavedLocation(Cursor cursor) {
+
+        double[] coordinates = null;
+        if (!cursor.isNull(INDEX_COORD_LAT) && !cursor.isNull(INDEX_COORD_LONG)) {
+            coordinates = new double[]{
+                    cursor.getDouble(INDEX_COORD_LAT),
+                    cursor.getDouble(INDEX_COORD_LONG)};
+        }
+
+        /* getLong returns 0 for null, which is what "never synced" is anyway */
+        return new SavedLocation(cursor.getLong(INDEX_LOCATION_ID),
+                cursor.getString(INDEX_LOCATION_SETTING), coordinates,
+                cursor.getLong(INDEX_LAST_SYNC_TIME),
+                cursor.getLong(INDEX_SYNC_INTERVAL));
+    }
+
+    public SyncReport syncLocations(List<SavedLocation> locations) {
+        return syncLocations(locations, new CancellationSignal());
+    }
+
+    /**
+     * @param locations The locations to sync
+     * @param signal    Cancels the sync, see the class comment
+     *
+     * @return What was done, also when the sync was cancelled
+     */
+    public SyncReport syncLocations(List<SavedLocation> locations,
+                                    final CancellationSignal signal) {
+
+        SyncReport report = new SyncReport();
+
+        if (locations.isEmpty()) return report;
+
+        CompletionService<FetchedForecast> completionService =
+                new ExecutorCompletionService<>(sFetchExecutor);
+
+        /* Every task submitted, read by the cancel listener on whichever thread cancels */
+        final List<FetchTask> tasks = new CopyOnWriteArrayList<>();
+
+        /* Submitted tasks whose result hasn't been taken yet, never more than mParallelism */
+        Map<Future<FetchedForecast>, FetchTask> pending = new HashMap<>();
+
+        /* Disconnects the requests in flight, wakes up the ones waiting to retry */
+        signal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                for (FetchTask task : tasks) {
+                    task.signal.cancel();
+                }
+            }
+        });
+
+        Set<Long> heldLocks = new HashSet<>();
+
+        List<FetchedForecast> batch = new ArrayList<>(mCommitBatchSize);
+
+        Iterator<SavedLocation> unsubmitted = locations.iterator();
+
+        try {
+            while (!signal.isCanceled()) {
+
+                /* Keeps mParallelism fetches going, the shared pool is never flooded */
+                while (pending.size() < mParallelism && unsubmitted.hasNext()) {
+
+                    SavedLocation location = unsubmitted.next();
+
+                    if (!SyncLocks.tryLock(location.id)) {
+                        report.locationsSkipped++;
+                        continue;
+                    }
+                    heldLocks.add(location.id);
+
+                    FetchTask task = new FetchTask(location);
+                    tasks.add(task);
+                    pending.put(completionService.submit(task), task);
+                }
+
+                if (pending.isEmpty()) break;
+
+                Future<FetchedForecast> future = completionService.poll(
+                        CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (future == null) continue;
+
+                pending.remove(future);
+
+                FetchedForecast fetched = future.get();
+
+                if (fetched.cancelled) continue;
+
+                if (fetched.error != null) {
+                    Log.w(TAG, "Sync failed for " + fetched.location.locationSetting, fetched.error);
+                    report.failures.put(fetched.location.id, fetched.error);
+                    release(heldLocks, fetched.location.id);
+                    continue;
+                }
+
+                if (fetched.notModified) {
+                    report.locationsNotModified++;
+                    report.notModifiedLocationIds.add(fetched.location.id);
+                    release(heldLocks, fetched.location.id);
+                    continue;
+                }
+
+                batch.add(fetched);
+
+                if (batch.size() >= mCommitBatchSize && !signal.isCanceled()) {
+                    commit(batch, report, heldLocks);
+                }
+            }
+
+            if (!signal.isCanceled()) {
+                commit(batch, report, heldLocks);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            /* fetchForecast never throws, it reports errors in its result */
+            throw new IllegalStateException(e);
+        } finally {
+            signal.setOnCancelListener(null);
+
+            /* Fetched but never committed, their responses must not answer the next request */
+            for (FetchedForecast fetched : batch) {
+                fetched.discard();
+            }
+
+            /*
+             * A task that is still running keeps its location locked until it finishes, it
+             * releases the lock itself. The locations of tasks that finished or never started
+             * are released below with the others.
+             */
+            for (FetchTask task : pending.values()) {
+                if (task.abandon()) heldLocks.remove(task.location.id);
+            }
+
+            for (Long locationId : heldLocks) {
+                SyncLocks.unlock(locationId);
+            }
+        }
+
+        if (signal.isCanceled() || Thread.currentThread().isInterrupted()) {
+            report.cancelled = true;
+            report.locationsPending = locations.size() - report.locationsSynced
+                    - report.locationsNotModified - report.locationsSkipped
+                    - report.failures.size();
+        }
+
+        return report;
+    }
+
+    /*
+     * Fetches one location on the pool. Once the sync gives up on a task that is still running,
+     * see abandon(), the task owns the location's lock and releases it when it finishes, so the
+     * location can't be synced twice at the same time.
+     */
+    private final class FetchTask implements Callable<FetchedForecast> {
+
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+
+        final SavedLocation location;
+
+        /* Cancelled with the sync, or when the task is abandoned */
+        final CancellationSignal signal = new CancellationSignal();
+
+        private final AtomicInteger mState = new AtomicInteger(NEW);
+
+        /* Set before the task is DONE */
+        private volatile FetchedForecast mResult;
+
+        FetchTask(SavedLocation location) {
+            this.location = location;
+        }
+
+        @Override
+        public FetchedForecast call() {
+
+            if (!mState.compareAndSet(NEW, RUNNING)) return FetchedForecast.cancelled(location);
+
+            FetchedForecast fetched = fetchForecast(location, signal);
+            mResult = fetched;
+
+            if (!mState.compareAndSet(RUNNING, DONE)) {
+                fetched.discard();
+                SyncLocks.unlock(location.id);
+            }
+
+            return fetched;
+        }
+
+        /**
+         * Gives up on the task and cancels its request.
+         *
+         * @return true if the task is still running and will release its lock itself, false if
+         * it never started or has finished, in which case the caller releases the lock
+         */
+        boolean abandon() {
+
+            signal.cancel();
+
+            while (true) {
+                int state = mState.get();
+
+                if (state == RUNNING) {
+                    if (mState.compareAndSet(RUNNING, ABANDONED)) return true;
+                } else if (state == NEW) {
+                    if (mState.compareAndSet(NEW, ABANDONED)) return false;
+                } else {
+                    /* Finished, but its result was never taken */
+                    if (mResult != null) mResult.discard();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newFetchExecutor() {
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLELISM, MAX_PARALLELISM,
+                FETCH_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "SunshineSyncFetch-" + mCount.incrementAndGet());
+                    }
+                });
+
+        /* No threads at all between syncs */
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void release(Set<Long> heldLocks, long locationId) {
+        heldLocks.remove(locationId);
+        SyncLocks.unlock(locationId);
+    }
+
+    // Runs on the pool; network and parsing only, nothing here touches the database
+    private FetchedForecast fetchForecast(SavedLocation location, CancellationSignal signal) {
+
+        try {
+            signal.throwIfCanceled();
+
+            URL weatherRequestUrl = NetworkUtils.getUrlForLocation(
+                    location.locationSetting, location.coordinates);
+
+            /* A location that has never been synced has no forecast stored, whatever the cache says */
+            NetworkUtils.ForecastResponse response = NetworkUtils.getForecastFromHttpUrl(
+                    mResponseCache, weatherRequestUrl, location.lastSyncMillis > 0,
+                    SYNC_HTTP_OPTIONS, signal);
+
+            if (response.isNotModified()) {
+                return new FetchedForecast(location, response, true, null);
+            }
+
+            OpenWeatherJsonUtils.Forecast forecast = response.forecast;
+
+            if (forecast == null || forecast.weatherValues.length == 0) {
+                response.discardFromCache();
+                throw new IOException("No forecast for " + location.locationSetting);
+            }
+
+            return new FetchedForecast(location, response, false, null);
+
+        } catch (OperationCanceledException | InterruptedIOException e) {
+            return FetchedForecast.cancelled(location);
+        } catch (Exception e) {
+            /* A cancel disconnects the request, whatever that fails with is not a failure */
+            if (signal.isCanceled()) return FetchedForecast.cancelled(location);
+
+            SyncMetrics.getInstance().recordFailure(e);
+            return new FetchedForecast(location, null, false, e);
+        }
+    }
+
+    /*
+     * Commits one batch of parsed forecasts, coordinates included, in a single provider
+     * transaction. If the commit fails, every location in the batch is reported as failed.
+     */
+    private void commit(List<FetchedForecast> batch, SyncReport report, Set<Long> heldLocks) {
+
+        if (batch.isEmpty()) return;
+
+        ArrayList<Bundle> forecasts = new ArrayList<>(batch.size());
+
+        for (FetchedForecast fetched : batch) {
+
+            Bundle forecast = new Bundle();
+            forecast.putLong(WeatherContract.KEY_LOCATION_ID, fetched.location.id);
+            forecast.putParcelableArray(WeatherContract.KEY_FORECAST_VALUES,
+                    fetched.forecast().weatherValues);
+            forecast.putDouble(LocationEntry.COLUMN_COORD_LAT, fetched.forecast().latitude);
+            forecast.putDouble(LocationEntry.COLUMN_COORD_LONG, fetched.forecast().longitude);
+
+            forecasts.add(forecast);
+        }
+
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(WeatherContract.KEY_FORECASTS, forecasts);
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        SyncMetrics metrics = SyncMetrics.getInstance();
+
+        try {
+            long writeStart = SystemClock.elapsedRealtime();
+
+            Bundle result = contentResolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.METHOD_MERGE_FORECASTS, null, extras);
+
+            metrics.recordLatency(SyncMetrics.Phase.WRITE,
+                    SystemClock.elapsedRealtime() - writeStart);
+            metrics.recordRowsWritten(result.getInt(WeatherContract.KEY_ROWS_INSERTED)
+                    + result.getInt(WeatherContract.KEY_ROWS_UPDATED)
+                    + result.getInt(WeatherContract.KEY_ROWS_DELETED));
+
+            report.locationsSynced += batch.size();
+            report.rowsInserted += result.getInt(WeatherContract.KEY_ROWS_INSERTED);
+            report.rowsUpdated += result.getInt(WeatherContract.KEY_ROWS_UPDATED);
+            report.rowsDeleted += result.getInt(WeatherContract.KEY_ROWS_DELETED);
+
+            List<Bundle> locationResults =
+                    result.<Bundle>getParcelableArrayList(WeatherContract.KEY_FORECASTS);
+            if (locationResults != null) {
+                report.locationResults.addAll(locationResults);
+            }
+
+            /* Only now do the validators describe what is stored */
+            for (FetchedForecast fetched : batch) {
+                try {
+                    fetched.response.commitToCache();
+                } catch (IOException e) {
+                    /* The next request for this location is simply not conditional */
+                    Log.w(TAG, "Could not cache the response for "
+                            + fetched.location.locationSetting, e);
+                }
+            }
+
+            /* The current location's coordinates are also what the map and the next request use */
+            long currentLocationId = SunshinePreferences.getCurrentLocationId(mContext);
+            for (FetchedForecast fetched : batch) {
+                if (fetched.location.id == currentLocationId) {
+                    SunshinePreferences.setLocationDetails(mContext,
+                            fetched.forecast().latitude, fetched.forecast().longitude);
+                }
+            }
+
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Committing " + batch.size() + " forecasts failed", e);
+            metrics.recordFailure(e);
+            for (FetchedForecast fetched : batch) {
+                /* Keep the old validators, the next request has to fetch this forecast again */
+                fetched.discard();
+                report.failures.put(fetched.location.id, e);
+            }
+        } finally {
+            for (FetchedForecast fetched : batch) {
+                release(heldLocks, fetched.location.id);
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.android.sunshine.sync;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs scheduled syncs one at a time on a dedicated background thread. Unlike an AsyncTask, a
+ * sync started here can be stopped: {@link SyncHandle#cancel()} trips the sync's
+ * CancellationSignal, and the sync gives up at its next checkpoint.
+ */
+final class SunshineSyncExecutor {
+
+    private static final ExecutorService sExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "SunshineSync");
+                }
+            });
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    interface Callback {
+
+        /**
+         * Called on the main thread once the sync is over, unless it was cancelled.
+         */
+        void onSyncFinished(SunshineSyncEngine.SyncReport report);
+    }
+
+    static final class SyncHandle {
+
+        private final CancellationSignal mSignal;
+
+        private SyncHandle(CancellationSignal signal) {
+            mSignal = signal;
+        }
+
+        void cancel() {
+            mSignal.cancel();
+        }
+    }
+
+    private SunshineSyncExecutor() {
+    }
+
+    /**
+     * Queues a sync of every saved location.
+     *
+     * @return A handle to cancel the sync with
+     */
+    static SyncHandle syncAllLocations(Context context, final Callback callback) {
+
+        final Context appContext = context.getApplicationContext();
+        final CancellationSignal signal = new CancellationSignal();
+
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                if (signal.isCanceled()) return;
+
+                final SunshineSyncEngine.SyncReport report =
+                        SunshineSyncTask.syncAllLocations(appContext, signal);
+
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!signal.isCanceled()) callback.onSyncFinished(report);
+                    }
+                });
+            }
+        });
+
+        return new SyncHandle(signal);
+    }
+}
@@ -14,6 +14,10 @@ public class SunshineSyncIntentService extends IntentService {
     @Override
     protected void onHandleIntent(Intent intent) {
 
+        /*
+         * The recurring job may be running meanwhile, so the interval this sync measured is only
+         * picked up when the job finishes, see SunshineFirebaseJobService
+         */
         SunshineSyncTask.syncWeather(this);
 
     }
@@ -3,68 +3,205 @@ package com.example.android.sunshine.sync;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
 import android.text.format.DateUtils;
+import android.util.Log;
 
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
-import com.example.android.sunshine.utilities.NetworkUtils;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.metrics.SyncMetrics;
+import com.example.android.sunshine.utilities.ForecastResponseCache;
 import com.example.android.sunshine.utilities.NotificationUtils;
-import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 
-import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 
 public class SunshineSyncTask {
 
-    synchronized public static void syncWeather(Context context) {
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
+    /*
+     * Syncs the current location only. Used when the user asks for fresh data, for example
+     * right after changing the location in the settings.
+     */
+    public static void syncWeather(Context context) {
 
         try {
 
-            URL weatherRequestUrl = NetworkUtils.getUrl(context);
+            /*
+             * Resolve the location row first. If this city was saved before, its cached forecast
+             * shows up right away while the network request is still running.
+             */
+            long locationId = resolveCurrentLocation(context);
+
+            /* One snapshot, so the location name and its coordinates can't come from two edits */
+            SunshinePreferences.Snapshot prefs = SunshinePreferences.getSnapshot(context);
+            double[] coordinates = prefs.latLonAvailable ? prefs.getCoordinates() : null;
+
+            /* Keep the location's sync schedule, an explicit sync shouldn't reset it */
+            long lastSyncMillis = 0;
+            long syncIntervalSeconds = 0;
+            SunshineSyncEngine.SavedLocation saved =
+                    SunshineSyncEngine.loadSavedLocation(context, locationId);
+            if (saved != null) {
+                lastSyncMillis = saved.lastSyncMillis;
+                syncIntervalSeconds = saved.syncIntervalSeconds;
+            }
+
+            SunshineSyncEngine.SavedLocation location = new SunshineSyncEngine.SavedLocation(
+                    locationId,
+                    prefs.location,
+                    coordinates,
+                    lastSyncMillis,
+                    syncIntervalSeconds);
 
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(
-                    weatherRequestUrl);
+            sync(context, Collections.singletonList(location), new CancellationSignal());
 
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
+        } catch (Exception e) {
+            Log.e(TAG, "Sync of the current location failed", e);
+            SyncMetrics.getInstance().recordFailure(e);
+        }
 
-            if (weatherValues != null && weatherValues.length != 0) {
+    }
 
-                ContentResolver sunshineContentResolver =
-                        context.getContentResolver();
+    /*
+     * Syncs every saved location that is due, see AdaptiveSyncScheduler. This is what the
+     * periodic job runs. The signal is checked between phases, a cancelled sync returns what it
+     * managed so far.
+     */
+    public static SunshineSyncEngine.SyncReport syncAllLocations(Context context,
+                                                                 CancellationSignal signal) {
 
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
+        try {
 
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
+            resolveCurrentLocation(context);
 
-                boolean notificationEnabled = SunshinePreferences
-                        .areNotificationEnabled(context);
+            signal.throwIfCanceled();
 
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
+            AdaptiveSyncScheduler scheduler = new AdaptiveSyncScheduler(context);
 
-                boolean oneDayPassedSinceLastNotification = false;
+            List<SunshineSyncEngine.SavedLocation> locations =
+                    SunshineSyncEngine.loadSavedLocations(context);
+            List<SunshineSyncEngine.SavedLocation> dueLocations =
+                    scheduler.selectDueLocations(locations);
 
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+            Log.d(TAG, dueLocations.size() + " of " + locations.size() + " locations due");
 
-                    oneDayPassedSinceLastNotification = true;
-                }
+            return sync(context, dueLocations, signal);
 
-                if (notificationEnabled && oneDayPassedSinceLastNotification) {
+        } catch (OperationCanceledException e) {
+            SunshineSyncEngine.SyncReport report = new SunshineSyncEngine.SyncReport();
+            report.cancelled = true;
+            return report;
+        } catch (Exception e) {
+            Log.e(TAG, "Sync of the saved locations failed", e);
+            SyncMetrics.getInstance().recordFailure(e);
 
-                    NotificationUtils.notifyUserOfNewWeather(context);
+            /* Not tied to a location, but the job still has to know the sync didn't happen */
+            SunshineSyncEngine.SyncReport report = new SunshineSyncEngine.SyncReport();
+            report.failures.put(SunshinePreferences.INVALID_LOCATION_ID, e);
+            return report;
+        }
 
-                }
+    }
 
+    private static SunshineSyncEngine.SyncReport sync(
+            Context context, List<SunshineSyncEngine.SavedLocation> locations,
+            CancellationSignal signal) {
+
+        SyncMetrics metrics = SyncMetrics.getInstance();
+        metrics.installDefaultReporters(context);
+
+        long syncStart = SystemClock.elapsedRealtime();
+
+        try {
+            SunshineSyncEngine.SyncReport report = new SunshineSyncEngine(context)
+                    .syncLocations(locations, signal);
+
+            Log.d(TAG, "Sync finished: " + report);
+            Log.d(TAG, ForecastResponseCache.getInstance(context).toString());
+
+            new AdaptiveSyncScheduler(context).recordSync(locations, report);
+
+            /* Whatever was committed stays, but a cancelled sync doesn't notify */
+            if (report.locationsSynced > 0 && !signal.isCanceled()) {
+
+                long notifyStart = SystemClock.elapsedRealtime();
+                notifyIfNeeded(context);
+                metrics.recordLatency(SyncMetrics.Phase.NOTIFY,
+                        SystemClock.elapsedRealtime() - notifyStart);
             }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+            return report;
+
+        } finally {
+            metrics.recordLatency(SyncMetrics.Phase.SYNC, SystemClock.elapsedRealtime() - syncStart);
+            metrics.report();
+        }
+    }
+
+    private static void notifyIfNeeded(Context context) {
+
+        boolean notificationEnabled = SunshinePreferences
+                .areNotificationEnabled(context);
+
+        long timeSinceLastNotification = SunshinePreferences
+                .getEllapsedTimeSinceLastNotification(context);
+
+        boolean oneDayPassedSinceLastNotification = false;
+
+        if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+
+            oneDayPassedSinceLastNotification = true;
+        }
+
+        if (notificationEnabled && oneDayPassedSinceLastNotification) {
+
+            NotificationUtils.notifyUserOfNewWeather(context);
+
+        }
+    }
+
+    /*
+     * Looks up (or creates) the location table row for the preferred location and makes it the
+     * current location. Coordinates saved with the row are restored, so the request can use
+     * lat/lon again after switching back to a city that was synced before.
+     */
+    public static long resolveCurrentLocation(Context context) {
+
+        ContentResolver contentResolver = context.getContentResolver();
+
+        SunshinePreferences.Snapshot prefs = SunshinePreferences.getSnapshot(context);
+
+        ContentValues location = new ContentValues();
+        location.put(LocationEntry.COLUMN_LOCATION_SETTING, prefs.location);
+
+        Uri locationUri = contentResolver.insert(LocationEntry.CONTENT_URI, location);
+        long locationId = Long.parseLong(locationUri.getLastPathSegment());
+
+        if (!prefs.latLonAvailable) {
+
+            Cursor cursor = contentResolver.query(locationUri,
+                    new String[]{LocationEntry.COLUMN_COORD_LAT, LocationEntry.COLUMN_COORD_LONG},
+                    null, null, null);
+
+            if (cursor != null) {
+                if (cursor.moveToFirst() && !cursor.isNull(0) && !cursor.isNull(1)) {
+                    SunshinePreferences.setLocationDetails(context,
+                            cursor.getDouble(0), cursor.getDouble(1));
+                }
+                cursor.close();
+            }
+        }
+
+        if (prefs.locationId != locationId) {
+            SunshinePreferences.setCurrentLocationId(context, locationId);
         }
 
+        return locationId;
     }
 }
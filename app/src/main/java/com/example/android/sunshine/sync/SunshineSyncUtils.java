@@ -2,13 +2,15 @@ package com.example.android.sunshine.sync;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.utilities.BackgroundExecutor;
 import com.firebase.jobdispatcher.Constraint;
 import com.firebase.jobdispatcher.Driver;
 import com.firebase.jobdispatcher.FirebaseJobDispatcher;
@@ -17,14 +19,9 @@ import com.firebase.jobdispatcher.Job;
 import com.firebase.jobdispatcher.Lifetime;
 import com.firebase.jobdispatcher.Trigger;
 
-import java.util.concurrent.TimeUnit;
-
 public class SunshineSyncUtils {
 
-    private static final int SYNC_INTERVAL_TIME = 3;
-    private static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(
-            SYNC_INTERVAL_TIME);
-    private static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
+    private static final String TAG = SunshineSyncUtils.class.getSimpleName();
 
     private static boolean sInitialized;
 
@@ -32,6 +29,23 @@ public class SunshineSyncUtils {
 
     static void scheduleFirebaseJobDispatcherSync(@NonNull final Context context) {
 
+        long intervalSeconds = SunshinePreferences.getSyncJobIntervalSeconds(context);
+        if (intervalSeconds <= 0) {
+            intervalSeconds = AdaptiveSyncScheduler.DEFAULT_INTERVAL_SECONDS;
+        }
+
+        scheduleFirebaseJobDispatcherSync(context, intervalSeconds);
+    }
+
+    /*
+     * Schedules the recurring sync job every intervalSeconds, with a flex window of a third of
+     * the interval so the system can batch it with other work.
+     */
+    private static void scheduleFirebaseJobDispatcherSync(@NonNull final Context context,
+                                                          long intervalSeconds) {
+
+        int syncIntervalSeconds = (int) intervalSeconds;
+        int syncFlextimeSeconds = syncIntervalSeconds / 3;
 
         Driver driver = new GooglePlayDriver(context);
         FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
@@ -43,13 +57,31 @@ public class SunshineSyncUtils {
                 .setLifetime(Lifetime.FOREVER)
                 .setRecurring(true)
                 .setTrigger(Trigger.executionWindow(
-                        SYNC_INTERVAL_SECONDS,
-                        SYNC_INTERVAL_SECONDS + SYNC_FLEXTIME_SECONDS))
+                        syncIntervalSeconds,
+                        syncIntervalSeconds + syncFlextimeSeconds))
                 .setReplaceCurrent(true)
                 .build();
 
         dispatcher.schedule(syncSunshineJob);
 
+        SunshinePreferences.setSyncJobIntervalSeconds(context, intervalSeconds);
+    }
+
+    /*
+     * Moves the recurring job to the shortest interval of the saved locations, if a sync changed
+     * it. Never call this while the job is running: replacing the job stops it. The job calls it
+     * once it has finished, an immediate sync never does.
+     */
+    static void rescheduleIfIntervalChanged(@NonNull final Context context) {
+
+        long intervalSeconds = new AdaptiveSyncScheduler(context)
+                .getJobIntervalSeconds(SunshineSyncEngine.loadSavedLocations(context));
+
+        if (intervalSeconds == SunshinePreferences.getSyncJobIntervalSeconds(context)) return;
+
+        Log.d(TAG, "Sync job interval is now " + intervalSeconds + " seconds");
+
+        scheduleFirebaseJobDispatcherSync(context, intervalSeconds);
     }
 
 
@@ -59,35 +91,47 @@ public class SunshineSyncUtils {
 
         sInitialized = true;
 
-        scheduleFirebaseJobDispatcherSync(context);
-
+        final Context appContext = context.getApplicationContext();
 
-        Thread checkForEmpty = new Thread(new Runnable() {
+        /* Nothing here is needed for the first frame, so none of it runs on the main thread */
+        BackgroundExecutor.execute(new Runnable() {
             @Override
             public void run() {
-                Uri foreCastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
 
-                String[] projectionColumns = {WeatherContract.WeatherEntry._ID};
-                String selectionStatement = WeatherContract.WeatherEntry
-                        .getSqlSelectForTodayOnwards();
+                scheduleFirebaseJobDispatcherSync(appContext);
 
-                Cursor cursor = context.getContentResolver().query(
-                        foreCastQueryUri,
-                        projectionColumns,
-                        selectionStatement,
-                        null,
-                        null);
+                long checkStart = SystemClock.elapsedRealtime();
+                boolean hasFreshData = hasFreshData(appContext);
+                Log.d(TAG, "Freshness check took "
+                        + (SystemClock.elapsedRealtime() - checkStart) + " ms");
 
-                if (null == cursor || cursor.getCount() == 0) {
-                    startImmediateSync(context);
+                if (!hasFreshData) {
+                    startImmediateSync(appContext);
                 }
-
-                cursor.close();
-
             }
         });
-        //will start the thread
-        checkForEmpty.start();
+    }
+
+    /**
+     * Asks the provider whether the current location has a forecast from today onwards. This
+     * reads a single row and never loads the forecast, so it is cheap, but it still touches the
+     * database: call it off the main thread.
+     *
+     * @return true if there is something to show for today
+     */
+    public static boolean hasFreshData(@NonNull Context context) {
+
+        long locationId = SunshinePreferences.getCurrentLocationId(context);
+
+        if (locationId == SunshinePreferences.INVALID_LOCATION_ID) return false;
+
+        Bundle result = context.getContentResolver().call(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.METHOD_HAS_FRESH_DATA,
+                Long.toString(locationId),
+                null);
+
+        return result != null && result.getBoolean(WeatherContract.KEY_HAS_FRESH_DATA);
     }
 
 
@@ -0,0 +1,29 @@
+package com.example.android.sunshine.sync;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One lock per location, so two syncs of the same location never overlap while different
+ * locations sync in parallel. A lock is only a marker in a set rather than a monitor because
+ * the thread that commits a location's forecast is not the one that fetched it, and because
+ * a location only has an entry while it is being synced, deleted locations leave nothing behind.
+ */
+final class SyncLocks {
+
+    private static final Set<Long> sLockedLocations =
+            Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+    private SyncLocks() {
+    }
+
+    // Returns false if the location is already being synced
+    static boolean tryLock(long locationId) {
+        return sLockedLocations.add(locationId);
+    }
+
+    static void unlock(long locationId) {
+        sLockedLocations.remove(locationId);
+    }
+}
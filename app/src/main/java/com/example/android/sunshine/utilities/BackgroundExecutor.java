@@ -0,0 +1,37 @@
+package com.example.android.sunshine.utilities;
+
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * One low-priority thread shared by the small background chores of the app, such as the
+ * startup checks, WAL checkpoints and the metrics log. Work queued here never competes with
+ * the main thread or the loaders for CPU, and the app doesn't pay for starting a new thread for
+ * every chore.
+ */
+public final class BackgroundExecutor {
+
+    private static final ExecutorService sExecutor =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "SunshineBackground");
+                }
+            });
+
+    private BackgroundExecutor() {
+    }
+
+    public static void execute(Runnable runnable) {
+        sExecutor.execute(runnable);
+    }
+}
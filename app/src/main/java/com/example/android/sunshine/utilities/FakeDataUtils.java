@@ -1,53 +1,113 @@
 package com.example.android.sunshine.utilities;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.net.Uri;
 
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.sync.SunshineSyncTask;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class FakeDataUtils {
 
-    private static int[] weather_IDS = { 200 , 300 , 500 , 711 , 900 , 962};
+    /* Fake data is always the same, so a screen full of it can be compared between runs */
+    private static final long SEED = 42;
 
-    private static ContentValues createTestWeatherContentValues(long date) {
-
-        ContentValues testWeatherValues = new ContentValues();
-
-        testWeatherValues.put(WeatherEntry.COLUMN_DATE , date);
-        testWeatherValues.put(WeatherEntry.COLUMN_DEGREES , Math.random()*2 );
-        testWeatherValues.put(WeatherEntry.COLUMN_HUMIDITY , Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_PRESSURE , 875 + Math.random()*100);
-
-        int MaxTemp = (int) (Math.random()*100);
-        testWeatherValues.put(WeatherEntry.COLUMN_MAX_TEMP ,MaxTemp);
-        testWeatherValues.put(WeatherEntry.COLUMN_MIN_TEMP  , MaxTemp - (int)(Math.random()*100));
-        testWeatherValues.put(WeatherEntry.COLUMN_WIND_SPEED , Math.random()*10);
-        testWeatherValues.put(WeatherEntry.COLUMN_WEATHER_ID ,weather_IDS[(int) (Math.random()*10)%5]);
-
-        return testWeatherValues;
-    }
+    /* Rows handed to the provider at a time when filling it with synthetic data */
+    private static final int BATCH_SIZE = 500;
 
     public static void insertFakeData(Context context)
     {
         long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
 
-        List<ContentValues> fakeValues = new ArrayList<ContentValues>();
+        SyntheticForecastGenerator generator = new SyntheticForecastGenerator(SEED);
+        SyntheticForecastGenerator.Location location = generator.location(0);
+
+        ContentValues[] fakeValues = new ContentValues[7];
 
         for(int i =0 ; i<7 ;i++)
         {
-            fakeValues.add(FakeDataUtils.createTestWeatherContentValues(today + TimeUnit.DAYS.
-                    toMillis(i)));
+            fakeValues[i] = OpenWeatherJsonUtils.toContentValues(
+                    generator.day(location, today + TimeUnit.DAYS.toMillis(i)));
+        }
 
+        /* Before the first sync there is no current location row yet */
+        long locationId = SunshinePreferences.getCurrentLocationId(context);
+        if (locationId == SunshinePreferences.INVALID_LOCATION_ID) {
+            locationId = SunshineSyncTask.resolveCurrentLocation(context);
         }
 
         context.getContentResolver().bulkInsert(
-                WeatherEntry.CONTENT_URI , fakeValues.toArray(new ContentValues[7]));
+                WeatherEntry.buildWeatherUriForLocation(locationId), fakeValues);
+    }
+
+    /**
+     * Fills the provider with synthetic forecasts, for load testing: one location row per
+     * synthetic location, each with the given number of days starting today. Rows go in
+     * batches of BATCH_SIZE, so memory stays the same however many rows are asked for.
+     *
+     * @param context           Used to reach the provider
+     * @param locations         Number of synthetic locations
+     * @param days              Number of days per location
+     * @param seed              The same seed always inserts the same rows
+     * @param insertedLocations Receives the URI of each location row as soon as it is inserted,
+     *                          so the caller can delete them, forecasts included, even after a
+     *                          failure
+     * @return The number of weather rows inserted
+     */
+    public static int insertSyntheticData(Context context, int locations, int days, long seed,
+                                          List<Uri> insertedLocations) {
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
 
+        ContentResolver resolver = context.getContentResolver();
+        SyntheticForecastGenerator generator = new SyntheticForecastGenerator(seed);
+
+        ContentValues[] batch = new ContentValues[Math.min(days, BATCH_SIZE)];
+        int inserted = 0;
+
+        for (int index = 0; index < locations; index++) {
+
+            SyntheticForecastGenerator.Location location = generator.location(index);
+
+            ContentValues locationValues = new ContentValues();
+            locationValues.put(LocationEntry.COLUMN_LOCATION_SETTING, location.name);
+            locationValues.put(LocationEntry.COLUMN_COORD_LAT, location.latitude);
+            locationValues.put(LocationEntry.COLUMN_COORD_LONG, location.longitude);
+
+            Uri locationUri = resolver.insert(LocationEntry.CONTENT_URI, locationValues);
+            insertedLocations.add(locationUri);
+
+            Uri weatherUri = WeatherEntry.buildWeatherUriForLocation(
+                    Long.parseLong(locationUri.getLastPathSegment()));
+
+            int size = 0;
+            for (int day = 0; day < days; day++) {
+
+                DayForecast forecast =
+                        generator.day(location, today + TimeUnit.DAYS.toMillis(day));
+                batch[size++] = OpenWeatherJsonUtils.toContentValues(forecast);
+
+                if (size == batch.length || day == days - 1) {
+                    ContentValues[] values = batch;
+                    if (size < batch.length) {
+                        values = new ContentValues[size];
+                        System.arraycopy(batch, 0, values, 0, size);
+                    }
+                    inserted += resolver.bulkInsert(weatherUri, values);
+                    size = 0;
+                }
+            }
+        }
 
+        return inserted;
     }
 
 }
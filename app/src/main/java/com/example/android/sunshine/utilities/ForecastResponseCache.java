@@ -0,0 +1,324 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small on-disk cache of forecast responses, keyed by the request URL. Along with each body it
+ * keeps the ETag and Last-Modified validators the server sent, so the next request for the same
+ * URL can be made conditional. The cache is bounded both in entries and in bytes, and the least
+ * recently used responses are evicted first.
+ */
+public final class ForecastResponseCache {
+
+    private static final String TAG = ForecastResponseCache.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY = "forecast_responses";
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static ForecastResponseCache sInstance;
+
+    private final File mDirectory;
+
+    private final int mMaxEntries;
+
+    private final long mMaxBytes;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mNotModifiedCount = new AtomicLong();
+
+    /**
+     * A cached response. The body file stays valid until the entry is evicted or replaced.
+     *
+     * An entry returned by {@link #stage} is not part of the cache yet: its body is a temporary
+     * file, and it only replaces the stored entry once it is committed.
+     */
+    public static final class Entry {
+
+        public final String eTag;
+        public final String lastModified;
+
+        /* The normalized day the body was last parsed for, see SunshineDateUtils */
+        public final long parsedForDay;
+
+        public final File body;
+
+        final boolean staged;
+
+        Entry(String eTag, String lastModified, long parsedForDay, File body, boolean staged) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.parsedForDay = parsedForDay;
+            this.body = body;
+            this.staged = staged;
+        }
+
+        /**
+         * @return The same response, recorded as parsed for another day. Takes effect once it
+         * is committed.
+         */
+        public Entry withParsedForDay(long day) {
+            return new Entry(eTag, lastModified, day, body, staged);
+        }
+    }
+
+    public static synchronized ForecastResponseCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastResponseCache(
+                    new File(context.getApplicationContext().getCacheDir(), CACHE_DIRECTORY),
+                    DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    public ForecastResponseCache(File directory, int maxEntries, long maxBytes) {
+        mDirectory = directory;
+        mMaxEntries = maxEntries;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return The cached response for this URL, or null if there is none
+     */
+    public synchronized Entry get(URL url) {
+
+        String key = keyFor(url);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+
+        if (!body.exists() || !meta.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(meta));
+            String eTag = in.readUTF();
+            String lastModified = in.readUTF();
+            long parsedForDay = in.readLong();
+
+            /* Reading an entry counts as using it */
+            long now = System.currentTimeMillis();
+            body.setLastModified(now);
+
+            return new Entry(eTag.isEmpty() ? null : eTag,
+                    lastModified.isEmpty() ? null : lastModified, parsedForDay, body, false);
+
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable cache entry for " + url, e);
+            body.delete();
+            meta.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Copies a response body to disk along with its validators, without touching the entry
+     * stored for the URL. The staged entry only replaces it once it is passed to
+     * {@link #commit}, so a response whose forecast never made it into the database can't
+     * answer the next conditional request. Pass it to {@link #discard} otherwise.
+     *
+     * @return The staged entry, its body can be read right away
+     */
+    public Entry stage(URL url, String eTag, String lastModified, long parsedForDay,
+                       InputStream in) throws IOException {
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+
+        /* Copy outside the lock, other locations keep reading and writing their own entries */
+        File temp = File.createTempFile(keyFor(url), TEMP_SUFFIX, mDirectory);
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            closeQuietly(out);
+            temp.delete();
+            throw e;
+        }
+        out.close();
+
+        return new Entry(eTag, lastModified, parsedForDay, temp, true);
+    }
+
+    /**
+     * Makes an entry the one stored for the URL: a staged entry replaces the previous body and
+     * validators, an entry from {@link #get} only has its metadata written again, see
+     * {@link Entry#withParsedForDay}.
+     */
+    public void commit(URL url, Entry entry) throws IOException {
+
+        String key = keyFor(url);
+
+        synchronized (this) {
+            if (entry.staged) {
+                File body = new File(mDirectory, key + BODY_SUFFIX);
+
+                if (!entry.body.renameTo(body)) {
+                    entry.body.delete();
+                    throw new IOException("Could not store the response for " + url);
+                }
+            }
+
+            writeMeta(key, entry.eTag, entry.lastModified, entry.parsedForDay);
+
+            if (entry.staged) trim(key);
+        }
+    }
+
+    /**
+     * Drops an entry that won't be committed. The entry stored for the URL, if any, is kept.
+     */
+    public void discard(Entry entry) {
+        if (entry.staged) entry.body.delete();
+    }
+
+    public void recordRequest(boolean notModified) {
+        mRequestCount.incrementAndGet();
+        if (notModified) mNotModifiedCount.incrementAndGet();
+    }
+
+    /**
+     * @return Share of the requests made since the process started that were answered with
+     * 304 Not Modified, between 0 and 1
+     */
+    public double getHitRate() {
+        long requests = mRequestCount.get();
+        return requests == 0 ? 0 : (double) mNotModifiedCount.get() / requests;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ForecastResponseCache: " + mNotModifiedCount.get() + " of " + mRequestCount.get()
+                + " requests not modified (hit rate " + Math.round(getHitRate() * 100) + "%)";
+    }
+
+    private void writeMeta(String key, String eTag, String lastModified, long parsedForDay)
+            throws IOException {
+
+        DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(new File(mDirectory, key + META_SUFFIX)));
+        try {
+            out.writeUTF(eTag == null ? "" : eTag);
+            out.writeUTF(lastModified == null ? "" : lastModified);
+            out.writeLong(parsedForDay);
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+     * Evicts the least recently used bodies until the cache is within its bounds again. The entry
+     * that was just written is never evicted, even if it is bigger than the whole cache.
+     */
+    private void trim(String keepKey) {
+
+        File[] bodies = mDirectory.listFiles();
+        if (bodies == null) return;
+
+        bodies = filterBodies(bodies);
+
+        long totalBytes = 0;
+        for (File body : bodies) {
+            totalBytes += body.length();
+        }
+
+        if (bodies.length <= mMaxEntries && totalBytes <= mMaxBytes) return;
+
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long firstUsed = first.lastModified();
+                long secondUsed = second.lastModified();
+                return firstUsed < secondUsed ? -1 : (firstUsed == secondUsed ? 0 : 1);
+            }
+        });
+
+        int entries = bodies.length;
+
+        for (File body : bodies) {
+
+            if (entries <= mMaxEntries && totalBytes <= mMaxBytes) break;
+
+            String name = body.getName();
+            String key = name.substring(0, name.length() - BODY_SUFFIX.length());
+            if (key.equals(keepKey)) continue;
+
+            totalBytes -= body.length();
+            entries--;
+
+            body.delete();
+            new File(mDirectory, key + META_SUFFIX).delete();
+        }
+    }
+
+    private static File[] filterBodies(File[] files) {
+
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(BODY_SUFFIX)) files[count++] = file;
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private static String keyFor(URL url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.toString().getBytes("UTF-8"));
+
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+
+        } catch (NoSuchAlgorithmException | IOException e) {
+            /* SHA-1 and UTF-8 are always available */
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import com.example.android.sunshine.core.DayStringCache;
+
+import java.util.Locale;
+
+/**
+ * Caches the strings of {@link SunshineDateUtils#getFriendlyDateString} per normalized day, so
+ * the forecast list and the detail screen format each day once instead of on every bind.
+ *
+ * A friendly date depends on which day is today, on the time zone and on the locale. The
+ * {@link DayStringCache} starts a new generation for a new day or a different default locale,
+ * and a time zone change broadcast drops the current one. Safe to use from any thread.
+ */
+final class FriendlyDateCache {
+
+    private static final DayStringCache sCache = new DayStringCache();
+
+    private static volatile boolean sReceiverRegistered;
+
+    private FriendlyDateCache() {
+    }
+
+    static String getFriendlyDateString(Context context, long normalizedUtcMidnight,
+                                        boolean showFullDate) {
+
+        /* The day the formatting code compares against, see getFriendlyDateString */
+        long todayUtcDay = System.currentTimeMillis() / SunshineDateUtils.DAY_IN_MILLIS;
+        Locale locale = Locale.getDefault();
+
+        String friendlyDate = sCache.get(normalizedUtcMidnight, showFullDate, todayUtcDay, locale);
+
+        if (friendlyDate == null) {
+
+            if (!sReceiverRegistered) registerTimeZoneReceiver(context);
+
+            friendlyDate = SunshineDateUtils.formatFriendlyDateString(context,
+                    normalizedUtcMidnight, showFullDate);
+            sCache.put(normalizedUtcMidnight, showFullDate, todayUtcDay, locale, friendlyDate);
+        }
+        return friendlyDate;
+    }
+
+    /* Drops every cached string, the next call formats against the current settings */
+    static void invalidate() {
+        sCache.invalidate();
+    }
+
+    /*
+     * The time zone isn't checked on every call: TimeZone.getDefault() returns a new copy each
+     * time. The system updates the process's default time zone and then broadcasts the change.
+     */
+    private static synchronized void registerTimeZoneReceiver(Context context) {
+
+        if (sReceiverRegistered) return;
+
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidate();
+            }
+        }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+
+        sReceiverRegistered = true;
+    }
+}
@@ -0,0 +1,417 @@
+package com.example.android.sunshine.utilities;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.util.Log;
+
+import com.example.android.sunshine.metrics.SyncMetrics;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A small HTTP GET client on top of HttpURLConnection, shared by everything in NetworkUtils.
+ *
+ * Responses are closed, never disconnected, so the platform can return the connection to its
+ * keep-alive pool and the next request to the same host skips the TCP and TLS handshakes.
+ * Every request has connect and read timeouts, asks for gzip and decodes it, and is retried a
+ * bounded number of times with jittered exponential backoff when the network or the server
+ * fails. All of this can be tuned per call with {@link Options}.
+ *
+ * A request made with a CancellationSignal is disconnected as soon as the signal is cancelled,
+ * whether it is still waiting for the response, reading the body or waiting to retry.
+ */
+public final class HttpClient {
+
+    private static final String TAG = HttpClient.class.getSimpleName();
+
+    /* Idle connections kept per host by the platform's keep-alive pool */
+    private static final int MAX_POOLED_CONNECTIONS = 5;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static HttpClient sInstance;
+
+    private final Random mJitter = new Random();
+
+    /**
+     * Per-call settings. Options are immutable, use {@link Builder} to derive new ones.
+     */
+    public static final class Options {
+
+        public static final Options DEFAULT = new Builder().build();
+
+        public final int connectTimeoutMillis;
+        public final int readTimeoutMillis;
+        public final boolean gzip;
+
+        /* Retries after the first attempt, 0 disables retrying */
+        public final int maxRetries;
+        public final long initialBackoffMillis;
+        public final long maxBackoffMillis;
+
+        private Options(Builder builder) {
+            connectTimeoutMillis = builder.connectTimeoutMillis;
+            readTimeoutMillis = builder.readTimeoutMillis;
+            gzip = builder.gzip;
+            maxRetries = builder.maxRetries;
+            initialBackoffMillis = builder.initialBackoffMillis;
+            maxBackoffMillis = builder.maxBackoffMillis;
+        }
+
+        public Builder buildUpon() {
+            return new Builder(this);
+        }
+
+        public static final class Builder {
+
+            private int connectTimeoutMillis = 10000;
+            private int readTimeoutMillis = 15000;
+            private boolean gzip = true;
+            private int maxRetries = 2;
+            private long initialBackoffMillis = 500;
+            private long maxBackoffMillis = 8000;
+
+            public Builder() {
+            }
+
+            private Builder(Options options) {
+                connectTimeoutMillis = options.connectTimeoutMillis;
+                readTimeoutMillis = options.readTimeoutMillis;
+                gzip = options.gzip;
+                maxRetries = options.maxRetries;
+                initialBackoffMillis = options.initialBackoffMillis;
+                maxBackoffMillis = options.maxBackoffMillis;
+            }
+
+            public Builder setConnectTimeoutMillis(int connectTimeoutMillis) {
+                this.connectTimeoutMillis = connectTimeoutMillis;
+                return this;
+            }
+
+            public Builder setReadTimeoutMillis(int readTimeoutMillis) {
+                this.readTimeoutMillis = readTimeoutMillis;
+                return this;
+            }
+
+            public Builder setGzip(boolean gzip) {
+                this.gzip = gzip;
+                return this;
+            }
+
+            public Builder setMaxRetries(int maxRetries) {
+                this.maxRetries = maxRetries;
+                return this;
+            }
+
+            public Builder setBackoffMillis(long initialBackoffMillis, long maxBackoffMillis) {
+                this.initialBackoffMillis = initialBackoffMillis;
+                this.maxBackoffMillis = maxBackoffMillis;
+                return this;
+            }
+
+            public Options build() {
+                if (connectTimeoutMillis < 0 || readTimeoutMillis < 0 || maxRetries < 0
+                        || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+                    throw new IllegalArgumentException("Invalid HTTP options");
+                }
+                return new Options(this);
+            }
+        }
+    }
+
+    /**
+     * An open response. The body has already been un-gzipped. Always close it, closing is what
+     * hands the connection back to the keep-alive pool.
+     */
+    public static final class Response implements Closeable {
+
+        public final int code;
+
+        /* How many retries it took to get this response */
+        public final int retries;
+
+        private final HttpURLConnection mConnection;
+
+        /* Disconnects mConnection when cancelled until the response is closed, may be null */
+        private final CancellationSignal mSignal;
+
+        private InputStream mBody;
+
+        private CountingInputStream mRawBody;
+
+        Response(HttpURLConnection connection, int code, int retries, CancellationSignal signal) {
+            mConnection = connection;
+            this.code = code;
+            this.retries = retries;
+            mSignal = signal;
+        }
+
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        /**
+         * @return The decoded response body
+         * @throws IOException If the response has no body, for example on an error code
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                mRawBody = new CountingInputStream(mConnection.getInputStream());
+                InputStream in = mRawBody;
+                if ("gzip".equalsIgnoreCase(mConnection.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                }
+                mBody = in;
+            }
+            return mBody;
+        }
+
+        /**
+         * @return How many bytes of the body came over the wire so far, before un-gzipping
+         */
+        public long getBytesRead() {
+            return mRawBody == null ? 0 : mRawBody.mCount;
+        }
+
+        @Override
+        public void close() {
+            if (mSignal != null) mSignal.setOnCancelListener(null);
+            try {
+                InputStream in = mBody;
+                if (in == null) {
+                    in = code >= HttpURLConnection.HTTP_BAD_REQUEST
+                            ? mConnection.getErrorStream() : mConnection.getInputStream();
+                }
+                if (in != null) in.close();
+            } catch (IOException e) {
+                /* The connection can't be reused, drop it instead of pooling it */
+                mConnection.disconnect();
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) mCount++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) mCount += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+
+    public static synchronized HttpClient getInstance() {
+        if (sInstance == null) {
+            /* Read once by the platform's connection pool, so set it before the first request */
+            System.setProperty("http.keepAlive", "true");
+            System.setProperty("http.maxConnections", String.valueOf(MAX_POOLED_CONNECTIONS));
+            sInstance = new HttpClient();
+        }
+        return sInstance;
+    }
+
+    private HttpClient() {
+    }
+
+    public Response get(URL url) throws IOException {
+        return get(url, Collections.<String, String>emptyMap(), Options.DEFAULT, null);
+    }
+
+    public Response get(URL url, Map<String, String> headers, Options options)
+            throws IOException {
+        return get(url, headers, options, null);
+    }
+
+    /**
+     * Performs a GET. Connection failures, timeouts, 5xx and 429 responses are retried up to
+     * {@link Options#maxRetries} times; any other response, error codes included, is returned
+     * to the caller.
+     *
+     * @param url     The URL to get
+     * @param headers Extra request headers, for example conditional request validators
+     * @param options Timeouts, gzip and retry settings for this call
+     * @param signal  Disconnects the request when cancelled, until the response is closed. May
+     *                be null.
+     *
+     * @return The response, which must be closed
+     * @throws IOException If the last attempt failed. InterruptedIOException if the calling
+     *                     thread was interrupted while waiting to retry.
+     * @throws OperationCanceledException If the signal was cancelled before the response
+     */
+    public Response get(URL url, Map<String, String> headers, Options options,
+                        CancellationSignal signal) throws IOException {
+
+        for (int attempt = 0; ; attempt++) {
+
+            boolean lastAttempt = attempt >= options.maxRetries;
+
+            if (signal != null) signal.throwIfCanceled();
+
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(options.connectTimeoutMillis);
+            connection.setReadTimeout(options.readTimeoutMillis);
+
+            /*
+             * Conditional requests are handled by ForecastResponseCache, keep any platform
+             * HttpResponseCache out of the way so a 304 reaches the caller instead of being
+             * answered from a second copy of the body.
+             */
+            connection.setUseCaches(false);
+
+            /* Asking for gzip ourselves turns off the platform's transparent decoding */
+            connection.setRequestProperty("Accept-Encoding", options.gzip ? "gzip" : "identity");
+
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            /* Runs right away if the signal is cancelled already */
+            if (signal != null) {
+                signal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        connection.disconnect();
+                    }
+                });
+            }
+
+            long retryAfterMillis = -1;
+
+            try {
+                int code = connection.getResponseCode();
+
+                if (lastAttempt || !isRetryable(code)) {
+                    return new Response(connection, code, attempt, signal);
+                }
+
+                retryAfterMillis = parseRetryAfterMillis(connection.getHeaderField("Retry-After"));
+                Log.w(TAG, "HTTP " + code + " from " + url.getHost() + ", retrying");
+                new Response(connection, code, attempt, signal).close();
+
+            } catch (IOException e) {
+                if (signal != null) signal.setOnCancelListener(null);
+                connection.disconnect();
+
+                /* Disconnected by the signal, not a network failure */
+                if (signal != null) signal.throwIfCanceled();
+
+                if (lastAttempt) throw e;
+
+                Log.w(TAG, "Request to " + url.getHost() + " failed, retrying", e);
+            }
+
+            /* Counted here, a request that ends up failing retried just as much */
+            SyncMetrics.getInstance().recordRetries(1);
+
+            sleepBeforeRetry(attempt, retryAfterMillis, options, signal);
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR || code == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    /*
+     * Full jitter: a uniformly random wait between zero and the exponential backoff, so clients
+     * that failed together don't all come back at the same moment. A Retry-After from the server
+     * wins, as long as it stays within the maximum backoff.
+     */
+    private void sleepBeforeRetry(int attempt, long retryAfterMillis, Options options,
+                                  CancellationSignal signal) throws InterruptedIOException {
+
+        long backoffMillis;
+
+        if (retryAfterMillis >= 0) {
+            backoffMillis = Math.min(retryAfterMillis, options.maxBackoffMillis);
+        } else {
+            long ceiling = Math.min(options.maxBackoffMillis,
+                    options.initialBackoffMillis << Math.min(attempt, 20));
+            synchronized (mJitter) {
+                backoffMillis = (long) (mJitter.nextDouble() * ceiling);
+            }
+        }
+
+        try {
+            if (signal == null) {
+                Thread.sleep(backoffMillis);
+            } else {
+                waitUnlessCanceled(backoffMillis, signal);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /* Like Thread.sleep, but wakes up and throws OperationCanceledException on a cancel */
+    private static void waitUnlessCanceled(long millis, CancellationSignal signal)
+            throws InterruptedException {
+
+        final Object wakeUp = new Object();
+
+        signal.setOnCancelListener(new CancellationSignal.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                synchronized (wakeUp) {
+                    wakeUp.notifyAll();
+                }
+            }
+        });
+
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            synchronized (wakeUp) {
+                long remainingMillis = millis;
+                while (remainingMillis > 0 && !signal.isCanceled()) {
+                    wakeUp.wait(remainingMillis);
+                    remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                }
+            }
+        } finally {
+            signal.setOnCancelListener(null);
+        }
+
+        signal.throwIfCanceled();
+    }
+
+    private static long parseRetryAfterMillis(String retryAfter) {
+        if (retryAfter == null) return -1;
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            /* HTTP dates are rare here, fall back to our own backoff */
+            return -1;
+        }
+    }
+}
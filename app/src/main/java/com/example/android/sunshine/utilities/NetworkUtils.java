@@ -1,17 +1,24 @@
 package com.example.android.sunshine.utilities;
 
-import android.content.Context;
 import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.BuildConfig;
+import com.example.android.sunshine.metrics.SyncMetrics;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * These utilities will be used to communicate with the weather servers.
@@ -20,13 +27,11 @@ public final class NetworkUtils {
 
     private static final String TAG = NetworkUtils.class.getSimpleName();
 
-    private static final String DYNAMIC_WEATHER_URL =
-            "https://andfun-weather.udacity.com/weather";
-
-    private static final String STATIC_WEATHER_URL =
-            "https://andfun-weather.udacity.com/staticweather";
-
-    private static final String FORECAST_BASE_URL = STATIC_WEATHER_URL;
+    /*
+     * The static weather endpoint unless the build says otherwise, see forecastBaseUrl in
+     * app/build.gradle. Tests swap it for a stand-in server with setForecastBaseUrl.
+     */
+    private static volatile String sForecastBaseUrl = BuildConfig.FORECAST_BASE_URL;
 
 
     /* The format we want our API to return */
@@ -46,24 +51,44 @@ public final class NetworkUtils {
     final static String DAYS_PARAM = "cnt";
 
 
-    public static URL getUrl(Context context) {
+    public static String getForecastBaseUrl() {
+        return sForecastBaseUrl;
+    }
+
+
+    /**
+     * Sends every following forecast request to another server, for tests against a local
+     * stand-in. Takes effect for URLs built after the call.
+     *
+     * @param baseUrl The forecast endpoint, without query parameters
+     */
+    public static void setForecastBaseUrl(String baseUrl) {
+        if (baseUrl == null) throw new IllegalArgumentException("A base URL is required");
+        sForecastBaseUrl = baseUrl;
+    }
+
 
-        if (SunshinePreferences.isLocationLatLonAvailable(context)) {
-            double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
-            double latitude = preferredCoordinates[0];
-            double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+    /**
+     * Builds the forecast URL for any saved location, not just the preferred one.
+     *
+     * @param locationQuery The location setting, used when there are no coordinates
+     * @param coordinates   Latitude and longitude, or null if the location was never synced
+     *
+     * @return The URL to fetch the forecast of that location
+     */
+    public static URL getUrlForLocation(String locationQuery, double[] coordinates) {
+
+        if (coordinates != null) {
+            return buildUrlWithLatitudeLongitude(coordinates[0], coordinates[1]);
         } else {
-            String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
             return buildUrlWithLocationQuery(locationQuery);
-
         }
     }
 
 
     private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
 
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+        Uri weatherQueryUri = Uri.parse(sForecastBaseUrl).buildUpon()
                 .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
                 .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
                 .appendQueryParameter(FORMAT_PARAM, format)
@@ -76,7 +101,7 @@ public final class NetworkUtils {
             Log.v(TAG, "URL : " + weatherQueryUrl);
             return weatherQueryUrl;
         } catch (MalformedURLException e) {
-            e.printStackTrace();
+            Log.e(TAG, "Could not build the forecast URL", e);
             return null;
         }
 
@@ -84,7 +109,7 @@ public final class NetworkUtils {
 
     private static URL buildUrlWithLocationQuery(String locationQuery) {
 
-        Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+        Uri weatherQueryUri = Uri.parse(sForecastBaseUrl).buildUpon()
                 .appendQueryParameter(QUERY_PARAM, locationQuery)
                 .appendQueryParameter(FORMAT_PARAM, format)
                 .appendQueryParameter(UNITS_PARAM, units)
@@ -97,7 +122,7 @@ public final class NetworkUtils {
             return weatherQueryUrl;
 
         } catch (MalformedURLException e) {
-            e.printStackTrace();
+            Log.e(TAG, "Could not build the forecast URL", e);
             return null;
         }
 
@@ -105,24 +130,165 @@ public final class NetworkUtils {
     }
 
 
-    //This method returns the entire result from the HTTP response.
+    /**
+     * The outcome of a conditional forecast request.
+     *
+     * A new response is only staged in the ForecastResponseCache. Call {@link #commitToCache()}
+     * once its forecast has been committed to the database, or {@link #discardFromCache()} if it
+     * never will be, so the validators in the cache always describe a stored forecast.
+     */
+    public static final class ForecastResponse {
+
+        /* Nothing changed since the last request, the stored forecast is still current */
+        public static final ForecastResponse NOT_MODIFIED =
+                new ForecastResponse(null, null, null, null);
+
+        /* The parsed forecast, null when not modified or when the server answered with an error */
+        public final OpenWeatherJsonUtils.Forecast forecast;
+
+        private final ForecastResponseCache mCache;
+        private final URL mUrl;
+
+        /* What to store once the forecast is committed, null if there is nothing to store */
+        private final ForecastResponseCache.Entry mPendingEntry;
+
+        ForecastResponse(OpenWeatherJsonUtils.Forecast forecast, ForecastResponseCache cache,
+                         URL url, ForecastResponseCache.Entry pendingEntry) {
+            this.forecast = forecast;
+            mCache = cache;
+            mUrl = url;
+            mPendingEntry = pendingEntry;
+        }
+
+        public boolean isNotModified() {
+            return this == NOT_MODIFIED;
+        }
+
+        public void commitToCache() throws IOException {
+            if (mPendingEntry != null) mCache.commit(mUrl, mPendingEntry);
+        }
+
+        public void discardFromCache() {
+            if (mPendingEntry != null) mCache.discard(mPendingEntry);
+        }
+    }
+
+
+    /**
+     * Fetches a forecast with a conditional request, using the ETag and Last-Modified of the
+     * cached response for this URL. A 304 means the forecast stored for this location is still
+     * current, so there is nothing to parse and nothing to write.
+     *
+     * The forecast dates are assigned relative to the day it is parsed on, so a 304 that arrives
+     * on a later day re-parses the cached body instead of reporting NOT_MODIFIED.
+     *
+     * @param cache          The response cache
+     * @param url            The forecast URL
+     * @param forecastStored Whether a forecast of this URL is stored already. If not, for
+     *                       example for a location that was deleted and added again, a 304
+     *                       re-parses the cached body instead of reporting NOT_MODIFIED.
+     * @param options        Timeouts, gzip and retry settings of this call
+     * @param signal         Disconnects the request when cancelled, and is checked again before
+     *                       the response is returned, so a cancelled request never leaves
+     *                       anything staged in the cache. May be null.
+     *
+     * @return The response, see {@link ForecastResponse}
+     * @throws IOException If the request fails or the response is not a forecast
+     * @throws OperationCanceledException If the signal was cancelled during the request
+     */
+    public static ForecastResponse getForecastFromHttpUrl(ForecastResponseCache cache, URL url,
+                                                          boolean forecastStored,
+                                                          HttpClient.Options options,
+                                                          CancellationSignal signal)
+            throws IOException {
+
+        ForecastResponseCache.Entry cached = cache.get(url);
+        long today = SunshineDateUtils.getNormalizedUtcDateForToday();
+
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null) {
+            if (cached.eTag != null) {
+                headers.put("If-None-Match", cached.eTag);
+            }
+            if (cached.lastModified != null) {
+                headers.put("If-Modified-Since", cached.lastModified);
+            }
+        }
+
+        SyncMetrics metrics = SyncMetrics.getInstance();
+
+        long fetchStart = SystemClock.elapsedRealtime();
+        HttpClient.Response response =
+                HttpClient.getInstance().get(url, headers, options, signal);
+        long parseStart = SystemClock.elapsedRealtime();
+
+        metrics.recordLatency(SyncMetrics.Phase.FETCH, parseStart - fetchStart);
+
+        ForecastResponseCache.Entry staged = null;
 
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
         try {
-            InputStream in = urlConnection.getInputStream();
+            if (signal != null) signal.throwIfCanceled();
+
+            if (response.code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+
+                cache.recordRequest(true);
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+                if (forecastStored && cached.parsedForDay == today) {
+                    return ForecastResponse.NOT_MODIFIED;
+                }
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                return null;
+                OpenWeatherJsonUtils.Forecast forecast = parseForecastFile(cached.body);
+                recordParseLatency(metrics, parseStart);
+                return new ForecastResponse(forecast, cache, url,
+                        cached.withParsedForDay(today));
             }
+
+            cache.recordRequest(false);
+
+            InputStream in = response.getBody();
+
+            String eTag = response.getHeader("ETag");
+            String lastModified = response.getHeader("Last-Modified");
+
+            /* Without validators the next request can't be conditional, don't bother caching */
+            if (eTag == null && lastModified == null) {
+                OpenWeatherJsonUtils.Forecast forecast = OpenWeatherJsonUtils.parseForecast(in);
+                recordParseLatency(metrics, parseStart);
+                return new ForecastResponse(forecast, null, null, null);
+            }
+
+            staged = cache.stage(url, eTag, lastModified, today, in);
+            OpenWeatherJsonUtils.Forecast forecast = parseForecastFile(staged.body);
+            recordParseLatency(metrics, parseStart);
+            ForecastResponse forecastResponse = new ForecastResponse(forecast, cache, url, staged);
+
+            if (signal != null) signal.throwIfCanceled();
+
+            staged = null;
+            return forecastResponse;
+
+        } finally {
+            /* The body was not a forecast, or the request was cancelled meanwhile */
+            if (staged != null) cache.discard(staged);
+
+            metrics.recordBytesDownloaded(response.getBytesRead());
+            response.close();
+        }
+    }
+
+
+    /* Only parses that succeeded, a body that failed halfway would skew the histogram */
+    private static void recordParseLatency(SyncMetrics metrics, long parseStart) {
+        metrics.recordLatency(SyncMetrics.Phase.PARSE, SystemClock.elapsedRealtime() - parseStart);
+    }
+
+
+    private static OpenWeatherJsonUtils.Forecast parseForecastFile(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return OpenWeatherJsonUtils.parseForecast(in);
         } finally {
-            urlConnection.disconnect();
+            in.close();
         }
     }
-}
\ No newline at end of file
+}
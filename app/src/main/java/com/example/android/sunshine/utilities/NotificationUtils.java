@@ -37,8 +37,15 @@ public class NotificationUtils {
 
     public static void notifyUserOfNewWeather(Context context) {
 
+        long locationId = SunshinePreferences.getCurrentLocationId(context);
+
+        /* No location has been synced yet, so there is nothing to tell */
+        if (locationId == SunshinePreferences.INVALID_LOCATION_ID) return;
+
         Uri todayWeatherUri = WeatherContract.WeatherEntry
-                .buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+                .buildWeatherUriForLocationWithDate(
+                        locationId,
+                        SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
 
 
         Cursor todayWeatherCursor = context.getContentResolver().query(
@@ -1,215 +1,100 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.ContentValues;
-import android.content.Context;
 
-import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.ForecastParser;
 import com.example.android.sunshine.data.WeatherContract;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.net.HttpURLConnection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utility functions to handle OpenWeatherMap JSON data.
  */
 public final class OpenWeatherJsonUtils {
 
-    /* Location information */
-    private static final String OWM_CITY = "city";
-    private static final String OWM_COORD = "coord";
-
-    /* Location coordinate */
-    private static final String OWM_LATITUDE = "lat";
-    private static final String OWM_LONGITUDE = "lon";
-
-    /* Weather information. Each day's forecast info is an element of the "list" array */
-    private static final String OWM_LIST = "list";
-
-    private static final String OWM_PRESSURE = "pressure";
-    private static final String OWM_HUMIDITY = "humidity";
-    private static final String OWM_WINDSPEED = "speed";
-    private static final String OWM_WIND_DIRECTION = "deg";
-
-
-    /* All temperatures are children of the "temp" object */
-    private static final String OWM_TEMPERATURE = "temp";
-
-    /* Max temperature for the day */
-    private static final String OWM_MAX = "max";
-    private static final String OWM_MIN = "min";
-
-    private static final String OWM_WEATHER = "weather";
-    private static final String OWM_WEATHER_ID = "id";
-
-    private static final String OWM_MESSAGE_CODE = "cod";
-
+    /**
+     * A parsed forecast response: the coordinates OpenWeatherMap resolved the location to and
+     * one ContentValues per day, ready to be merged into the weather table.
+     */
+    public static final class Forecast {
 
-    // This method parses JSON from a web response and returns an array of Strings
-    // describing the weather over various days from the forecast.
+        public final double latitude;
+        public final double longitude;
 
-    public static String[] getSimpleWeatherStringsFromJson(Context context, String forecastJsonStr)
-            throws JSONException {
+        public final ContentValues[] weatherValues;
 
-        /* String array to hold each day's weather String */
-        String[] parsedWeatherData;
-
-        JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-        /* Is there an error? */
-        if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    break;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    /* Location invalid */
-                    return null;
-                default:
-                    /* Server probably down */
-                    return null;
-            }
-        }
-
-        JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-        parsedWeatherData = new String[weatherArray.length()];
-
-        long startDay = SunshineDateUtils.getNormalizedUtcDateForToday();
-
-        for (int i = 0; i < weatherArray.length(); i++) {
-            String date;
-            String highAndLow;
-
-            /* These are the values that will be collected */
-            long dateTimeMillis;
-            double high;
-            double low;
-
-            int weatherId;
-            String description;
-
-            /* Get the JSON object representing the day */
-            JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-            /*
-             * We ignore all the datetime values embedded in the JSON and assume that
-             * the values are returned in-order by day (which is not guaranteed to be correct).
-             */
-            dateTimeMillis = startDay + SunshineDateUtils.DAY_IN_MILLIS * i;
-            date = SunshineDateUtils.getFriendlyDateString(context, dateTimeMillis, false);
-
-            /*
-             * Description is in a child array called "weather", which is 1 element long.
-             * That element also contains a weather code.
-             */
-            JSONObject weatherObject =
-                    dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-
-            weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-            description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
-
-            /*
-             * Temperatures are sent by Open Weather Map in a child object called "temp".
-             *
-             * Editor's Note: Try not to name variables "temp" when working with temperature.
-             * It confuses everybody. Temp could easily mean any number of things, including
-             * temperature, temporary and is just a bad variable name.
-             */
-            JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
-            highAndLow = SunshineWeatherUtils.formatHighLows(context, high, low);
-
-            parsedWeatherData[i] = date + " - " + description + " - " + highAndLow;
+        Forecast(double latitude, double longitude, ContentValues[] weatherValues) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.weatherValues = weatherValues;
         }
-
-        return parsedWeatherData;
     }
 
 
-    //Parse the JSON and convert it into ContentValues that can be inserted into our database.
-
-    public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
-            throws JSONException {
-        JSONObject forecastJson = new JSONObject(forecastJsonStr);
-
-        if (forecastJson.has(OWM_MESSAGE_CODE)) {
-            int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+    /**
+     * Parses a forecast response straight off the HTTP stream. The response is pulled token by
+     * token and each day is turned into its ContentValues as soon as it has been read, so neither
+     * the response body nor a JSON tree is ever held in memory.
+     *
+     * @param in The response body, read as UTF-8. It is not closed by this method.
+     *
+     * @return The parsed forecast, null if the server answered with an error code
+     * @throws IOException If the stream fails or does not contain a forecast
+     */
+    public static Forecast parseForecast(InputStream in) throws IOException {
+        return parseForecast(new InputStreamReader(in, "UTF-8"));
+    }
 
-            switch (errorCode) {
-                case HttpURLConnection.HTTP_OK:
-                    break;
-                case HttpURLConnection.HTTP_NOT_FOUND:
-                    return null;
-                default:
-                    return null;
-            }
+    /**
+     * Parses a forecast response without touching the preferences, so it can be used for any
+     * saved location and from several threads at once. The parsing itself is done by the core
+     * module's {@link ForecastParser}, this turns each day into its ContentValues.
+     *
+     * @param forecastJson The JSON response from the server
+     *
+     * @return The parsed forecast, null if the server answered with an error code
+     * @throws IOException If the JSON is not a forecast
+     */
+    public static Forecast parseForecast(Reader forecastJson) throws IOException {
+
+        final List<ContentValues> weatherContentValues = new ArrayList<>();
+
+        ForecastParser.ParsedForecast forecast = ForecastParser.parse(forecastJson,
+                SunshineDateUtils.getNormalizedUtcDateForToday(),
+                new ForecastParser.DayHandler() {
+                    @Override
+                    public void onDay(DayForecast day) {
+                        weatherContentValues.add(toContentValues(day));
+                    }
+                });
+
+        if (forecast == null) {
+            return null;
         }
 
-        JSONArray jsonWeatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-        JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-
-        JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-        double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-        double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-        SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
-
-        ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
-
-        long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
-
-        for (int i = 0; i < jsonWeatherArray.length(); i++) {
-            long dateTimeMillis;
-            double pressure;
-            int humidity;
-            double windSpeed;
-            double windDirection;
-
-            double high;
-            double low;
-
-            int weatherID;
-
-            /* Get the JSON object representing the day */
-            JSONObject dayForeCast = jsonWeatherArray.getJSONObject(i);
-
-            dateTimeMillis = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
-
-            pressure = dayForeCast.getDouble(OWM_PRESSURE);
-            humidity = dayForeCast.getInt(OWM_HUMIDITY);
-            windSpeed = dayForeCast.getDouble(OWM_WINDSPEED);
-            windDirection = dayForeCast.getDouble(OWM_WIND_DIRECTION);
-
-            JSONObject weatherObject = dayForeCast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-
-            weatherID = weatherObject.getInt(OWM_WEATHER_ID);
-
-            JSONObject temperatureObject = dayForeCast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
-
-            ContentValues weatherValues = new ContentValues();
-
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherID);
+        return new Forecast(forecast.latitude, forecast.longitude,
+                weatherContentValues.toArray(new ContentValues[weatherContentValues.size()]));
+    }
 
-            weatherContentValues[i] = weatherValues;
+    static ContentValues toContentValues(DayForecast day) {
 
-        }
+        ContentValues weatherValues = new ContentValues();
 
-        return weatherContentValues;
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, day.date);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, day.humidity);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, day.pressure);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, day.windSpeed);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, day.windDirection);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, day.high);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, day.low);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, day.weatherId);
 
+        return weatherValues;
     }
-}
\ No newline at end of file
+}
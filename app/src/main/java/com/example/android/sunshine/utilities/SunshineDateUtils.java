@@ -4,10 +4,10 @@ import android.content.Context;
 import android.text.format.DateUtils;
 
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.ForecastDates;
 
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Class for handling date conversions that are useful for Sunshine.
@@ -15,7 +15,7 @@ import java.util.concurrent.TimeUnit;
 public final class SunshineDateUtils {
 
     /* Milliseconds in a day */
-    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final long DAY_IN_MILLIS = ForecastDates.DAY_IN_MILLIS;
 
     /**
      * This method returns the number of milliseconds (UTC time) for today's date at midnight in
@@ -43,43 +43,11 @@ public final class SunshineDateUtils {
     public static long getNormalizedUtcDateForToday() {
 
         /*
-         * This number represents the number of milliseconds that have elapsed since January
-         * 1st, 1970 at midnight in the GMT time zone.
+         * The device's current time zone provides the offset for local time, taken at the
+         * current time so daylight savings time is accounted for.
          */
-        long utcNowMillis = System.currentTimeMillis();
-
-        /*
-         * This TimeZone represents the device's current time zone. It provides us with a means
-         * of acquiring the offset for local time from a UTC time stamp.
-         */
-        TimeZone currentTimeZone = TimeZone.getDefault();
-
-        /*
-         * The getOffset method returns the number of milliseconds to add to UTC time to get the
-         * elapsed time since the epoch for our current time zone. We pass the current UTC time
-         * into this method so it can determine changes to account for daylight savings time.
-         */
-        long gmtOffsetMillis = currentTimeZone.getOffset(utcNowMillis);
-
-        /*
-         * UTC time is measured in milliseconds from January 1, 1970 at midnight from the GMT
-         * time zone. Depending on your time zone, the time since January 1, 1970 at midnight (GMT)
-         * will be greater or smaller. This variable represents the number of milliseconds since
-         * January 1, 1970 (GMT) time.
-         */
-        long timeSinceEpochLocalTimeMillis = utcNowMillis + gmtOffsetMillis;
-
-        /* This method simply converts milliseconds to days, disregarding any fractional days */
-        long daysSinceEpochLocal = TimeUnit.MILLISECONDS.toDays(timeSinceEpochLocalTimeMillis);
-
-        /*
-         * Finally, we convert back to milliseconds. This time stamp represents today's date at
-         * midnight in GMT time. We will need to account for local time zone offsets when
-         * extracting this information from the database.
-         */
-        long normalizedUtcMidnightMillis = TimeUnit.DAYS.toMillis(daysSinceEpochLocal);
-
-        return normalizedUtcMidnightMillis;
+        return ForecastDates.getNormalizedUtcDateForToday(System.currentTimeMillis(),
+                TimeZone.getDefault());
     }
 
     /**
@@ -91,7 +59,7 @@ public final class SunshineDateUtils {
      * @return The number of days from the epoch to the date argument.
      */
     private static long elapsedDaysSinceEpoch(long utcDate) {
-        return TimeUnit.MILLISECONDS.toDays(utcDate);
+        return ForecastDates.elapsedDaysSinceEpoch(utcDate);
     }
 
     /**
@@ -120,10 +88,8 @@ public final class SunshineDateUtils {
      *
      * @return The UTC date at 12 midnight of the date
      */
-    public static long normalizeDate(long date) { //changes
-        long daysSinceEpoch = elapsedDaysSinceEpoch(date);
-        long millisFromEpochToTodayAtMidnightUtc = daysSinceEpoch * DAY_IN_MILLIS;
-        return millisFromEpochToTodayAtMidnightUtc;
+    public static long normalizeDate(long date) {
+        return ForecastDates.normalizeDate(date);
     }
 
     /**
@@ -136,12 +102,7 @@ public final class SunshineDateUtils {
      * @return true if the date represents the beginning of a day in Unix time, false otherwise
      */
     public static boolean isDateNormalized(long millisSinceEpoch) {
-        boolean isDateNormalized = false;
-        if (millisSinceEpoch % DAY_IN_MILLIS == 0) {
-            isDateNormalized = true;
-        }
-
-        return isDateNormalized;
+        return ForecastDates.isDateNormalized(millisSinceEpoch);
     }
 
     /**
@@ -153,15 +114,9 @@ public final class SunshineDateUtils {
      * @return The local date corresponding to the given normalized UTC date
      */
     private static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate) {
-        /* The timeZone object will provide us the current user's time zone offset */
-        TimeZone timeZone = TimeZone.getDefault();
-        /*
-         * This offset, in milliseconds, when added to a UTC date time, will produce the local
-         * time.
-         */
-        long gmtOffset = timeZone.getOffset(normalizedUtcDate);
-        long localMidnightMillis = normalizedUtcDate - gmtOffset;
-        return localMidnightMillis;
+        /* The user's time zone offset at that date, added to a UTC date time, gives local time */
+        return ForecastDates.getLocalMidnightFromNormalizedUtcDate(normalizedUtcDate,
+                TimeZone.getDefault());
     }
 
     /**
@@ -184,6 +139,14 @@ public final class SunshineDateUtils {
      * or "Friday"
      */
     public static String getFriendlyDateString(Context context, long normalizedUtcMidnight, boolean showFullDate) {
+        /* Each day is only formatted once, until the day, time zone or locale changes */
+        return FriendlyDateCache.getFriendlyDateString(context, normalizedUtcMidnight, showFullDate);
+    }
+
+    /*
+     * Formats a friendly date without the cache, see getFriendlyDateString.
+     */
+    static String formatFriendlyDateString(Context context, long normalizedUtcMidnight, boolean showFullDate) {
 
         /*
          * NOTE: localDate should be localDateMidnightMillis and should be straight from the
@@ -213,7 +176,7 @@ public final class SunshineDateUtils {
              * If the date we're building the String for is today's date, the format
              * is "Today, June 24"
              */
-            String dayName = getDayName(context, localDate);
+            String dayName = getDayName(context, localDate, daysFromEpochToToday);
             String readableDate = getReadableDateString(context, localDate);
             if (daysFromEpochToProvidedDate - daysFromEpochToToday < 2) {
                 /*
@@ -233,7 +196,7 @@ public final class SunshineDateUtils {
             }
         } else if (daysFromEpochToProvidedDate < daysFromEpochToToday + 7) {
             /* If the input date is less than a week in the future, just return the day name. */
-            return getDayName(context, localDate);
+            return getDayName(context, localDate, daysFromEpochToToday);
         } else {
             int flags = DateUtils.FORMAT_SHOW_DATE
                     | DateUtils.FORMAT_NO_YEAR
@@ -265,18 +228,18 @@ public final class SunshineDateUtils {
      * Given a day, returns just the name to use for that day.
      *   E.g "today", "tomorrow", "Wednesday".
      *
-     * @param context      Context to use for resource localization
-     * @param dateInMillis The date in milliseconds (UTC time)
+     * @param context              Context to use for resource localization
+     * @param dateInMillis         The date in milliseconds (UTC time)
+     * @param daysFromEpochToToday Today, as the caller saw it, so both use the same clock read
      *
      * @return the string day of the week
      */
-    private static String getDayName(Context context, long dateInMillis) {
+    private static String getDayName(Context context, long dateInMillis, long daysFromEpochToToday) {
         /*
          * If the date is today, return the localized version of "Today" instead of the actual
          * day name.
          */
         long daysFromEpochToProvidedDate = elapsedDaysSinceEpoch(dateInMillis);
-        long daysFromEpochToToday = elapsedDaysSinceEpoch(System.currentTimeMillis());
 
         int daysAfterToday = (int) (daysFromEpochToProvidedDate - daysFromEpochToToday);
 
@@ -0,0 +1,248 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.core.os.ConfigurationCompat;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.core.WeatherCondition;
+
+import java.util.Locale;
+
+/**
+ * OpenWeatherMap condition ids, 200 to 962, mapped to their description string and art in a
+ * dense table, so a lookup is an array index instead of a chain of range checks. This is what
+ * backs the condition methods of {@link SunshineWeatherUtils}.
+ *
+ * See http://openweathermap.org/weather-conditions for a list of all IDs.
+ */
+final class WeatherConditionTable {
+
+    private static final String LOG_TAG = WeatherConditionTable.class.getSimpleName();
+
+    static final int MIN_WEATHER_ID = WeatherCondition.MIN_WEATHER_ID;
+    static final int MAX_WEATHER_ID = WeatherCondition.MAX_WEATHER_ID;
+
+    /**
+     * The resources for one condition id. stringResId is 0 for ids OpenWeatherMap doesn't
+     * define, those are described with condition_unknown.
+     */
+    static final class Condition {
+
+        final int stringResId;
+        final int smallArtResId;
+        final int largeArtResId;
+
+        Condition(int stringResId, int smallArtResId, int largeArtResId) {
+            this.stringResId = stringResId;
+            this.smallArtResId = smallArtResId;
+            this.largeArtResId = largeArtResId;
+        }
+    }
+
+    /* Art for ids outside the table or without art, a storm like before */
+    private static final Condition UNKNOWN =
+            new Condition(0, R.drawable.ic_storm, R.drawable.art_storm);
+
+    private static final Condition[] TABLE = buildTable();
+
+    /* Descriptions resolved for one locale, filled in as ids are looked up */
+    private static final class LocalizedStrings {
+
+        final Locale locale;
+        final String[] strings = new String[TABLE.length];
+
+        LocalizedStrings(Locale locale) {
+            this.locale = locale;
+        }
+    }
+
+    private static volatile LocalizedStrings sStrings;
+
+    private WeatherConditionTable() {
+    }
+
+    /**
+     * Returns the resources for a condition id. Ids without art get {@link #UNKNOWN}, storm art
+     * and no string, which is logged as an error like it always was.
+     */
+    static Condition get(int weatherId) {
+
+        Condition condition = weatherId >= MIN_WEATHER_ID && weatherId <= MAX_WEATHER_ID
+                ? TABLE[weatherId - MIN_WEATHER_ID] : null;
+
+        if (condition == null || condition.smallArtResId == 0) {
+            Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
+            return UNKNOWN;
+        }
+        return condition;
+    }
+
+    /**
+     * Returns the description of a condition id in the current locale. Descriptions are cached
+     * per locale, a locale change starts a new cache.
+     */
+    static String getString(Context context, int weatherId) {
+
+        int stringResId = weatherId >= MIN_WEATHER_ID && weatherId <= MAX_WEATHER_ID
+                ? stringResIdAt(weatherId - MIN_WEATHER_ID) : 0;
+
+        if (stringResId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
+        }
+
+        Locale locale = ConfigurationCompat.getLocales(
+                context.getResources().getConfiguration()).get(0);
+
+        LocalizedStrings strings = sStrings;
+        if (strings == null || !strings.locale.equals(locale)) {
+            strings = new LocalizedStrings(locale);
+            sStrings = strings;
+        }
+
+        /* Strings are immutable, a racing thread at worst resolves the same one again */
+        int index = weatherId - MIN_WEATHER_ID;
+        String string = strings.strings[index];
+        if (string == null) {
+            string = context.getString(stringResId);
+            strings.strings[index] = string;
+        }
+        return string;
+    }
+
+    private static int stringResIdAt(int index) {
+        Condition condition = TABLE[index];
+        return condition == null ? 0 : condition.stringResId;
+    }
+
+    private static Condition[] buildTable() {
+
+        int[] strings = new int[MAX_WEATHER_ID - MIN_WEATHER_ID + 1];
+
+        range(strings, 200, 232, R.string.condition_2xx);
+        range(strings, 300, 321, R.string.condition_3xx);
+
+        single(strings, 500, R.string.condition_500);
+        single(strings, 501, R.string.condition_501);
+        single(strings, 502, R.string.condition_502);
+        single(strings, 503, R.string.condition_503);
+        single(strings, 504, R.string.condition_504);
+        single(strings, 511, R.string.condition_511);
+        single(strings, 520, R.string.condition_520);
+        single(strings, 531, R.string.condition_531);
+        single(strings, 600, R.string.condition_600);
+        single(strings, 601, R.string.condition_601);
+        single(strings, 602, R.string.condition_602);
+        single(strings, 611, R.string.condition_611);
+        single(strings, 612, R.string.condition_612);
+        single(strings, 615, R.string.condition_615);
+        single(strings, 616, R.string.condition_616);
+        single(strings, 620, R.string.condition_620);
+        single(strings, 621, R.string.condition_621);
+        single(strings, 622, R.string.condition_622);
+        single(strings, 701, R.string.condition_701);
+        single(strings, 711, R.string.condition_711);
+        single(strings, 721, R.string.condition_721);
+        single(strings, 731, R.string.condition_731);
+        single(strings, 741, R.string.condition_741);
+        single(strings, 751, R.string.condition_751);
+        single(strings, 761, R.string.condition_761);
+        single(strings, 762, R.string.condition_762);
+        single(strings, 771, R.string.condition_771);
+        single(strings, 781, R.string.condition_781);
+        single(strings, 800, R.string.condition_800);
+        single(strings, 801, R.string.condition_801);
+        single(strings, 802, R.string.condition_802);
+        single(strings, 803, R.string.condition_803);
+        single(strings, 804, R.string.condition_804);
+        single(strings, 900, R.string.condition_900);
+        single(strings, 901, R.string.condition_901);
+        single(strings, 902, R.string.condition_902);
+        single(strings, 903, R.string.condition_903);
+        single(strings, 904, R.string.condition_904);
+        single(strings, 905, R.string.condition_905);
+        single(strings, 906, R.string.condition_906);
+        single(strings, 951, R.string.condition_951);
+        single(strings, 952, R.string.condition_952);
+        single(strings, 953, R.string.condition_953);
+        single(strings, 954, R.string.condition_954);
+        single(strings, 955, R.string.condition_955);
+        single(strings, 956, R.string.condition_956);
+        single(strings, 957, R.string.condition_957);
+        single(strings, 958, R.string.condition_958);
+        single(strings, 959, R.string.condition_959);
+        single(strings, 960, R.string.condition_960);
+        single(strings, 961, R.string.condition_961);
+        single(strings, 962, R.string.condition_962);
+
+        Condition[] table = new Condition[strings.length];
+        for (int i = 0; i < table.length; i++) {
+
+            /* Which art an id gets is decided by the core module, see WeatherCondition */
+            WeatherCondition condition = WeatherCondition.forWeatherId(MIN_WEATHER_ID + i);
+
+            int smallArt = getSmallArtResId(condition);
+            if (strings[i] != 0 || smallArt != 0) {
+                table[i] = new Condition(strings[i], smallArt, getLargeArtResId(condition));
+            }
+        }
+        return table;
+    }
+
+    private static void single(int[] strings, int weatherId, int stringResId) {
+        range(strings, weatherId, weatherId, stringResId);
+    }
+
+    private static void range(int[] strings, int from, int to, int stringResId) {
+        for (int id = from; id <= to; id++) {
+            strings[id - MIN_WEATHER_ID] = stringResId;
+        }
+    }
+
+    private static int getSmallArtResId(WeatherCondition condition) {
+        switch (condition) {
+            case STORM:
+                return R.drawable.ic_storm;
+            case LIGHT_RAIN:
+                return R.drawable.ic_light_rain;
+            case RAIN:
+                return R.drawable.ic_rain;
+            case SNOW:
+                return R.drawable.ic_snow;
+            case FOG:
+                return R.drawable.ic_fog;
+            case CLEAR:
+                return R.drawable.ic_clear;
+            case LIGHT_CLOUDS:
+                return R.drawable.ic_light_clouds;
+            case CLOUDS:
+                return R.drawable.ic_cloudy;
+            default:
+                return 0;
+        }
+    }
+
+    private static int getLargeArtResId(WeatherCondition condition) {
+        switch (condition) {
+            case STORM:
+                return R.drawable.art_storm;
+            case LIGHT_RAIN:
+                return R.drawable.art_light_rain;
+            case RAIN:
+                return R.drawable.art_rain;
+            case SNOW:
+                return R.drawable.art_snow;
+            case FOG:
+                return R.drawable.art_fog;
+            case CLEAR:
+                return R.drawable.art_clear;
+            case LIGHT_CLOUDS:
+                return R.drawable.art_light_clouds;
+            case CLOUDS:
+                return R.drawable.art_clouds;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.WeatherCondition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Condition lookups for every day of a forecast: the dense table behind
+ * WeatherCondition.forWeatherId against the if/else chain the app used before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({"" + ForecastPayloads.TWO_WEEKS, "" + ForecastPayloads.ONE_YEAR})
+    public int days;
+
+    private int[] mWeatherIds;
+
+    @Setup
+    public void setUp() {
+        DayForecast[] forecast = ForecastPayloads.days(days);
+        mWeatherIds = new int[forecast.length];
+        for (int i = 0; i < forecast.length; i++) {
+            mWeatherIds[i] = forecast[i].weatherId;
+        }
+    }
+
+    @Benchmark
+    public void table(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(WeatherCondition.forWeatherId(weatherId));
+        }
+    }
+
+    @Benchmark
+    public void chain(Blackhole blackhole) {
+        for (int weatherId : mWeatherIds) {
+            blackhole.consume(chainLookup(weatherId));
+        }
+    }
+
+    /* The lookup the app did before the table, kept only as a baseline */
+    private static WeatherCondition chainLookup(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return WeatherCondition.STORM;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return WeatherCondition.LIGHT_RAIN;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return WeatherCondition.RAIN;
+        } else if (weatherId == 511) {
+            return WeatherCondition.SNOW;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return WeatherCondition.RAIN;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return WeatherCondition.SNOW;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return WeatherCondition.FOG;
+        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
+            return WeatherCondition.STORM;
+        } else if (weatherId == 800) {
+            return WeatherCondition.CLEAR;
+        } else if (weatherId == 801) {
+            return WeatherCondition.LIGHT_CLOUDS;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return WeatherCondition.CLOUDS;
+        } else if (weatherId >= 900 && weatherId <= 906) {
+            return WeatherCondition.STORM;
+        } else if (weatherId >= 958 && weatherId <= 962) {
+            return WeatherCondition.STORM;
+        } else if (weatherId >= 951 && weatherId <= 957) {
+            return WeatherCondition.CLEAR;
+        }
+        return WeatherCondition.UNKNOWN;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DayStringCache;
+import com.example.android.sunshine.core.ForecastDates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date normalization, and the day names of the friendly dates. Android's DateUtils isn't
+ * available on the JVM, so the friendly date is measured through its SimpleDateFormat("EEEE")
+ * part: one formatter per call like the app used to, against the DayStringCache behind
+ * FriendlyDateCache. The cache only keeps the days around today, so a year of days mostly misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBenchmark {
+
+    @Param({"" + ForecastPayloads.TWO_WEEKS, "" + ForecastPayloads.ONE_YEAR})
+    public int days;
+
+    private long[] mTimestamps;
+    private long[] mNormalizedDates;
+
+    private final TimeZone mTimeZone = TimeZone.getTimeZone("America/Los_Angeles");
+
+    /* The forecast starts today */
+    private final long mTodayUtcDay = ForecastPayloads.START_DAY / ForecastDates.DAY_IN_MILLIS;
+
+    private DayStringCache mDayNames;
+
+    @Setup
+    public void setUp() {
+
+        mTimestamps = new long[days];
+        mNormalizedDates = new long[days];
+        for (int day = 0; day < days; day++) {
+            mNormalizedDates[day] = ForecastPayloads.START_DAY + day * ForecastDates.DAY_IN_MILLIS;
+            /* Some time in the afternoon */
+            mTimestamps[day] = mNormalizedDates[day] + TimeUnit.HOURS.toMillis(15) + day * 997;
+        }
+
+        mDayNames = new DayStringCache();
+    }
+
+    @Benchmark
+    public void normalizeDates(Blackhole blackhole) {
+        for (long timestamp : mTimestamps) {
+            blackhole.consume(ForecastDates.normalizeDate(timestamp));
+        }
+    }
+
+    @Benchmark
+    public void normalizedLocalDates(Blackhole blackhole) {
+        for (long timestamp : mTimestamps) {
+            blackhole.consume(ForecastDates.getNormalizedUtcDateForToday(timestamp, mTimeZone));
+        }
+    }
+
+    @Benchmark
+    public void localMidnights(Blackhole blackhole) {
+        for (long date : mNormalizedDates) {
+            blackhole.consume(ForecastDates.getLocalMidnightFromNormalizedUtcDate(date, mTimeZone));
+        }
+    }
+
+    @Benchmark
+    public void dayNamesUncached(Blackhole blackhole) {
+        for (long date : mNormalizedDates) {
+            long localDate = ForecastDates.getLocalMidnightFromNormalizedUtcDate(date,
+                    TimeZone.getDefault());
+            blackhole.consume(new SimpleDateFormat("EEEE").format(localDate));
+        }
+    }
+
+    @Benchmark
+    public void dayNamesCached(Blackhole blackhole) {
+        Locale locale = Locale.getDefault();
+        for (long date : mNormalizedDates) {
+            String dayName = mDayNames.get(date, false, mTodayUtcDay, locale);
+            if (dayName == null) {
+                long localDate = ForecastDates.getLocalMidnightFromNormalizedUtcDate(date,
+                        TimeZone.getDefault());
+                dayName = new SimpleDateFormat("EEEE").format(localDate);
+                mDayNames.put(date, false, mTodayUtcDay, locale, dayName);
+            }
+            blackhole.consume(dayName);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.ForecastDates;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+
+/**
+ * Benchmark inputs shaped like OpenWeatherMap daily forecast responses. Always built from the
+ * same seed, so every run measures the same payloads.
+ */
+final class ForecastPayloads {
+
+    /* A two week forecast, what the app requests */
+    static final int TWO_WEEKS = 14;
+
+    /* A year of days, for server side ingest */
+    static final int ONE_YEAR = 365;
+
+    /* Ten years of days, to show parsing stays linear */
+    static final int TEN_YEARS = 3650;
+
+    /* Midnight UTC, January 1st 2021 */
+    static final long START_DAY = 18628 * ForecastDates.DAY_IN_MILLIS;
+
+    private static final long SEED = 42;
+
+    private static final SyntheticForecastGenerator GENERATOR =
+            new SyntheticForecastGenerator(SEED);
+
+    private ForecastPayloads() {
+    }
+
+    static String json(int days) {
+        return GENERATOR.json(0, START_DAY, days);
+    }
+
+    static DayForecast[] days(int days) {
+        SyntheticForecastGenerator.Location location = GENERATOR.location(0);
+        DayForecast[] forecast = new DayForecast[days];
+        for (int day = 0; day < days; day++) {
+            forecast[day] = GENERATOR.day(location, START_DAY + day * ForecastDates.DAY_IN_MILLIS);
+        }
+        return forecast;
+    }
+}
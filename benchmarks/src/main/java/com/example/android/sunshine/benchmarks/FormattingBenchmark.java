@@ -0,0 +1,69 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.UnitConversions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temperature and wind strings for every day of a forecast, formatted by UnitConversions like
+ * SunshineWeatherUtils does, with the app's format strings (format_temperature, format_wind_kmh
+ * and format_wind_mph) inlined.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    private static final String FORMAT_TEMPERATURE = "%1.0f\u00B0";
+    private static final String FORMAT_WIND_KMH = "%1$1.0f km/h %2$s";
+    private static final String FORMAT_WIND_MPH = "%1$1.0f mph %2$s";
+
+    @Param({"" + ForecastPayloads.TWO_WEEKS, "" + ForecastPayloads.ONE_YEAR})
+    public int days;
+
+    @Param({"true", "false"})
+    public boolean metric;
+
+    private DayForecast[] mDays;
+
+    @Setup
+    public void setUp() {
+        mDays = ForecastPayloads.days(days);
+    }
+
+    @Benchmark
+    public void temperatures(Blackhole blackhole) {
+        for (DayForecast day : mDays) {
+            blackhole.consume(UnitConversions.formatTemperature(FORMAT_TEMPERATURE, day.high,
+                    metric));
+            blackhole.consume(UnitConversions.formatTemperature(FORMAT_TEMPERATURE, day.low,
+                    metric));
+        }
+    }
+
+    @Benchmark
+    public void winds(Blackhole blackhole) {
+        String format = metric ? FORMAT_WIND_KMH : FORMAT_WIND_MPH;
+        for (DayForecast day : mDays) {
+            blackhole.consume(UnitConversions.formatWind(format, (float) day.windSpeed,
+                    (float) day.windDirection, metric));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.android.sunshine.benchmarks;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.ForecastParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a forecast response, from a string and from the UTF-8 bytes the network hands over,
+ * the way the sync does it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"" + ForecastPayloads.TWO_WEEKS, "" + ForecastPayloads.ONE_YEAR,
+            "" + ForecastPayloads.TEN_YEARS})
+    public int days;
+
+    private String mJson;
+    private byte[] mBytes;
+
+    @Setup
+    public void setUp() {
+        mJson = ForecastPayloads.json(days);
+        mBytes = mJson.getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public ForecastParser.ParsedForecast parseString(final Blackhole blackhole)
+            throws IOException {
+        return ForecastParser.parse(new StringReader(mJson), ForecastPayloads.START_DAY,
+                new ForecastParser.DayHandler() {
+                    @Override
+                    public void onDay(DayForecast day) {
+                        blackhole.consume(day);
+                    }
+                });
+    }
+
+    @Benchmark
+    public ForecastParser.ParsedForecast parseUtf8Stream(final Blackhole blackhole)
+            throws IOException {
+        return ForecastParser.parse(new ByteArrayInputStream(mBytes), ForecastPayloads.START_DAY,
+                new ForecastParser.DayHandler() {
+                    @Override
+                    public void onDay(DayForecast day) {
+                        blackhole.consume(day);
+                    }
+                });
+    }
+}
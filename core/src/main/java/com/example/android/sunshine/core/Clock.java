@@ -0,0 +1,20 @@
+package com.example.android.sunshine.core;
+
+/**
+ * Where scheduling code gets the current time from. Production code uses {@link #SYSTEM}; a
+ * simulated clock can be passed instead to step through days of syncs without waiting for them.
+ */
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * @return Milliseconds since the epoch, like System.currentTimeMillis()
+     */
+    long currentTimeMillis();
+}
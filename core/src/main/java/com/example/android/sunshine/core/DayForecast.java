@@ -0,0 +1,33 @@
+package com.example.android.sunshine.core;
+
+/**
+ * One day of a forecast as OpenWeatherMap sent it, in Celsius and kilometers per hour.
+ */
+public final class DayForecast {
+
+    /* Normalized UTC date, see ForecastDates */
+    public final long date;
+
+    public final int weatherId;
+
+    public final double high;
+    public final double low;
+
+    public final int humidity;
+    public final double pressure;
+
+    public final double windSpeed;
+    public final double windDirection;
+
+    public DayForecast(long date, int weatherId, double high, double low, int humidity,
+                       double pressure, double windSpeed, double windDirection) {
+        this.date = date;
+        this.weatherId = weatherId;
+        this.high = high;
+        this.low = low;
+        this.humidity = humidity;
+        this.pressure = pressure;
+        this.windSpeed = windSpeed;
+        this.windDirection = windDirection;
+    }
+}
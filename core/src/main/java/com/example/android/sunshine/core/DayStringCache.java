@@ -0,0 +1,104 @@
+package com.example.android.sunshine.core;
+
+import java.util.Locale;
+
+/**
+ * Strings formatted per normalized day, like the app's friendly dates, kept so each day is
+ * formatted once instead of on every bind. Two strings are kept per day, a short and a full
+ * one.
+ *
+ * Such a string depends on which day is today and on the locale. The cache is one generation
+ * of strings for one combination of those: asking with a new day or a different locale starts
+ * a new generation, and {@link #invalidate} drops the current one for anything else, like a time
+ * zone change. Only the days around today are kept. Safe to use from any thread.
+ */
+public final class DayStringCache {
+
+    /* Cached days, relative to today. A forecast is 14 days, yesterday covers late syncs */
+    private static final int FIRST_CACHED_DAY = -1;
+    private static final int CACHED_DAYS = 64;
+
+    /*
+     * Strings for one day and one locale. Strings are immutable, so the plain arrays can be
+     * filled by racing threads: at worst a string is formatted twice.
+     */
+    private static final class Generation {
+
+        final long todayUtcDay;
+        final Locale locale;
+
+        final String[] strings = new String[CACHED_DAYS];
+        final String[] fullStrings = new String[CACHED_DAYS];
+
+        Generation(long todayUtcDay, Locale locale) {
+            this.todayUtcDay = todayUtcDay;
+            this.locale = locale;
+        }
+    }
+
+    private volatile Generation mGeneration;
+
+    /**
+     * @param normalizedUtcMidnight The day, see ForecastDates
+     * @param full                  Which of the two strings of the day
+     * @param todayUtcDay           Days since the epoch of today, in UTC
+     * @param locale                The locale the string is formatted in
+     *
+     * @return The cached string, or null if it has to be formatted and {@link #put}
+     */
+    public String get(long normalizedUtcMidnight, boolean full, long todayUtcDay,
+                      Locale locale) {
+
+        Generation generation = currentGeneration(todayUtcDay, locale);
+
+        int index = indexOf(normalizedUtcMidnight, todayUtcDay);
+        if (index < 0) return null;
+
+        return (full ? generation.fullStrings : generation.strings)[index];
+    }
+
+    /**
+     * Keeps a string formatted after {@link #get} returned null for it, with the same arguments.
+     * Days that aren't normalized or are too far from today are not kept.
+     */
+    public void put(long normalizedUtcMidnight, boolean full, long todayUtcDay, Locale locale,
+                    String value) {
+
+        Generation generation = currentGeneration(todayUtcDay, locale);
+
+        int index = indexOf(normalizedUtcMidnight, todayUtcDay);
+        if (index < 0) return;
+
+        (full ? generation.fullStrings : generation.strings)[index] = value;
+    }
+
+    /* Drops every cached string, the next call starts a new generation */
+    public void invalidate() {
+        mGeneration = null;
+    }
+
+    private Generation currentGeneration(long todayUtcDay, Locale locale) {
+
+        Generation generation = mGeneration;
+
+        if (generation == null
+                || generation.todayUtcDay != todayUtcDay
+                || !generation.locale.equals(locale)) {
+            generation = new Generation(todayUtcDay, locale);
+            mGeneration = generation;
+        }
+
+        return generation;
+    }
+
+    /* The slot of a day in a generation, -1 if it isn't cached */
+    private static int indexOf(long normalizedUtcMidnight, long todayUtcDay) {
+
+        if (!ForecastDates.isDateNormalized(normalizedUtcMidnight)) return -1;
+
+        long index = normalizedUtcMidnight / ForecastDates.DAY_IN_MILLIS
+                - todayUtcDay - FIRST_CACHED_DAY;
+
+        return index < 0 || index >= CACHED_DAYS ? -1 : (int) index;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date normalization for the weather table. Every forecast date is stored as midnight UTC of
+ * the day it belongs to, the day being the one in the device's time zone. Nothing here reads
+ * the clock or the default time zone by itself, callers pass them in.
+ */
+public final class ForecastDates {
+
+    /* Milliseconds in a day */
+    public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private ForecastDates() {
+    }
+
+    /**
+     * Returns midnight UTC of the local date at nowMillis. For example, at 6:30 PM on September
+     * 20th, 2016, in California or in Hong Kong alike, this is 1474329600000: September 20th,
+     * 2016 at midnight GMT.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch
+     * @param timeZone  The time zone the local date is taken in
+     */
+    public static long getNormalizedUtcDateForToday(long nowMillis, TimeZone timeZone) {
+
+        /* The offset accounts for daylight saving time at nowMillis */
+        long localMillis = nowMillis + timeZone.getOffset(nowMillis);
+
+        return TimeUnit.DAYS.toMillis(elapsedDaysSinceEpoch(localMillis));
+    }
+
+    /**
+     * Returns the number of whole days between the epoch and a date.
+     *
+     * @param utcDate A date in milliseconds in UTC time.
+     */
+    public static long elapsedDaysSinceEpoch(long utcDate) {
+        return TimeUnit.MILLISECONDS.toDays(utcDate);
+    }
+
+    /**
+     * Truncates a date to midnight UTC of its UTC day. For example, Friday, 9/16/2016, 17:45:15
+     * GMT-4:00 (1474062315000) becomes Friday, 9/16/2016, 00:00:00 GMT (1473984000000).
+     */
+    public static long normalizeDate(long date) {
+        return elapsedDaysSinceEpoch(date) * DAY_IN_MILLIS;
+    }
+
+    /**
+     * Returns true if the date is midnight UTC, the only dates the weather table accepts.
+     */
+    public static boolean isDateNormalized(long millisSinceEpoch) {
+        return millisSinceEpoch % DAY_IN_MILLIS == 0;
+    }
+
+    /**
+     * Returns local midnight, as a UTC timestamp, of the day a normalized date stands for.
+     *
+     * @param normalizedUtcDate UTC time at midnight for a given date, as stored in the database
+     * @param timeZone          The time zone to display the date in
+     */
+    public static long getLocalMidnightFromNormalizedUtcDate(long normalizedUtcDate,
+                                                             TimeZone timeZone) {
+        return normalizedUtcDate - timeZone.getOffset(normalizedUtcDate);
+    }
+}
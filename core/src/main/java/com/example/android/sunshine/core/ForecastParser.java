@@ -0,0 +1,257 @@
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Parses OpenWeatherMap daily forecast responses. The response is pulled token by token and
+ * each day is handed over as soon as it has been read, so neither the body nor a JSON tree is
+ * held in memory. Stateless and safe to use from several threads at once.
+ */
+public final class ForecastParser {
+
+    /* Location information */
+    private static final String OWM_CITY = "city";
+    private static final String OWM_COORD = "coord";
+
+    /* Location coordinate */
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    /* Weather information. Each day's forecast info is an element of the "list" array */
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    /* All temperatures are children of the "temp" object */
+    private static final String OWM_TEMPERATURE = "temp";
+
+    /* Max temperature for the day */
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    private static final int HTTP_OK = 200;
+
+    /**
+     * Receives the days of a forecast, in order, while it is parsed.
+     */
+    public interface DayHandler {
+        void onDay(DayForecast day) throws IOException;
+    }
+
+    /**
+     * What's left of a response once its days have been handed over: the coordinates
+     * OpenWeatherMap resolved the location to, and how many days there were.
+     */
+    public static final class ParsedForecast {
+
+        public final double latitude;
+        public final double longitude;
+
+        public final int days;
+
+        ParsedForecast(double latitude, double longitude, int days) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.days = days;
+        }
+    }
+
+    private ForecastParser() {
+    }
+
+    /**
+     * Same as {@link #parse(Reader, long, DayHandler)}, reading the body as UTF-8. The stream is
+     * not closed.
+     */
+    public static ParsedForecast parse(InputStream in, long normalizedUtcStartDay,
+                                       DayHandler handler) throws IOException {
+        return parse(new InputStreamReader(in, "UTF-8"), normalizedUtcStartDay, handler);
+    }
+
+    /**
+     * Parses a forecast response. The dates in the response are ignored: the days are assumed
+     * to be in order, the first one being normalizedUtcStartDay.
+     *
+     * @param forecastJson          The JSON response from the server. It is not closed.
+     * @param normalizedUtcStartDay The date of the first day, see ForecastDates
+     * @param handler               Receives each day as soon as it has been read
+     *
+     * @return The coordinates and day count, null if the server answered with an error code.
+     * Days handed over before the error code was read should be discarded.
+     * @throws IOException If the input fails or is not a forecast
+     */
+    public static ParsedForecast parse(Reader forecastJson, long normalizedUtcStartDay,
+                                       DayHandler handler) throws IOException {
+
+        JsonPullReader reader = new JsonPullReader(forecastJson);
+
+        double cityLatitude = Double.NaN;
+        double cityLongitude = Double.NaN;
+
+        int days = -1;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+
+            String name = reader.nextName();
+
+            if (OWM_MESSAGE_CODE.equals(name)) {
+
+                /* Is there an error? The code can be sent as a number or as a string */
+                if (reader.nextInt() != HTTP_OK) {
+                    /* Location invalid or server probably down */
+                    return null;
+                }
+
+            } else if (OWM_CITY.equals(name)) {
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (OWM_COORD.equals(reader.nextName())) {
+
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String coordName = reader.nextName();
+                            if (OWM_LATITUDE.equals(coordName)) {
+                                cityLatitude = reader.nextDouble();
+                            } else if (OWM_LONGITUDE.equals(coordName)) {
+                                cityLongitude = reader.nextDouble();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+            } else if (OWM_LIST.equals(name)) {
+
+                days = 0;
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    long date = normalizedUtcStartDay + ForecastDates.DAY_IN_MILLIS * days;
+                    handler.onDay(readDayForecast(reader, date));
+                    days++;
+                }
+                reader.endArray();
+
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if (days < 0 || Double.isNaN(cityLatitude) || Double.isNaN(cityLongitude)) {
+            throw new IOException("Response is missing the forecast list or the city coordinates");
+        }
+
+        return new ParsedForecast(cityLatitude, cityLongitude, days);
+    }
+
+    // Reads one element of the "list" array
+    private static DayForecast readDayForecast(JsonPullReader reader, long date)
+            throws IOException {
+
+        double pressure = Double.NaN;
+        double humidity = Double.NaN;
+        double windSpeed = Double.NaN;
+        double windDirection = Double.NaN;
+
+        double high = Double.NaN;
+        double low = Double.NaN;
+
+        int weatherId = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+
+            String name = reader.nextName();
+
+            if (OWM_PRESSURE.equals(name)) {
+                pressure = reader.nextDouble();
+            } else if (OWM_HUMIDITY.equals(name)) {
+                humidity = reader.nextDouble();
+            } else if (OWM_WINDSPEED.equals(name)) {
+                windSpeed = reader.nextDouble();
+            } else if (OWM_WIND_DIRECTION.equals(name)) {
+                windDirection = reader.nextDouble();
+
+            } else if (OWM_WEATHER.equals(name)) {
+
+                /* "weather" is an array that is 1 element long, holding the weather code */
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (weatherId == -1) {
+                        weatherId = readWeatherId(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+
+            } else if (OWM_TEMPERATURE.equals(name)) {
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String temperatureName = reader.nextName();
+                    if (OWM_MAX.equals(temperatureName)) {
+                        high = reader.nextDouble();
+                    } else if (OWM_MIN.equals(temperatureName)) {
+                        low = reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (weatherId == -1 || Double.isNaN(pressure) || Double.isNaN(humidity)
+                || Double.isNaN(windSpeed) || Double.isNaN(windDirection)
+                || Double.isNaN(high) || Double.isNaN(low)) {
+            throw new IOException("Incomplete forecast for day " + date);
+        }
+
+        return new DayForecast(date, weatherId, high, low, (int) humidity, pressure,
+                windSpeed, windDirection);
+    }
+
+    private static int readWeatherId(JsonPullReader reader) throws IOException {
+
+        int weatherId = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (OWM_WEATHER_ID.equals(reader.nextName())) {
+                weatherId = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return weatherId;
+    }
+}
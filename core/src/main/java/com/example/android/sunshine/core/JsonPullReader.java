@@ -0,0 +1,378 @@
+package com.example.android.sunshine.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A small pull parser for JSON, with the same shape as android.util.JsonReader: the caller asks
+ * for the tokens it expects and skips what it doesn't need. Only a fixed size buffer and the
+ * nesting stack are held, never the document.
+ *
+ * Numbers may also be read from strings and strings from numbers, like OpenWeatherMap's "cod",
+ * which is sent either way. Malformed input and unexpected tokens throw an IOException.
+ */
+final class JsonPullReader implements Closeable {
+
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    /* What the innermost scope expects next */
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader mIn;
+
+    private final char[] mBuffer = new char[1024];
+    private int mPos;
+    private int mLimit;
+
+    /* Characters consumed before the buffer, for error messages */
+    private long mOffset;
+
+    private int[] mStack = new int[16];
+    private int mStackSize;
+
+    private Token mPeeked;
+
+    private final StringBuilder mScratch = new StringBuilder();
+
+    JsonPullReader(Reader in) {
+        mIn = in;
+        push(EMPTY_DOCUMENT);
+    }
+
+    Token peek() throws IOException {
+
+        if (mPeeked != null) return mPeeked;
+
+        int scope = mStack[mStackSize - 1];
+
+        switch (scope) {
+
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY: {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') throw syntaxError("Expected ',' or ']'");
+                } else {
+                    mPos--;
+                }
+                mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+                return mPeeked = peekValue();
+            }
+
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') throw syntaxError("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntaxError("Expected a name");
+                mStack[mStackSize - 1] = DANGLING_NAME;
+                return mPeeked = Token.NAME;
+            }
+
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') throw syntaxError("Expected ':'");
+                mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+                return mPeeked = peekValue();
+
+            case EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+                return mPeeked = peekValue();
+
+            default:
+                if (fillNonWhitespace()) throw syntaxError("Expected the end of the document");
+                return mPeeked = Token.END_DOCUMENT;
+        }
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    String nextString() throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        if (token == Token.STRING) return readString();
+        if (token == Token.NUMBER) return readLiteral();
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    double nextDouble() throws IOException {
+        Token token = peek();
+        if (token != Token.NUMBER && token != Token.STRING) {
+            throw syntaxError("Expected a number but was " + token);
+        }
+        String number = nextString();
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Not a number: " + number);
+        }
+    }
+
+    int nextInt() throws IOException {
+        double number = nextDouble();
+        int result = (int) number;
+        if (result != number) throw syntaxError("Not an int: " + number);
+        return result;
+    }
+
+    boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        String literal = readLiteral();
+        if ("true".equals(literal)) return true;
+        if ("false".equals(literal)) return false;
+        throw syntaxError("Not a boolean: " + literal);
+    }
+
+    void nextNull() throws IOException {
+        expect(Token.NULL);
+        if (!"null".equals(readLiteral())) throw syntaxError("Expected null");
+    }
+
+    /* Skips the next value, with everything nested in it */
+    void skipValue() throws IOException {
+
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case STRING:
+                    mPeeked = null;
+                    readString();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    mPeeked = null;
+                    readLiteral();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    /*
+     * Looks at the first character of a value. Brackets and the opening quote are consumed,
+     * numbers and literals are left for readLiteral.
+     */
+    private Token peekValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                mPos--;
+                return Token.BOOLEAN;
+            case 'n':
+                mPos--;
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /* Reads a string whose opening quote was consumed, up to and including the closing one */
+    private String readString() throws IOException {
+
+        StringBuilder builder = mScratch;
+        builder.setLength(0);
+
+        while (true) {
+
+            int start = mPos;
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    builder.append(mBuffer, start, mPos - start - 1);
+                    return builder.toString();
+                } else if (c == '\\') {
+                    builder.append(mBuffer, start, mPos - start - 1);
+                    builder.append(readEscape());
+                    start = mPos;
+                }
+            }
+            builder.append(mBuffer, start, mPos - start);
+
+            if (!fill()) throw syntaxError("Unterminated string");
+        }
+    }
+
+    private char readEscape() throws IOException {
+
+        if (mPos == mLimit && !fill()) throw syntaxError("Unterminated escape");
+
+        char escaped = mBuffer[mPos++];
+        switch (escaped) {
+            case 'u': {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (mPos == mLimit && !fill()) throw syntaxError("Unterminated escape");
+                    int digit = Character.digit(mBuffer[mPos++], 16);
+                    if (digit < 0) throw syntaxError("Malformed unicode escape");
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            }
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            default:
+                throw syntaxError("Invalid escape '\\" + escaped + "'");
+        }
+    }
+
+    /* Reads an unquoted number or literal, up to the next delimiter */
+    private String readLiteral() throws IOException {
+
+        StringBuilder builder = mScratch;
+        builder.setLength(0);
+
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if (c == ',' || c == '}' || c == ']' || c == ':'
+                    || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                break;
+            }
+            builder.append(c);
+            mPos++;
+        }
+
+        if (builder.length() == 0) throw syntaxError("Expected a value");
+        return builder.toString();
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        if (!fillNonWhitespace()) throw syntaxError("Unexpected end of input");
+        return mBuffer[mPos++];
+    }
+
+    /* Skips whitespace, returns false at the end of input */
+    private boolean fillNonWhitespace() throws IOException {
+        while (mPos < mLimit || fill()) {
+            char c = mBuffer[mPos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return true;
+            mPos++;
+        }
+        return false;
+    }
+
+    private boolean fill() throws IOException {
+        mOffset += mLimit;
+        mPos = 0;
+        mLimit = 0;
+
+        int read = mIn.read(mBuffer, 0, mBuffer.length);
+        if (read <= 0) return false;
+
+        mLimit = read;
+        return true;
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at offset " + (mOffset + mPos));
+    }
+}
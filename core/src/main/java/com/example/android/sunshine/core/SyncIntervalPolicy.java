@@ -0,0 +1,128 @@
+package com.example.android.sunshine.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often a location is synced, based on how much its forecast changed the last time. A
+ * location whose forecast keeps changing gets a shorter interval, one that stays the same (or
+ * answers 304 Not Modified) gets a longer one, always within the configured bounds.
+ *
+ * Only the policy lives here, the app's AdaptiveSyncScheduler stores its results on the
+ * location rows. The time comes from a {@link Clock}, so days of syncs can be stepped through
+ * without waiting for them.
+ */
+public final class SyncIntervalPolicy {
+
+    public static final long DEFAULT_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(3);
+
+    public static final long DEFAULT_MIN_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+    public static final long DEFAULT_MAX_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(12);
+
+    /* At or above this share of changed days the interval is narrowed, at or below it is widened */
+    static final double VOLATILE_CHANGE = 0.5;
+    static final double STABLE_CHANGE = 0.1;
+
+    static final double NARROW_FACTOR = 0.5;
+    static final double WIDEN_FACTOR = 1.5;
+
+    /*
+     * The job doesn't run exactly on time, so a location counts as due a little before its
+     * interval is over rather than waiting a whole extra job interval.
+     */
+    static final double DUE_SLACK = 0.2;
+
+    private final Clock mClock;
+
+    private final long mMinIntervalSeconds;
+
+    private final long mMaxIntervalSeconds;
+
+    public SyncIntervalPolicy(Clock clock) {
+        this(clock, DEFAULT_MIN_INTERVAL_SECONDS, DEFAULT_MAX_INTERVAL_SECONDS);
+    }
+
+    public SyncIntervalPolicy(Clock clock, long minIntervalSeconds, long maxIntervalSeconds) {
+        if (minIntervalSeconds <= 0 || maxIntervalSeconds < minIntervalSeconds) {
+            throw new IllegalArgumentException("Invalid interval bounds");
+        }
+        mClock = clock;
+        mMinIntervalSeconds = minIntervalSeconds;
+        mMaxIntervalSeconds = maxIntervalSeconds;
+    }
+
+    public long currentTimeMillis() {
+        return mClock.currentTimeMillis();
+    }
+
+    /**
+     * @param storedIntervalSeconds The interval stored for a location, 0 if it has none yet
+     *
+     * @return The interval to use, the default one if none was stored, within the bounds
+     */
+    public long getIntervalSeconds(long storedIntervalSeconds) {
+        return storedIntervalSeconds > 0
+                ? clamp(storedIntervalSeconds) : clamp(DEFAULT_INTERVAL_SECONDS);
+    }
+
+    /**
+     * @param lastSyncMillis        When the location was last synced, 0 if never
+     * @param storedIntervalSeconds The interval stored for it, 0 if it has none yet
+     */
+    public boolean isDue(long lastSyncMillis, long storedIntervalSeconds) {
+
+        if (lastSyncMillis <= 0) return true;
+
+        long elapsedMillis = mClock.currentTimeMillis() - lastSyncMillis;
+
+        /* The clock went back, don't trust the stored time */
+        if (elapsedMillis < 0) return true;
+
+        long dueAfterMillis = (long) (TimeUnit.SECONDS.toMillis(
+                getIntervalSeconds(storedIntervalSeconds)) * (1 - DUE_SLACK));
+
+        return elapsedMillis >= dueAfterMillis;
+    }
+
+    /**
+     * @param currentIntervalSeconds The interval used until now
+     * @param change                 Share of the known forecast days that changed, between 0
+     *                               and 1, or a negative value if there was nothing to compare
+     *
+     * @return The interval until the next sync, within the bounds
+     */
+    public long nextIntervalSeconds(long currentIntervalSeconds, double change) {
+
+        double interval = currentIntervalSeconds;
+
+        if (change >= VOLATILE_CHANGE) {
+            interval *= NARROW_FACTOR;
+        } else if (change >= 0 && change <= STABLE_CHANGE) {
+            interval *= WIDEN_FACTOR;
+        }
+
+        return clamp(Math.round(interval));
+    }
+
+    /**
+     * Share of the forecast days that were already stored and came back different. Newly
+     * inserted days are left out, a new day at the end of the window is expected on every sync.
+     *
+     * @param days     Days in the forecast that was merged
+     * @param inserted Days of it that were not stored before
+     * @param updated  Stored days that changed
+     *
+     * @return The change between 0 and 1, or -1 if none of the days were stored before
+     */
+    public static double measureChange(int days, int inserted, int updated) {
+
+        int knownDays = days - inserted;
+        if (knownDays <= 0) return -1;
+
+        return Math.min(1.0, (double) updated / knownDays);
+    }
+
+    private long clamp(long intervalSeconds) {
+        return Math.max(mMinIntervalSeconds, Math.min(mMaxIntervalSeconds, intervalSeconds));
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.android.sunshine.core;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Generates plausible forecasts for any number of made up locations and days, for load tests
+ * and benchmarks.
+ *
+ * Every value is a hash of the seed, the location and the day, not the next number of a random
+ * sequence. The same seed always produces the same data, any location or day can be produced
+ * on its own, in any order or from several threads, and nothing is kept between rows: millions
+ * of rows stream out in constant memory.
+ */
+public final class SyntheticForecastGenerator {
+
+    /* Condition ids by kind, every id OpenWeatherMap defines can come out */
+    private static final int[] THUNDERSTORM_IDS =
+            {200, 201, 202, 210, 211, 212, 221, 230, 231, 232};
+    private static final int[] DRIZZLE_IDS =
+            {300, 301, 302, 310, 311, 312, 313, 314, 321};
+    private static final int[] RAIN_IDS = {500, 501, 502, 503, 504, 511, 520, 521, 522, 531};
+    private static final int[] SNOW_IDS = {600, 601, 602, 611, 612, 615, 616, 620, 621, 622};
+    private static final int[] ATMOSPHERE_IDS =
+            {701, 711, 721, 731, 741, 751, 761, 762, 771, 781};
+    private static final int[] CLEAR_AND_CLOUDS_IDS = {800, 801, 802, 803, 804};
+    private static final int[] EXTREME_IDS = {900, 901, 902, 903, 904, 905, 906,
+            951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961, 962};
+
+    /* Salts, so each value of a row comes from its own hash */
+    private static final int SALT_LATITUDE = 1;
+    private static final int SALT_LONGITUDE = 2;
+    private static final int SALT_TEMPERATURE = 3;
+    private static final int SALT_RANGE = 4;
+    private static final int SALT_KIND = 5;
+    private static final int SALT_ID = 6;
+    private static final int SALT_HUMIDITY = 7;
+    private static final int SALT_PRESSURE = 8;
+    private static final int SALT_WIND_SPEED = 9;
+    private static final int SALT_WIND_DIRECTION = 10;
+
+    private static final double DAYS_PER_YEAR = 365.25;
+
+    /**
+     * A made up location. Its name is unique per index, so each one gets its own row in the
+     * location table.
+     */
+    public static final class Location {
+
+        public final int index;
+        public final String name;
+
+        public final double latitude;
+        public final double longitude;
+
+        Location(int index, String name, double latitude, double longitude) {
+            this.index = index;
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * Receives generated rows, location by location and day by day.
+     */
+    public interface RowHandler {
+        void onRow(Location location, DayForecast day) throws IOException;
+    }
+
+    private final long mSeed;
+
+    public SyntheticForecastGenerator(long seed) {
+        mSeed = seed;
+    }
+
+    public Location location(int index) {
+        return location(index,
+                round(-60 + 130 * uniform(index, 0, SALT_LATITUDE), 4),
+                round(-180 + 360 * uniform(index, 0, SALT_LONGITUDE), 4));
+    }
+
+    /**
+     * A made up location at given coordinates, for a stand-in server that places its locations
+     * itself. The forecast depends on the index and the latitude.
+     */
+    public Location location(int index, double latitude, double longitude) {
+        return new Location(index, "Synthetic " + index, latitude, longitude);
+    }
+
+    /**
+     * Returns the forecast of one location for one day.
+     *
+     * @param location A location from {@link #location(int)}
+     * @param date     A normalized UTC date, see ForecastDates
+     */
+    public DayForecast day(Location location, long date) {
+
+        long day = ForecastDates.elapsedDaysSinceEpoch(date);
+        int index = location.index;
+
+        /* Warm near the equator, seasons away from it, opposite in the southern hemisphere */
+        double latitude = location.latitude;
+        double mean = 27 - 0.4 * Math.abs(latitude);
+        double amplitude = 0.3 * Math.abs(latitude);
+        double season = Math.cos(2 * Math.PI * ((day % 365.25) - 196) / DAYS_PER_YEAR);
+        if (latitude < 0) season = -season;
+
+        double noise = 8 * (uniform(index, day, SALT_TEMPERATURE) - .5);
+        double high = mean + amplitude * season + noise;
+        double low = high - 3 - 10 * uniform(index, day, SALT_RANGE);
+
+        int weatherId = weatherId(index, day, high);
+
+        return new DayForecast(
+                date,
+                weatherId,
+                round(high, 2),
+                round(low, 2),
+                (int) (20 + 81 * uniform(index, day, SALT_HUMIDITY)),
+                round(960 + 90 * uniform(index, day, SALT_PRESSURE), 2),
+                round(20 * uniform(index, day, SALT_WIND_SPEED), 2),
+                Math.floor(360 * uniform(index, day, SALT_WIND_DIRECTION)));
+    }
+
+    /**
+     * Generates locations [0, locations) for days starting at startDay, handing each row over as
+     * it is made.
+     */
+    public void generate(int locations, long startDay, int days, RowHandler handler)
+            throws IOException {
+        for (int index = 0; index < locations; index++) {
+            Location location = location(index);
+            for (int i = 0; i < days; i++) {
+                long date = startDay + i * ForecastDates.DAY_IN_MILLIS;
+                handler.onRow(location, day(location, date));
+            }
+        }
+    }
+
+    /**
+     * Writes a daily forecast response for one location, shaped like OpenWeatherMap's, with the
+     * fields the app ignores included. Written as it is generated, never held in memory.
+     */
+    public void writeJson(Writer out, int locationIndex, long startDay, int days)
+            throws IOException {
+        writeJson(out, location(locationIndex), startDay, days);
+    }
+
+    /**
+     * Same as {@link #writeJson(Writer, int, long, int)}, for a location from
+     * {@link #location(int, double, double)}.
+     */
+    public void writeJson(Writer out, Location location, long startDay, int days)
+            throws IOException {
+
+        out.write("{\"city\":{\"id\":");
+        out.write(Integer.toString(location.index));
+        out.write(",\"name\":\"");
+        out.write(location.name);
+        out.write("\",\"coord\":{\"lon\":");
+        out.write(Double.toString(location.longitude));
+        out.write(",\"lat\":");
+        out.write(Double.toString(location.latitude));
+        out.write("},\"country\":\"XX\",\"population\":0},\"cod\":\"200\",\"message\":0.0032,");
+        out.write("\"cnt\":");
+        out.write(Integer.toString(days));
+        out.write(",\"list\":[");
+
+        for (int i = 0; i < days; i++) {
+
+            long date = startDay + i * ForecastDates.DAY_IN_MILLIS;
+            DayForecast day = day(location, date);
+
+            if (i > 0) out.write(',');
+
+            out.write("{\"dt\":");
+            out.write(Long.toString(date / 1000));
+            out.write(",\"temp\":{\"day\":");
+            out.write(Double.toString(day.high));
+            out.write(",\"min\":");
+            out.write(Double.toString(day.low));
+            out.write(",\"max\":");
+            out.write(Double.toString(day.high));
+            out.write(",\"night\":");
+            out.write(Double.toString(day.low));
+            out.write(",\"eve\":");
+            out.write(Double.toString(day.high));
+            out.write(",\"morn\":");
+            out.write(Double.toString(day.low));
+            out.write("},\"pressure\":");
+            out.write(Double.toString(day.pressure));
+            out.write(",\"humidity\":");
+            out.write(Integer.toString(day.humidity));
+            out.write(",\"weather\":[{\"id\":");
+            out.write(Integer.toString(day.weatherId));
+            out.write(",\"main\":\"");
+            out.write(WeatherCondition.forWeatherId(day.weatherId).name());
+            out.write("\",\"description\":\"synthetic\",\"icon\":\"01d\"}],\"speed\":");
+            out.write(Double.toString(day.windSpeed));
+            out.write(",\"deg\":");
+            out.write(Integer.toString((int) day.windDirection));
+            out.write(",\"clouds\":0}");
+        }
+
+        out.write("]}");
+    }
+
+    /* Same as writeJson, into a String. Only for payloads that comfortably fit in memory */
+    public String json(int locationIndex, long startDay, int days) {
+        StringWriter out = new StringWriter(256 + days * 256);
+        try {
+            writeJson(out, locationIndex, startDay, days);
+        } catch (IOException e) {
+            /* StringWriter doesn't throw */
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+
+    /*
+     * Mostly clear skies and rain, snow only when it's cold enough, and the rare extreme
+     * condition, so every defined id shows up in a large enough run.
+     */
+    private int weatherId(int index, long day, double high) {
+
+        double kind = uniform(index, day, SALT_KIND);
+        double pick = uniform(index, day, SALT_ID);
+
+        int[] ids;
+        if (kind < .40) {
+            ids = CLEAR_AND_CLOUDS_IDS;
+        } else if (kind < .65) {
+            ids = high < 2 ? SNOW_IDS : RAIN_IDS;
+        } else if (kind < .75) {
+            ids = DRIZZLE_IDS;
+        } else if (kind < .83) {
+            ids = SNOW_IDS;
+        } else if (kind < .91) {
+            ids = THUNDERSTORM_IDS;
+        } else if (kind < .98) {
+            ids = ATMOSPHERE_IDS;
+        } else {
+            ids = EXTREME_IDS;
+        }
+
+        return ids[(int) (pick * ids.length)];
+    }
+
+    /* A value in [0, 1) that only depends on the seed, the location, the day and the salt */
+    private double uniform(int index, long day, int salt) {
+        long hash = mix(mSeed
+                ^ mix(index * 0x9E3779B97F4A7C15L + salt)
+                ^ mix(day + 0x632BE59BD9B4E019L * salt));
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /* SplitMix64's finalizer */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.android.sunshine.core;
+
+/**
+ * Temperature and wind conversions. Forecasts are stored in Celsius and kilometers per hour,
+ * these turn them into what the user asked to see.
+ */
+public final class UnitConversions {
+
+    private static final float MILES_PER_KILOMETER = .621371192237334f;
+
+    private static final String[] COMPASS_DIRECTIONS =
+            {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private UnitConversions() {
+    }
+
+    /**
+     * @param temperatureInCelsius Temperature in degrees Celsius (°C)
+     *
+     * @return Temperature in degrees Fahrenheit (°F)
+     */
+    public static double celsiusToFahrenheit(double temperatureInCelsius) {
+        return (temperatureInCelsius * 1.8) + 32;
+    }
+
+    /**
+     * @param speedInKph Speed in kilometers per hour
+     *
+     * @return Speed in miles per hour
+     */
+    public static float kphToMph(float speedInKph) {
+        return MILES_PER_KILOMETER * speedInKph;
+    }
+
+    /**
+     * Formats a temperature for display. Tenths of a degree are left to the format, the app's
+     * format_temperature drops them.
+     *
+     * @param format               A format taking the temperature as a double, like "%1.0f°"
+     * @param temperatureInCelsius Temperature in degrees Celsius (°C)
+     * @param metric               True to show Celsius, false to show Fahrenheit
+     */
+    public static String formatTemperature(String format, double temperatureInCelsius,
+                                           boolean metric) {
+        double temperature = metric
+                ? temperatureInCelsius : celsiusToFahrenheit(temperatureInCelsius);
+        return String.format(format, temperature);
+    }
+
+    /**
+     * Formats a wind for display, like "2 km/h SW".
+     *
+     * @param format     A format taking the speed as a float and the direction as a String, in
+     *                   kilometers per hour if metric, in miles per hour otherwise
+     * @param speedInKph Speed in kilometers per hour
+     * @param degrees    Degrees as measured on a compass
+     * @param metric     True to show kilometers per hour, false to show miles per hour
+     */
+    public static String formatWind(String format, float speedInKph, float degrees,
+                                    boolean metric) {
+        float speed = metric ? speedInKph : kphToMph(speedInKph);
+        return String.format(format, speed, windDirection(degrees));
+    }
+
+    /**
+     * Returns the compass direction a wind blows from, one of the eight from "N" to "NW". Each
+     * direction covers 45 degrees centered on it, so 22.5 is already "NE". Anything below 22.5
+     * or from 337.5 up, out of range values included, is "N".
+     *
+     * @param degrees Degrees as measured on a compass
+     *
+     * @return The direction, "Unknown" for NaN
+     */
+    public static String windDirection(float degrees) {
+
+        if (Float.isNaN(degrees)) return "Unknown";
+
+        if (degrees >= 337.5 || degrees < 22.5) return COMPASS_DIRECTIONS[0];
+
+        return COMPASS_DIRECTIONS[(int) ((degrees + 22.5) / 45)];
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.android.sunshine.core;
+
+/**
+ * The kinds of weather Sunshine has art for, and which OpenWeatherMap condition ids fall under
+ * each. See http://openweathermap.org/weather-conditions for a list of all IDs.
+ */
+public enum WeatherCondition {
+
+    STORM,
+    LIGHT_RAIN,
+    RAIN,
+    SNOW,
+    FOG,
+    CLEAR,
+    LIGHT_CLOUDS,
+    CLOUDS,
+
+    /* Ids OpenWeatherMap doesn't define */
+    UNKNOWN;
+
+    public static final int MIN_WEATHER_ID = 200;
+    public static final int MAX_WEATHER_ID = 962;
+
+    private static final WeatherCondition[] TABLE = buildTable();
+
+    /**
+     * Returns the condition of an OpenWeatherMap id, in constant time.
+     *
+     * @return The condition, UNKNOWN if the id isn't one OpenWeatherMap defines
+     */
+    public static WeatherCondition forWeatherId(int weatherId) {
+
+        if (weatherId < MIN_WEATHER_ID || weatherId > MAX_WEATHER_ID) return UNKNOWN;
+
+        return TABLE[weatherId - MIN_WEATHER_ID];
+    }
+
+    private static WeatherCondition[] buildTable() {
+
+        WeatherCondition[] table = new WeatherCondition[MAX_WEATHER_ID - MIN_WEATHER_ID + 1];
+
+        /*
+         * Ranges in the order the app's original if/else chain checked them. A range only fills
+         * ids no earlier range claimed, so the overlaps resolve the way they always did: 761 is
+         * in the 701 to 761 fog range, which the chain checked before its storm ids, and is FOG.
+         */
+        fill(table, 200, 232, STORM);
+        fill(table, 300, 321, LIGHT_RAIN);
+        fill(table, 500, 504, RAIN);
+        fill(table, 511, 511, SNOW);
+        fill(table, 520, 531, RAIN);
+        fill(table, 600, 622, SNOW);
+        fill(table, 701, 761, FOG);
+        fill(table, 771, 771, STORM);
+        fill(table, 781, 781, STORM);
+        fill(table, 800, 800, CLEAR);
+        fill(table, 801, 801, LIGHT_CLOUDS);
+        fill(table, 802, 804, CLOUDS);
+        fill(table, 900, 906, STORM);
+        fill(table, 958, 962, STORM);
+        fill(table, 951, 957, CLEAR);
+
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == null) table[i] = UNKNOWN;
+        }
+        return table;
+    }
+
+    private static void fill(WeatherCondition[] table, int from, int to,
+                             WeatherCondition condition) {
+        for (int id = from; id <= to; id++) {
+            if (table[id - MIN_WEATHER_ID] == null) table[id - MIN_WEATHER_ID] = condition;
+        }
+    }
+}
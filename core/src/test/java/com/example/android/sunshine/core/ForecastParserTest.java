@@ -0,0 +1,139 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ForecastParserTest {
+
+    private static final long START_DAY = 1600000000000L / ForecastDates.DAY_IN_MILLIS
+            * ForecastDates.DAY_IN_MILLIS;
+
+    private static final String DAY = "{\"dt\": 1600000000,"
+            + " \"temp\": {\"day\": 20.5, \"min\": 11.25, \"max\": 24, \"night\": 12},"
+            + " \"pressure\": 1013.5, \"humidity\": 64,"
+            + " \"weather\": [{\"id\": 500, \"main\": \"Rain\", \"description\": \"light rain\","
+            + " \"icon\": \"10d\"}],"
+            + " \"speed\": 3.6, \"deg\": 250, \"clouds\": 40, \"rain\": 1.2}";
+
+    private static final String CITY = "\"city\": {\"id\": 1, \"name\": \"Mountain View\","
+            + " \"coord\": {\"lon\": -122.08, \"lat\": 37.39}, \"country\": \"US\","
+            + " \"population\": 0}";
+
+    @Test
+    public void parsesDays() throws IOException {
+
+        List<DayForecast> days = new ArrayList<>();
+
+        ForecastParser.ParsedForecast parsed = parse("{" + CITY + ", \"cod\": \"200\","
+                + " \"message\": 0.01, \"cnt\": 2, \"list\": [" + DAY + ", " + DAY + "]}", days);
+
+        assertNotNull(parsed);
+        assertEquals(37.39, parsed.latitude, 0);
+        assertEquals(-122.08, parsed.longitude, 0);
+        assertEquals(2, parsed.days);
+        assertEquals(2, days.size());
+
+        DayForecast first = days.get(0);
+        assertEquals(START_DAY, first.date);
+        assertEquals(500, first.weatherId);
+        assertEquals(24, first.high, 0);
+        assertEquals(11.25, first.low, 0);
+        assertEquals(64, first.humidity);
+        assertEquals(1013.5, first.pressure, 0);
+        assertEquals(3.6, first.windSpeed, 0);
+        assertEquals(250, first.windDirection, 0);
+
+        /* The dates in the response are ignored, the days follow the start day */
+        assertEquals(START_DAY + ForecastDates.DAY_IN_MILLIS, days.get(1).date);
+    }
+
+    @Test
+    public void acceptsANumericCode() throws IOException {
+
+        ForecastParser.ParsedForecast parsed =
+                parse("{\"cod\": 200, " + CITY + ", \"list\": [" + DAY + "]}", null);
+
+        assertNotNull(parsed);
+        assertEquals(1, parsed.days);
+    }
+
+    @Test
+    public void returnsNullForErrorCodes() throws IOException {
+
+        assertNull(parse("{\"cod\": \"404\", \"message\": \"city not found\"}", null));
+        assertNull(parse("{\"cod\": 401, \"message\": \"Invalid API key\"}", null));
+        assertNull(parse("{\"cod\": \"500\"}", null));
+
+        /* An error code after some days: the caller is told to drop them */
+        List<DayForecast> days = new ArrayList<>();
+        assertNull(parse("{\"list\": [" + DAY + "], \"cod\": \"502\"}", days));
+        assertEquals(1, days.size());
+    }
+
+    @Test
+    public void acceptsAnEmptyList() throws IOException {
+
+        ForecastParser.ParsedForecast parsed = parse("{" + CITY + ", \"list\": []}", null);
+
+        assertNotNull(parsed);
+        assertEquals(0, parsed.days);
+    }
+
+    @Test
+    public void rejectsIncompleteForecasts() {
+
+        /* No list, no coordinates, and a day without its weather id */
+        expectIOException("{\"cod\": \"200\", " + CITY + "}");
+        expectIOException("{\"cod\": \"200\", \"city\": {\"name\": \"Nowhere\"},"
+                + " \"list\": [" + DAY + "]}");
+        expectIOException("{" + CITY + ", \"list\": [{\"temp\": {\"min\": 1, \"max\": 2},"
+                + " \"pressure\": 1000, \"humidity\": 50, \"speed\": 1, \"deg\": 90}]}");
+    }
+
+    @Test
+    public void rejectsMalformedResponses() {
+
+        String full = "{" + CITY + ", \"cod\": \"200\", \"list\": [" + DAY + ", " + DAY + "]}";
+
+        /* Cut off anywhere, even right before the closing brace */
+        for (int length = 0; length < full.length(); length += 7) {
+            expectIOException(full.substring(0, length));
+        }
+        expectIOException(full.substring(0, full.length() - 1));
+
+        expectIOException("[" + DAY + "]");
+        expectIOException("{\"cod\": \"two hundred\"}");
+        expectIOException("{\"cod\": 200, " + CITY + ", \"list\": {}}");
+        expectIOException("{" + CITY + ", \"list\": [" + DAY.replace("64", "\"high\"") + "]}");
+        expectIOException("<html><body>Bad gateway</body></html>");
+    }
+
+    private static ForecastParser.ParsedForecast parse(String json, final List<DayForecast> days)
+            throws IOException {
+
+        return ForecastParser.parse(new StringReader(json), START_DAY,
+                new ForecastParser.DayHandler() {
+                    @Override
+                    public void onDay(DayForecast day) {
+                        if (days != null) days.add(day);
+                    }
+                });
+    }
+
+    private static void expectIOException(String json) {
+        try {
+            parse(json, null);
+            fail("Accepted " + json);
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonPullReaderTest {
+
+    @Test
+    public void readsEscapes() throws IOException {
+
+        JsonPullReader reader = reader("[\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\"]");
+
+        reader.beginArray();
+        assertEquals("a\"b\\c/d\b\f\n\r\t", reader.nextString());
+        reader.endArray();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void readsUnicodeEscapes() throws IOException {
+
+        JsonPullReader reader = reader("{\"\\u0063od\": \"\\u00b0C \\uD83C\\uDF27\"}");
+
+        reader.beginObject();
+        assertEquals("cod", reader.nextName());
+        assertEquals("\u00b0C \uD83C\uDF27", reader.nextString());
+        reader.endObject();
+    }
+
+    /* A reader that hands out one character at a time splits escapes across buffer fills */
+    @Test
+    public void readsEscapesSplitAcrossReads() throws IOException {
+
+        JsonPullReader reader = new JsonPullReader(
+                new OneCharReader("[\"x\\u00e9y\\n\", 12.5]"));
+
+        reader.beginArray();
+        assertEquals("x\u00e9y\n", reader.nextString());
+        assertEquals(12.5, reader.nextDouble(), 0);
+        reader.endArray();
+    }
+
+    @Test
+    public void readsLongStrings() throws IOException {
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+
+        JsonPullReader reader = reader("[\"" + value + "\"]");
+
+        reader.beginArray();
+        assertEquals(value.toString(), reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void skipsNestedValues() throws IOException {
+
+        JsonPullReader reader = reader("{\"skip\": {\"a\": [1, {\"b\": [[], {}]}, \"]}\"],"
+                + " \"c\": {\"d\": null, \"e\": true}}, \"list\": [[1, [2, [3]]], false],"
+                + " \"keep\": 7}");
+
+        reader.beginObject();
+
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+
+        assertEquals("list", reader.nextName());
+        reader.skipValue();
+
+        assertEquals("keep", reader.nextName());
+        assertEquals(7, reader.nextInt());
+
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void readsNumbersFromStringsAndStringsFromNumbers() throws IOException {
+
+        JsonPullReader reader = reader("[\"200\", 404, \"-1.5e2\", 3]");
+
+        reader.beginArray();
+        assertEquals(200, reader.nextInt());
+        assertEquals("404", reader.nextString());
+        assertEquals(-150, reader.nextDouble(), 0);
+        assertEquals(3, reader.nextInt());
+        reader.endArray();
+    }
+
+    @Test
+    public void readsLiterals() throws IOException {
+
+        JsonPullReader reader = reader("[true, false, null]");
+
+        reader.beginArray();
+        assertTrue(reader.nextBoolean());
+        assertFalse(reader.nextBoolean());
+        reader.nextNull();
+        reader.endArray();
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+
+        String[] malformed = {
+                "",
+                "[",
+                "{\"a\" 1}",
+                "{\"a\": 1 \"b\": 2}",
+                "[1 2]",
+                "[\"unterminated]",
+                "[\"bad escape \\x\"]",
+                "[\"bad unicode \\u12G4\"]",
+                "[\"short unicode \\u12",
+                "[1] [2]",
+                "{a: 1}",
+                "[@]"
+        };
+
+        for (String json : malformed) {
+            try {
+                JsonPullReader reader = reader(json);
+                reader.skipValue();
+                reader.peek();
+                fail("Accepted " + json);
+            } catch (IOException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsUnexpectedTokens() throws IOException {
+
+        JsonPullReader reader = reader("{\"a\": [1], \"b\": true, \"c\": 1.5}");
+        reader.beginObject();
+
+        reader.nextName();
+        try {
+            reader.beginObject();
+            fail("Read an array as an object");
+        } catch (IOException expected) {
+        }
+        reader.skipValue();
+
+        reader.nextName();
+        try {
+            reader.nextDouble();
+            fail("Read a boolean as a number");
+        } catch (IOException expected) {
+        }
+        reader.skipValue();
+
+        reader.nextName();
+        try {
+            reader.nextInt();
+            fail("Read 1.5 as an int");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsStringsThatAreNotNumbers() throws IOException {
+
+        JsonPullReader reader = reader("[\"twelve\"]");
+        reader.beginArray();
+
+        try {
+            reader.nextDouble();
+            fail("Read \"twelve\" as a number");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static JsonPullReader reader(String json) {
+        return new JsonPullReader(new StringReader(json));
+    }
+
+    private static final class OneCharReader extends Reader {
+
+        private final String mJson;
+        private int mPos;
+
+        OneCharReader(String json) {
+            mJson = json;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (mPos == mJson.length()) return -1;
+            buffer[offset] = mJson.charAt(mPos++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.sunshine.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncIntervalPolicyTest {
+
+    private static final long HOUR_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final long START_MILLIS = 1600000000000L;
+
+    private final SimulatedClock mClock = new SimulatedClock(START_MILLIS);
+
+    private final SyncIntervalPolicy mPolicy = new SyncIntervalPolicy(mClock);
+
+    @Test
+    public void usesTheDefaultIntervalUntilOneIsStored() {
+        assertEquals(SyncIntervalPolicy.DEFAULT_INTERVAL_SECONDS, mPolicy.getIntervalSeconds(0));
+        assertEquals(2 * HOUR_SECONDS, mPolicy.getIntervalSeconds(2 * HOUR_SECONDS));
+    }
+
+    @Test
+    public void clampsStoredIntervals() {
+        assertEquals(SyncIntervalPolicy.DEFAULT_MIN_INTERVAL_SECONDS,
+                mPolicy.getIntervalSeconds(60));
+        assertEquals(SyncIntervalPolicy.DEFAULT_MAX_INTERVAL_SECONDS,
+                mPolicy.getIntervalSeconds(100 * HOUR_SECONDS));
+    }
+
+    @Test
+    public void narrowsForVolatileForecasts() {
+        assertEquals(2 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, 0.5));
+        assertEquals(2 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, 1));
+
+        /* Never below the minimum */
+        assertEquals(SyncIntervalPolicy.DEFAULT_MIN_INTERVAL_SECONDS,
+                mPolicy.nextIntervalSeconds(HOUR_SECONDS, 1));
+    }
+
+    @Test
+    public void widensForStableForecasts() {
+        assertEquals(6 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, 0));
+        assertEquals(6 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, 0.1));
+
+        /* Never above the maximum */
+        assertEquals(SyncIntervalPolicy.DEFAULT_MAX_INTERVAL_SECONDS,
+                mPolicy.nextIntervalSeconds(10 * HOUR_SECONDS, 0));
+    }
+
+    @Test
+    public void keepsTheIntervalInBetweenOrWithoutAComparison() {
+        assertEquals(4 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, 0.3));
+        assertEquals(4 * HOUR_SECONDS, mPolicy.nextIntervalSeconds(4 * HOUR_SECONDS, -1));
+    }
+
+    @Test
+    public void measuresChangeOverKnownDaysOnly() {
+        assertEquals(-1, SyncIntervalPolicy.measureChange(14, 14, 0), 0);
+        assertEquals(0, SyncIntervalPolicy.measureChange(14, 1, 0), 0);
+        assertEquals(0.5, SyncIntervalPolicy.measureChange(14, 4, 5), 0);
+        assertEquals(1, SyncIntervalPolicy.measureChange(14, 1, 13), 0);
+        assertEquals(-1, SyncIntervalPolicy.measureChange(0, 0, 0), 0);
+    }
+
+    @Test
+    public void isDueSlightlyBeforeTheIntervalIsOver() {
+
+        long interval = 5 * HOUR_SECONDS;
+
+        assertTrue(mPolicy.isDue(0, interval));
+
+        long lastSync = mClock.currentTimeMillis();
+        assertFalse(mPolicy.isDue(lastSync, interval));
+
+        /* 80% of five hours is four */
+        mClock.advance(4 * HOUR_MILLIS - 1);
+        assertFalse(mPolicy.isDue(lastSync, interval));
+
+        mClock.advance(1);
+        assertTrue(mPolicy.isDue(lastSync, interval));
+    }
+
+    @Test
+    public void isDueWhenTheClockWentBack() {
+
+        long lastSync = mClock.currentTimeMillis();
+
+        mClock.advance(-HOUR_MILLIS);
+        assertTrue(mPolicy.isDue(lastSync, SyncIntervalPolicy.DEFAULT_INTERVAL_SECONDS));
+    }
+
+    /* A week of syncs of a forecast that stopped changing settles on the maximum interval */
+    @Test
+    public void settlesOnTheMaximumForAStableForecast() {
+
+        long lastSync = 0;
+        long interval = 0;
+        int syncs = 0;
+
+        for (int hour = 0; hour < 24 * 7; hour++) {
+
+            if (mPolicy.isDue(lastSync, interval)) {
+                interval = mPolicy.nextIntervalSeconds(mPolicy.getIntervalSeconds(interval), 0);
+                lastSync = mClock.currentTimeMillis();
+                syncs++;
+            }
+            mClock.advance(HOUR_MILLIS);
+        }
+
+        assertEquals(SyncIntervalPolicy.DEFAULT_MAX_INTERVAL_SECONDS, interval);
+        assertTrue("Synced " + syncs + " times", syncs < 24 * 7 / 8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvertedBounds() {
+        new SyncIntervalPolicy(mClock, 2 * HOUR_SECONDS, HOUR_SECONDS);
+    }
+
+    private static final class SimulatedClock implements Clock {
+
+        private long mNowMillis;
+
+        SimulatedClock(long nowMillis) {
+            mNowMillis = nowMillis;
+        }
+
+        void advance(long millis) {
+            mNowMillis += millis;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return mNowMillis;
+        }
+    }
+}
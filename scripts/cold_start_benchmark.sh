@@ -0,0 +1,71 @@
+#!/usr/bin/env bash
+#
+# Measures the cold start of MainActivity on a connected device or emulator.
+#
+# Every run force-stops the app, so the process, the database and the preferences all start
+# cold, then launches MainActivity with `am start -W` and reads two numbers:
+#
+#   TotalTime    until the first frame was drawn (reported by am start -W)
+#   Fully drawn  until the forecast list was shown (MainActivity calls reportFullyDrawn())
+#
+# Usage: scripts/cold_start_benchmark.sh [runs]      (default 10, install the app first)
+
+set -euo pipefail
+
+RUNS="${1:-10}"
+PACKAGE="com.example.android.sunshine"
+ACTIVITY="$PACKAGE/.MainActivity"
+
+# Turns the "+1s234ms" / "+734ms" durations the ActivityManager logs into milliseconds
+to_millis() {
+    local time="${1%ms}"
+    if [[ "$time" == *s* ]]; then
+        echo $((10#${time%%s*} * 1000 + 10#${time#*s}))
+    else
+        echo $((10#$time))
+    fi
+}
+
+total_times=()
+drawn_times=()
+
+for ((run = 1; run <= RUNS; run++)); do
+
+    adb shell am force-stop "$PACKAGE"
+    adb logcat -c
+    sleep 1
+
+    total=$(adb shell am start -W -n "$ACTIVITY" | tr -d '\r' | awk -F': ' '/^TotalTime/ {print $2}')
+
+    # Fully drawn is logged by the ActivityManager once the loader has delivered data
+    drawn=""
+    for _ in $(seq 1 50); do
+        drawn=$(adb logcat -d -s ActivityManager:I ActivityTaskManager:I | tr -d '\r' \
+            | sed -n "s/.*Fully drawn $ACTIVITY: +\([0-9sm]*\).*/\1/p" | tail -n 1)
+        [[ -n "$drawn" ]] && break
+        sleep 0.1
+    done
+
+    echo "run $run: TotalTime ${total:-?} ms, fully drawn ${drawn:-?} ms"
+
+    [[ -n "$total" ]] && total_times+=("$total")
+    [[ -n "$drawn" ]] && drawn_times+=("$(to_millis "$drawn")")
+done
+
+summarize() {
+    local name="$1"
+    shift
+    if (($# == 0)); then
+        echo "$name: no samples"
+        return
+    fi
+    printf '%s\n' "$@" | sort -n | awk -v name="$name" '
+        { v[NR] = $1; sum += $1 }
+        END {
+            median = (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2
+            printf "%s: n=%d min=%d median=%d mean=%.1f max=%d ms\n", name, NR, v[1], median, sum / NR, v[NR]
+        }'
+}
+
+summarize "TotalTime" "${total_times[@]+"${total_times[@]}"}"
+summarize "Fully drawn" "${drawn_times[@]+"${drawn_times[@]}"}"
@@ -0,0 +1,52 @@
+package com.example.android.sunshine.standin;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The --name value and --flag arguments of the server and the load driver.
+ */
+final class CommandLine {
+
+    private final Map<String, String> mValues = new HashMap<>();
+
+    CommandLine(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+            String value = null;
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                value = args[++i];
+            }
+            mValues.put(name, value);
+        }
+    }
+
+    boolean has(String name) {
+        return mValues.containsKey(name);
+    }
+
+    String getString(String name, String defaultValue) {
+        String value = mValues.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = mValues.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = mValues.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = mValues.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.android.sunshine.standin;
+
+import com.example.android.sunshine.core.DayForecast;
+import com.example.android.sunshine.core.ForecastParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches and parses forecasts the way the sync does, from many threads, and reports the
+ * throughput and the latency percentiles. Each request is a conditional GET with the ETag of
+ * the last response for that location, asks for gzip and is parsed with the app's parser.
+ *
+ *   ./gradlew :standin-server:loadTest --args='--concurrency 32 --requests 20000'
+ *
+ * Without --url a stand-in server is started in the same process, and the server arguments
+ * (--latency, --jitter, --error-rate, --no-304, --no-gzip, --seed) apply to it.
+ *
+ * --concurrency  Threads sending requests, 16 by default
+ * --requests     Requests in total, 10000 by default
+ * --locations    Distinct q queries to spread the requests over, 1000 by default
+ * --days         cnt of every request, 14 by default
+ */
+public final class LoadDriver {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 15000;
+
+    private final String mBaseUrl;
+    private final int mConcurrency;
+    private final int mRequests;
+    private final int mLocations;
+    private final int mDays;
+
+    /* ETag of the last response per location, like ForecastResponseCache */
+    private final ConcurrentHashMap<Integer, String> mETags = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mNextRequest = new AtomicInteger();
+    private final long[] mLatencyNanos;
+
+    private final AtomicLong mForecasts = new AtomicLong();
+    private final AtomicLong mNotModified = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mDaysParsed = new AtomicLong();
+
+    LoadDriver(String baseUrl, int concurrency, int requests, int locations, int days) {
+        mBaseUrl = baseUrl;
+        mConcurrency = concurrency;
+        mRequests = requests;
+        mLocations = locations;
+        mDays = days;
+        mLatencyNanos = new long[requests];
+    }
+
+    void run() throws InterruptedException {
+
+        final CountDownLatch done = new CountDownLatch(mConcurrency);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < mConcurrency; i++) {
+            Thread worker = new Thread("load-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        int request;
+                        while ((request = mNextRequest.getAndIncrement()) < mRequests) {
+                            long requestStart = System.nanoTime();
+                            fetch(request % mLocations);
+                            mLatencyNanos[request] = System.nanoTime() - requestStart;
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            worker.start();
+        }
+
+        done.await();
+
+        report(System.nanoTime() - start);
+    }
+
+    private void fetch(int location) {
+
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(mBaseUrl + "?q=" + URLEncoder.encode("City " + location, "UTF-8")
+                    + "&mode=json&units=metric&cnt=" + mDays);
+
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+
+            String eTag = mETags.get(location);
+            if (eTag != null) connection.setRequestProperty("If-None-Match", eTag);
+
+            int code = connection.getResponseCode();
+
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                mNotModified.incrementAndGet();
+                return;
+            }
+
+            if (code != HttpURLConnection.HTTP_OK) {
+                mErrors.incrementAndGet();
+                drain(connection.getErrorStream());
+                return;
+            }
+
+            InputStream in = connection.getInputStream();
+            if ("gzip".equals(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+
+            try {
+                ForecastParser.parse(in, 0, new ForecastParser.DayHandler() {
+                    @Override
+                    public void onDay(DayForecast day) {
+                        mDaysParsed.incrementAndGet();
+                    }
+                });
+            } finally {
+                in.close();
+            }
+
+            String newETag = connection.getHeaderField("ETag");
+            if (newETag != null) mETags.put(location, newETag);
+
+            mForecasts.incrementAndGet();
+
+        } catch (IOException e) {
+            mErrors.incrementAndGet();
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    /* Reading error bodies to the end lets the connection go back to the keep-alive pool */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) return;
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) != -1) {
+                /* Discard */
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+
+        long[] latencies = mLatencyNanos.clone();
+        Arrays.sort(latencies);
+
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.println(String.format(Locale.US,
+                "%d requests in %.2f s: %.0f requests/s, %.0f days parsed/s",
+                mRequests, seconds, mRequests / seconds, mDaysParsed.get() / seconds));
+        System.out.println("forecasts=" + mForecasts.get() + " notModified=" + mNotModified.get()
+                + " errors=" + mErrors.get());
+        System.out.println(String.format(Locale.US,
+                "latency p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                percentileMillis(latencies, 50), percentileMillis(latencies, 90),
+                percentileMillis(latencies, 99), percentileMillis(latencies, 99.9),
+                percentileMillis(latencies, 100)));
+    }
+
+    /* Nearest rank on the sorted latencies */
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) return 0;
+        int rank = (int) Math.ceil(sortedNanos.length * percentile / 100);
+        return sortedNanos[Math.max(rank, 1) - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLine commandLine = new CommandLine(args);
+
+        String baseUrl = commandLine.getString("url", null);
+        StandInForecastServer server = null;
+
+        if (baseUrl == null) {
+            server = new StandInForecastServer(new StandInForecastServer.Options.Builder()
+                    .setPort(0)
+                    .setSeed(commandLine.getLong("seed", 42))
+                    .setLatencyMillis(commandLine.getLong("latency", 0),
+                            commandLine.getLong("jitter", 0))
+                    .setErrorRate(commandLine.getDouble("error-rate", 0))
+                    .setNotModified(!commandLine.has("no-304"))
+                    .setGzip(!commandLine.has("no-gzip"))
+                    .build());
+            server.start();
+            baseUrl = server.getBaseUrl();
+        }
+
+        /* Lets more than the default 5 idle connections per host be reused */
+        System.setProperty("http.maxConnections", Integer.toString(
+                commandLine.getInt("concurrency", 16)));
+
+        try {
+            new LoadDriver(baseUrl,
+                    commandLine.getInt("concurrency", 16),
+                    commandLine.getInt("requests", 10000),
+                    commandLine.getInt("locations", 1000),
+                    commandLine.getInt("days", 14)).run();
+        } finally {
+            if (server != null) {
+                server.stop();
+                System.out.println(server);
+            }
+        }
+    }
+}
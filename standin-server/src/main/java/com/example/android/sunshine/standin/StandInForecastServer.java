@@ -0,0 +1,489 @@
+package com.example.android.sunshine.standin;
+
+import com.example.android.sunshine.core.ForecastDates;
+import com.example.android.sunshine.core.SyntheticForecastGenerator;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the andfun-weather forecast endpoints, for end to end sync load tests
+ * that can't reach the real servers.
+ *
+ * Answers GET requests on any path with a generated forecast for the q or lat/lon query, with
+ * cnt days starting today. The forecast of a location only changes once a day, or once per
+ * {@link Options#changeIntervalMillis}, so every response carries an ETag and a Last-Modified
+ * that conditional requests are answered with 304 against. Latency, failures and gzip are set
+ * with {@link Options}.
+ *
+ *   ./gradlew :standin-server:serve --args='--port 8080 --latency 100 --error-rate 0.01'
+ *
+ * From an emulator the host is 10.0.2.2, build the app with
+ * -PforecastBaseUrl=http://10.0.2.2:8080/staticweather to sync against it.
+ */
+public final class StandInForecastServer {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* What the app asks for when the request doesn't say */
+    private static final int DEFAULT_DAYS = 14;
+
+    /* Coordinates are rounded to 4 decimals, like the app stores them */
+    private static final double COORDINATE_SCALE = 10000;
+
+    /**
+     * Server settings. Options are immutable, use {@link Builder} to derive new ones.
+     */
+    public static final class Options {
+
+        public static final Options DEFAULT = new Builder().build();
+
+        /* 0 picks a free port */
+        public final int port;
+
+        /* Requests handled at the same time, the others wait for a thread */
+        public final int threads;
+
+        /* Seed of the generated forecasts */
+        public final long seed;
+
+        /* Every response is held back latencyMillis, plus up to latencyJitterMillis more */
+        public final long latencyMillis;
+        public final long latencyJitterMillis;
+
+        /* Share of requests, 0 to 1, answered with a 500 or a 503 instead of a forecast */
+        public final double errorRate;
+
+        /* Whether conditional requests are answered with 304 when nothing changed */
+        public final boolean notModified;
+
+        /* Whether responses are gzipped when the request accepts it */
+        public final boolean gzip;
+
+        /* Largest cnt served, larger requests are cut down to it */
+        public final int maxDays;
+
+        /*
+         * How often the forecast of a location changes. Once a day like the real service, shorter
+         * to see conditional requests miss after a change without waiting for the next day.
+         */
+        public final long changeIntervalMillis;
+
+        private Options(Builder builder) {
+            port = builder.port;
+            threads = builder.threads;
+            seed = builder.seed;
+            latencyMillis = builder.latencyMillis;
+            latencyJitterMillis = builder.latencyJitterMillis;
+            errorRate = builder.errorRate;
+            notModified = builder.notModified;
+            gzip = builder.gzip;
+            maxDays = builder.maxDays;
+            changeIntervalMillis = builder.changeIntervalMillis;
+        }
+
+        public Builder buildUpon() {
+            return new Builder(this);
+        }
+
+        public static final class Builder {
+
+            private int port = 8080;
+            private int threads = 64;
+            private long seed = 42;
+            private long latencyMillis = 0;
+            private long latencyJitterMillis = 0;
+            private double errorRate = 0;
+            private boolean notModified = true;
+            private boolean gzip = true;
+            private int maxDays = 3650;
+            private long changeIntervalMillis = ForecastDates.DAY_IN_MILLIS;
+
+            public Builder() {
+            }
+
+            private Builder(Options options) {
+                port = options.port;
+                threads = options.threads;
+                seed = options.seed;
+                latencyMillis = options.latencyMillis;
+                latencyJitterMillis = options.latencyJitterMillis;
+                errorRate = options.errorRate;
+                notModified = options.notModified;
+                gzip = options.gzip;
+                maxDays = options.maxDays;
+                changeIntervalMillis = options.changeIntervalMillis;
+            }
+
+            public Builder setPort(int port) {
+                this.port = port;
+                return this;
+            }
+
+            public Builder setThreads(int threads) {
+                this.threads = threads;
+                return this;
+            }
+
+            public Builder setSeed(long seed) {
+                this.seed = seed;
+                return this;
+            }
+
+            public Builder setLatencyMillis(long latencyMillis, long latencyJitterMillis) {
+                this.latencyMillis = latencyMillis;
+                this.latencyJitterMillis = latencyJitterMillis;
+                return this;
+            }
+
+            public Builder setErrorRate(double errorRate) {
+                this.errorRate = errorRate;
+                return this;
+            }
+
+            public Builder setNotModified(boolean notModified) {
+                this.notModified = notModified;
+                return this;
+            }
+
+            public Builder setGzip(boolean gzip) {
+                this.gzip = gzip;
+                return this;
+            }
+
+            public Builder setMaxDays(int maxDays) {
+                this.maxDays = maxDays;
+                return this;
+            }
+
+            public Builder setChangeIntervalMillis(long changeIntervalMillis) {
+                this.changeIntervalMillis = changeIntervalMillis;
+                return this;
+            }
+
+            /* Last-Modified has a resolution of one second, so changes can't come more often */
+            public Options build() {
+                if (port < 0 || threads < 1 || latencyMillis < 0 || latencyJitterMillis < 0
+                        || errorRate < 0 || errorRate > 1 || maxDays < 1
+                        || changeIntervalMillis < 1000) {
+                    throw new IllegalArgumentException("Invalid server options");
+                }
+                return new Options(this);
+            }
+        }
+    }
+
+    private final Options mOptions;
+    private final SyntheticForecastGenerator mGenerator;
+
+    /* Decides latency and failures. Seeded too, so a run can be repeated */
+    private final Random mRandom;
+
+    private final AtomicLong mRequests = new AtomicLong();
+    private final AtomicLong mForecasts = new AtomicLong();
+    private final AtomicLong mNotModified = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+
+    private HttpServer mServer;
+    private ExecutorService mExecutor;
+
+    public StandInForecastServer(Options options) {
+        mOptions = options;
+        mGenerator = new SyntheticForecastGenerator(options.seed);
+        mRandom = new Random(options.seed);
+    }
+
+    public synchronized void start() throws IOException {
+
+        if (mServer != null) throw new IllegalStateException("Already started");
+
+        mExecutor = Executors.newFixedThreadPool(mOptions.threads);
+
+        mServer = HttpServer.create(new InetSocketAddress(mOptions.port), 0);
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    public synchronized void stop() {
+
+        if (mServer == null) return;
+
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+        mServer = null;
+        mExecutor = null;
+    }
+
+    /**
+     * @return The URL to hand NetworkUtils as its forecast base URL
+     */
+    public synchronized String getBaseUrl() {
+        if (mServer == null) throw new IllegalStateException("Not started");
+        return "http://localhost:" + mServer.getAddress().getPort() + "/staticweather";
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+
+        mRequests.incrementAndGet();
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, HttpURLConnection.HTTP_BAD_METHOD, "Only GET is supported");
+            return;
+        }
+
+        delay();
+
+        double roll;
+        synchronized (mRandom) {
+            roll = mRandom.nextDouble();
+        }
+        if (roll < mOptions.errorRate) {
+            mErrors.incrementAndGet();
+            int code = roll < mOptions.errorRate / 2
+                    ? HttpURLConnection.HTTP_INTERNAL_ERROR
+                    : HttpURLConnection.HTTP_UNAVAILABLE;
+            sendError(exchange, code, "Injected failure");
+            return;
+        }
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        SyntheticForecastGenerator.Location location = resolveLocation(query);
+        if (location == null) {
+            sendError(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "Nothing to geocode");
+            return;
+        }
+
+        int days = DEFAULT_DAYS;
+        String count = query.get("cnt");
+        if (count != null) {
+            try {
+                days = Math.max(1, Math.min(Integer.parseInt(count), mOptions.maxDays));
+            } catch (NumberFormatException e) {
+                sendError(exchange, HttpURLConnection.HTTP_BAD_REQUEST, "Invalid cnt");
+                return;
+            }
+        }
+
+        /* The same location, day, revision and length always produce the same body */
+        long now = System.currentTimeMillis();
+        long today = ForecastDates.normalizeDate(now);
+        long revision = now / mOptions.changeIntervalMillis;
+
+        String eTag = "\"" + Long.toHexString(mOptions.seed) + "-" + location.index + "-"
+                + ForecastDates.elapsedDaysSinceEpoch(today) + "-" + revision + "-" + days + "\"";
+        String lastModified = formatHttpDate(revision * mOptions.changeIntervalMillis);
+
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", eTag);
+        responseHeaders.set("Last-Modified", lastModified);
+
+        if (mOptions.notModified
+                && (eTag.equals(requestHeaders.getFirst("If-None-Match"))
+                || lastModified.equals(requestHeaders.getFirst("If-Modified-Since")))) {
+            mNotModified.incrementAndGet();
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            return;
+        }
+
+        String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+        boolean gzip = mOptions.gzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        responseHeaders.set("Content-Type", "application/json; charset=utf-8");
+        if (gzip) responseHeaders.set("Content-Encoding", "gzip");
+
+        /* Streamed, chunked */
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+
+        OutputStream body = exchange.getResponseBody();
+        if (gzip) body = new GZIPOutputStream(body, 8192);
+
+        /* Changing more often than daily, every revision gets its own forecast */
+        SyntheticForecastGenerator generator =
+                mOptions.changeIntervalMillis >= ForecastDates.DAY_IN_MILLIS
+                        ? mGenerator : new SyntheticForecastGenerator(mOptions.seed + revision);
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(body, UTF_8), 8192);
+        try {
+            generator.writeJson(out, location, today, days);
+        } finally {
+            out.close();
+        }
+
+        mForecasts.incrementAndGet();
+    }
+
+    private void delay() {
+
+        long latency = mOptions.latencyMillis;
+        if (mOptions.latencyJitterMillis > 0) {
+            synchronized (mRandom) {
+                latency += (long) (mRandom.nextDouble() * mOptions.latencyJitterMillis);
+            }
+        }
+        if (latency == 0) return;
+
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * The location a q or lat/lon query asks for, null if it names none. A name is geocoded to
+     * made up coordinates first and every location is keyed on its coordinates, rounded like the
+     * app stores them. The app asks by name until it has stored the coordinates the forecast
+     * reported, then by coordinates, and both get the same forecast and ETag.
+     */
+    private SyntheticForecastGenerator.Location resolveLocation(Map<String, String> query) {
+
+        double latitude;
+        double longitude;
+
+        String name = query.get("q");
+
+        if (name != null) {
+            int geocodedIndex = name.toLowerCase(Locale.US).hashCode() & Integer.MAX_VALUE;
+            SyntheticForecastGenerator.Location geocoded = mGenerator.location(geocodedIndex);
+            latitude = geocoded.latitude;
+            longitude = geocoded.longitude;
+        } else {
+            String latitudeParameter = query.get("lat");
+            String longitudeParameter = query.get("lon");
+            if (latitudeParameter == null || longitudeParameter == null) return null;
+            try {
+                latitude = Double.parseDouble(latitudeParameter);
+                longitude = Double.parseDouble(longitudeParameter);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        latitude = Math.round(latitude * COORDINATE_SCALE) / COORDINATE_SCALE;
+        longitude = Math.round(longitude * COORDINATE_SCALE) / COORDINATE_SCALE;
+
+        String key = String.format(Locale.US, "%.4f,%.4f", latitude, longitude);
+
+        return mGenerator.location(key.hashCode() & Integer.MAX_VALUE, latitude, longitude);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+
+        for (String parameter : rawQuery.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator <= 0) continue;
+            query.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+        }
+        return query;
+    }
+
+    /* Errors look like OpenWeatherMap's */
+    private static void sendError(HttpExchange exchange, int code, String message)
+            throws IOException {
+
+        byte[] body = ("{\"cod\":\"" + code + "\",\"message\":\"" + message + "\"}")
+                .getBytes(UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String formatHttpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'",
+                Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+
+    @Override
+    public String toString() {
+        return "StandInForecastServer{requests=" + mRequests.get()
+                + ", forecasts=" + mForecasts.get()
+                + ", notModified=" + mNotModified.get()
+                + ", errors=" + mErrors.get() + '}';
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     *
+     * --port, --threads, --seed, --latency, --jitter, --error-rate, --max-days, --no-304 and
+     * --no-gzip map to the {@link Options} of the same name, --change-every to the change
+     * interval in seconds.
+     */
+    public static void main(String[] args) throws Exception {
+
+        CommandLine commandLine = new CommandLine(args);
+
+        Options options = new Options.Builder()
+                .setPort(commandLine.getInt("port", 8080))
+                .setThreads(commandLine.getInt("threads", 64))
+                .setSeed(commandLine.getLong("seed", 42))
+                .setLatencyMillis(commandLine.getLong("latency", 0),
+                        commandLine.getLong("jitter", 0))
+                .setErrorRate(commandLine.getDouble("error-rate", 0))
+                .setMaxDays(commandLine.getInt("max-days", 3650))
+                .setNotModified(!commandLine.has("no-304"))
+                .setGzip(!commandLine.has("no-gzip"))
+                .setChangeIntervalMillis(TimeUnit.SECONDS.toMillis(commandLine.getLong(
+                        "change-every", TimeUnit.DAYS.toSeconds(1))))
+                .build();
+
+        final StandInForecastServer server = new StandInForecastServer(options);
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop();
+                System.out.println(server);
+            }
+        });
+
+        System.out.println("Serving forecasts at " + server.getBaseUrl());
+
+        while (true) {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            System.out.println(server);
+        }
+    }
+}